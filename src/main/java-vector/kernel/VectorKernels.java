@@ -0,0 +1,55 @@
+package kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The array kernels, with the JDK Vector API. Compiled by the "vector" build profile only, and created by
+ * reflection (see {@link ArrayKernelsFactory}).
+ *
+ * Only the reductions which the JIT compiler does not vectorize are overridden (see ArrayKernelsBenchmark): the
+ * sums, which it cannot reorder, and the fused add-then-min. The element-wise loops are auto-vectorized, and the
+ * min/argmin loops are not faster with the Vector API. The ranges shorter than two vectors are processed by the
+ * scalar loops. The sums are computed lane-wise (see {@link ArrayKernelsFactory} on reproducibility).
+ */
+public class VectorKernels extends ScalarKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int MIN_LENGTH = 2 * SPECIES.length();
+
+    @Override
+    public double sum(double[] a, int from, int len) {
+        if (len < MIN_LENGTH)
+            return super.sum(a, from, len);
+        int i = 0;
+        int bound = SPECIES.loopBound(len);
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        for (; i < bound; i += SPECIES.length())
+            acc = acc.add(DoubleVector.fromArray(SPECIES, a, from + i));
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++)
+            sum += a[from + i];
+        return sum;
+    }
+
+    @Override
+    public double addMin(double[] a, int aFrom, double[] b, int bFrom, int len) {
+        if (len < MIN_LENGTH)
+            return super.addMin(a, aFrom, b, bFrom, len);
+        int i = 0;
+        int bound = SPECIES.loopBound(len);
+        DoubleVector acc = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        for (; i < bound; i += SPECIES.length()) {
+            acc = acc.min(DoubleVector.fromArray(SPECIES, a, aFrom + i)
+                    .add(DoubleVector.fromArray(SPECIES, b, bFrom + i)));
+        }
+        double min = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < len; i++) {
+            double value = a[aFrom + i] + b[bFrom + i];
+            if (value < min)
+                min = value;
+        }
+        return min;
+    }
+}
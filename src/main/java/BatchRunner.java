@@ -0,0 +1,281 @@
+import agent.BinaryCCG.CCGCSREngine;
+import agent.MaxSum.BoundedMaxSum;
+import agent.MaxSum.MaxSumCSREngine;
+import communication.CostModelFactory;
+import communication.CycleTickerDeamon;
+import communication.ExecutorFactory;
+import communication.NetworkModelFactory;
+import communication.Spawner;
+import kernel.CCGClusteringFactory;
+import kernel.Constants;
+import kernel.DCOPInstance;
+import kernel.DCOPInstanceFactory;
+import kernel.FactorAllocationFactory;
+import kernel.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a grid of experiments (instances x algorithms x iterations x seeds) described by a JSON manifest, e.g.:
+ * <pre>
+ * {
+ *   "instances": ["data/sf.json", "data/rand4_50_1.wcsp"],    // files, or directories of instances
+ *   "algorithms": ["CCG", "MINSUM"],                        // or MINSUM-CSR, CCG-CSR (centralized engines, on
+ *                                                             // "threads" threads), BMS
+ *   "iterations": [100, 500],
+ *   "seeds": [0, 1, 2],                                       // optional (default: [0])
+ *   "executor": "SEQ", "threads": 1, "mailbox": "MPSC",       // optional, as in the single-run options
+ *   "costModel": "CELLS",                                     // optional, used by the DES executor
+ *   "network": "CONST:500:10", "batching": true,              // optional (default: NONE, false)
+ *   "damping": 0.5, "convergence": "5:0.001",                 // optional (default: 0, disabled)
+ *   "selective": 0.01,                                        // optional, MaxSum (default: 0, disabled)
+ *   "factorAllocation": "LEAST_LOADED",                       // optional, MaxSum (default: MIN_ID)
+ *   "ccgClustering": "VARIABLE",                              // optional, .ccg instances (default: VERTEX)
+ *   "parallelism": 8,                                         // optional (default: nb. of cores)
+ *   "output": "results.jsonl"
+ * }
+ * </pre>
+ * Each instance is parsed once, and every run solves a private copy of it. The runs are executed concurrently on
+ * a pool of "parallelism" threads, and each of them appends a single JSON record (the run parameters and the
+ * summary printed by dcop_jtools) to the output file, as soon as it terminates. The log of the runs is limited to
+ * the warnings and errors for the duration of the batch.
+ */
+public class BatchRunner {
+
+    private List<String> instanceFiles = new ArrayList<>();
+    private List<String> algorithms = new ArrayList<>();
+    private List<Integer> iterations = new ArrayList<>();
+    private List<Long> seeds = new ArrayList<>();
+    private String executorType = "SEQ";
+    private int nbThreads = 1;
+    private String mailboxType = "MPSC";
+    private String costModel = "CELLS";
+    private String networkModel = "NONE";
+    private boolean batching = false;
+    private double damping = 0;
+    private double threshold = 0;
+    private int convergenceCycles = 0;
+    private double convergenceDelta = CycleTickerDeamon.DEFAULT_CONVERGENCE_DELTA;
+    private String factorAllocation = "MIN_ID";
+    private String ccgClustering = "VERTEX";
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private String output;
+
+    public BatchRunner(String manifestFile) throws IOException, ParseException {
+        JSONObject manifest = (JSONObject) new JSONParser().parse(new FileReader(manifestFile));
+
+        for (Object o : (JSONArray) manifest.get("instances")) {
+            File file = new File((String) o);
+            if (file.isDirectory()) {
+                File[] files = file.listFiles(File::isFile);
+                Arrays.sort(files);
+                for (File f : files) {
+                    instanceFiles.add(f.getPath());
+                }
+            } else {
+                instanceFiles.add(file.getPath());
+            }
+        }
+        for (Object o : (JSONArray) manifest.get("algorithms")) {
+            algorithms.add((String) o);
+        }
+        for (Object o : (JSONArray) manifest.get("iterations")) {
+            iterations.add(((Number) o).intValue());
+        }
+        if (manifest.containsKey("seeds")) {
+            for (Object o : (JSONArray) manifest.get("seeds")) {
+                seeds.add(((Number) o).longValue());
+            }
+        } else {
+            seeds.add(0L);
+        }
+        if (manifest.containsKey("executor"))
+            executorType = (String) manifest.get("executor");
+        if (manifest.containsKey("threads"))
+            nbThreads = ((Number) manifest.get("threads")).intValue();
+        if (manifest.containsKey("mailbox"))
+            mailboxType = (String) manifest.get("mailbox");
+        if (manifest.containsKey("costModel"))
+            costModel = (String) manifest.get("costModel");
+        if (manifest.containsKey("network"))
+            networkModel = (String) manifest.get("network");
+        if (manifest.containsKey("batching"))
+            batching = (Boolean) manifest.get("batching");
+        if (manifest.containsKey("damping"))
+            damping = ((Number) manifest.get("damping")).doubleValue();
+        if (manifest.containsKey("selective"))
+            threshold = ((Number) manifest.get("selective")).doubleValue();
+        if (manifest.containsKey("convergence")) {
+            String[] spec = ((String) manifest.get("convergence")).split(":");
+            convergenceCycles = Integer.parseInt(spec[0]);
+            if (spec.length > 1)
+                convergenceDelta = Double.parseDouble(spec[1]);
+        }
+        if (manifest.containsKey("factorAllocation"))
+            factorAllocation = (String) manifest.get("factorAllocation");
+        if (manifest.containsKey("ccgClustering"))
+            ccgClustering = (String) manifest.get("ccgClustering");
+        if (manifest.containsKey("parallelism"))
+            parallelism = ((Number) manifest.get("parallelism")).intValue();
+        output = (String) manifest.get("output");
+    }
+
+    public void run() throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+
+        // Parse each instance once
+        Map<String, DCOPInstance> instances = new LinkedHashMap<>();
+        for (String file : instanceFiles) {
+            DCOPInstance instance = null;
+            try {
+                instance = DCOPInstanceFactory.importDCOPInstance(file,
+                        CCGClusteringFactory.create(ccgClustering));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            if (instance == null || instance.getDCOPAgents().isEmpty()) {
+                Logger.warn(() -> "Skipping " + file + ": not a DCOP instance.");
+                continue;
+            }
+            instances.put(file, instance);
+        }
+
+        Logger.Level level = Logger.getLevel();
+        if (Logger.isEnabled(Logger.Level.INFO))
+            Logger.setLevel(Logger.Level.WARN);
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        int nbRuns = 0;
+        int nbFailedRuns = 0;
+        try (Writer writer = new BufferedWriter(new FileWriter(output))) {
+            // Each run tells whether it succeeded, i.e., whether its record has no error
+            List<Future<Boolean>> runs = new ArrayList<>();
+            for (Map.Entry<String, DCOPInstance> entry : instances.entrySet()) {
+                for (String algorithm : algorithms) {
+                    for (int nbIterations : iterations) {
+                        for (long seed : seeds) {
+                            runs.add(pool.submit(() -> {
+                                Map<String, Object> record = runExperiment(entry.getKey(), entry.getValue(), algorithm,
+                                        nbIterations, seed);
+                                synchronized (writer) {
+                                    try {
+                                        // Streamed, as toJSONString() is quadratic in the size of the record
+                                        JSONValue.writeJSONString(record, writer);
+                                        writer.write('\n');
+                                        writer.flush();
+                                    } catch (IOException e) {
+                                        e.printStackTrace();
+                                    }
+                                }
+                                return !record.containsKey("error");
+                            }));
+                        }
+                    }
+                }
+            }
+            for (Future<Boolean> run : runs) {
+                try {
+                    if (run.get())
+                        nbRuns++;
+                    else
+                        nbFailedRuns++;
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                    nbFailedRuns++;
+                }
+            }
+        } finally {
+            pool.shutdown();
+            Logger.flush();
+            Logger.setLevel(level);
+        }
+
+        double hours = (System.nanoTime() - startTime) * 1.0e-9 / 3600.0;
+        // The throughput counts the successful runs only, as a failed run may stop early
+        System.out.println("Completed " + nbRuns + " runs in " + (long) (hours * 3600.0) + " s ("
+                + (long) (nbRuns / hours) + " runs/hour), " + nbFailedRuns + " failed. Results written to " + output);
+    }
+
+    /**
+     * Solves a copy of the given instance, and returns the record of the run.
+     */
+    private Map<String, Object> runExperiment(String file, DCOPInstance instance, String algorithm,
+                                              int nbIterations, long seed) {
+        Map<String, Object> record = new HashMap<>();
+        record.put("instance", file);
+        record.put("algorithm", algorithm);
+        record.put("maxIterations", nbIterations);
+        record.put("seed", seed);
+
+        long startTime = System.nanoTime();
+        try {
+            // The parsed instance is only read, hence it can be copied concurrently
+            DCOPInstance dcopInstance = instance.copy();
+            if (algorithm.equals("MINSUM-CSR")) {
+                MaxSumCSREngine engine = new MaxSumCSREngine(dcopInstance,
+                        FactorAllocationFactory.create(factorAllocation));
+                engine.setDamping(damping);
+                engine.setThreshold(threshold);
+                engine.setConvergence(convergenceCycles, convergenceDelta);
+                record.putAll(dcop_jtools.getStatsSummaryJSON(engine.run(nbIterations, nbThreads)));
+                record.put("wallTimeMs", (System.nanoTime() - startTime) / 1000000);
+                return record;
+            }
+            if (algorithm.equals("CCG-CSR")) {
+                CCGCSREngine engine = new CCGCSREngine(dcopInstance);
+                engine.setSeed(seed);
+                engine.setDamping(damping);
+                engine.setConvergence(convergenceCycles, convergenceDelta);
+                record.putAll(dcop_jtools.getStatsSummaryJSON(engine.run(nbIterations, nbThreads)));
+                record.put("wallTimeMs", (System.nanoTime() - startTime) / 1000000);
+                return record;
+            }
+            List<Object> algParams = new ArrayList<>();
+            algParams.add(algorithm);
+            algParams.add(nbIterations);
+            algParams.add((long) Constants.infinity);
+            algParams.add(damping);
+            algParams.add(threshold);
+
+            BoundedMaxSum bms = null;
+            int nbConvergenceCycles = convergenceCycles;
+            if (algorithm.equals("BMS")) {
+                bms = new BoundedMaxSum(dcopInstance);
+                dcopInstance = bms.getRelaxedInstance();
+                algParams.set(0, "MINSUM");
+                if (nbConvergenceCycles == 0)
+                    nbConvergenceCycles = 2;
+            }
+
+            Spawner spawner = new Spawner(dcopInstance);
+            spawner.setExecutor(ExecutorFactory.create(executorType, nbThreads,
+                    CostModelFactory.create(costModel)));
+            spawner.setMailboxType(mailboxType);
+            spawner.setNetworkModel(NetworkModelFactory.create(networkModel));
+            spawner.setBatching(batching);
+            spawner.setConvergence(nbConvergenceCycles, convergenceDelta);
+            spawner.setFactorAllocation(FactorAllocationFactory.create(factorAllocation));
+            spawner.setSeed(seed);
+            spawner.spawn(algParams);
+
+            Map<String, Object> summary = dcop_jtools.getSummaryJSON(spawner.getSpawnedAgents());
+            if (bms != null)
+                summary.put("bounds", dcop_jtools.getBoundsJSON(bms, summary));
+            record.putAll(summary);
+        } catch (Exception e) {
+            record.put("error", e.toString());
+            e.printStackTrace();
+        }
+        record.put("wallTimeMs", (System.nanoTime() - startTime) / 1000000);
+        return record;
+    }
+}
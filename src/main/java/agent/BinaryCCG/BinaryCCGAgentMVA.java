@@ -13,113 +13,155 @@ import java.util.*;
 public class BinaryCCGAgentMVA extends SynchronousAgent {
 
     private int nbCycles = Integer.MAX_VALUE;
-    private double convergenceDelta = 0.001;
+    // The weight of the previous table in each message (0 = no damping)
+    private double damping = 0;
     private int nbRecvMsgs;
-    private int nbVarsNeighbor;
-    private Random rand = new Random();
+    // The number of edges to a variable of another agent, i.e., of messages received at each cycle
+    private int nbRemoteEdges;
+    private SplittableRandom rand;
 
-    // Cost received by each neighbor by projecting out y if this variable is x [prev cycle]
-    // key: variable ID; value: vector of size Dom of this variable
-    private HashMap<Long, HashMap<Long, double[]>> costTables;
+    // The domains are binary: the table exchanged on an edge is a pair of costs
+    private static final int DOM_SIZE = 2;
 
-    // Cost received by each neighbor  at current cycle
-    // key: variable ID; value: Key: Neighbor var ID Value: vector of size Dom of this variable
-    private HashMap<Long, HashMap<Long, double[]>> recvCostTables;
+    // The variables of this agent are identified by their position in agentState.getVariables() (their local
+    // index). The edges (v, u) from a variable v to each of its neighbors u are numbered consecutively, v by v, in
+    // the order of the neighbors of v: edge e is the slot [DOM_SIZE * e, DOM_SIZE * (e + 1)) of the per-edge
+    // buffers below, and the messages carry the number of the reverse edge (u, v) in the owner of u.
 
-    // Var ID -> [Var ID (neighbor, ComAgent) ] if ComAgent = null, then the two neighbors belong to the same agent.
-    // otherwise ComAgent is the link to the neighbor owning the variable (Var ID [2])
-    private HashMap<Long, List<Pair<Long, ComAgent>>> varNeighbors;
+    // The edges of the variable v are [edgeOffsets[v], edgeOffsets[v + 1])
+    private int[] edgeOffsets;
+
+    // For each edge (v, u): the ID of u, the agent owning u (null if it is owned by this agent), and the number of
+    // the edge (u, v) in the owner of u
+    private long[] neighborIds;
+    private ComAgent[] neighborAgents;
+    private int[] reverseEdges;
+
+    // Cost received from each neighbor by projecting out y if this variable is x [prev cycle] (front buffer)
+    private double[] costs;
+
+    // Cost received from each neighbor at current cycle (back buffer, swapped with the front one at the end of
+    // each cycle: every neighbor sends exactly one table per cycle)
+    private double[] recvCosts;
+
+    // The last table sent to each neighbor of another agent (used for damping and for the residuals). The last table
+    // sent on a local edge is the one its receiver uses in the current cycle (in the front buffer).
+    private double[] sentCosts;
+    private boolean hasSent = false;
 
     // Weights of the unary constraint
-    private HashMap<Long, Double> weights;
+    private double[] weights;
 
-    private HashMap<Long, Integer> agtVarIdxMap;
+    // A vector of noisy values to allow faster convergence (DOM_SIZE values per variable)
+    public double[] noise;
 
-    // A vector of noisy values to allow faster convergence
-    public HashMap<Long, double[]> noise;
+    private double[] sum = new double[DOM_SIZE];
 
     AgentState agentState;
 
-    public BinaryCCGAgentMVA(ComAgent statsCollector, AgentState agentState, List<Object> parameters) {
-        super(statsCollector, agentState);
-        // Check argument:
-        assert (parameters.size() == 1);
+    public BinaryCCGAgentMVA(ComAgent statsCollector, AgentState agentState, SimulationContext context,
+                             List<Object> parameters) {
+        super(statsCollector, agentState, context);
+        // Check argument: nb. cycles, timeout [, damping]
+        assert (parameters.size() >= 1);
         // check binary
-        assert(getAgentView().getDomainSize() == 2);
+        assert(getAgentView().getDomainSize() == DOM_SIZE);
 
         this.nbCycles = (int) parameters.get(0);
-        this.costTables = new HashMap<>();
-        this.recvCostTables = new HashMap<>();
-        for (Variable v : agentState.getVariables()) {
-            this.costTables.put(v.getID(), new HashMap<>());
-            this.recvCostTables.put(v.getID(), new HashMap<>());
-        }
-        this.weights = new HashMap<>();
+        if (parameters.size() > 2)
+            this.damping = (double) parameters.get(2);
         this.nbRecvMsgs = 0;
-        this.nbVarsNeighbor = 0;
-        this.agtVarIdxMap = new HashMap<>();
-
-        int i = 0;
-        for (Variable v : agentState.getVariables()) {
-            agtVarIdxMap.put(v.getID(), i);
-            i++;
+        this.nbRemoteEdges = 0;
+        this.rand = getRandom();
+
+        int nbVars = agentState.getVariables().size();
+        this.weights = new double[nbVars];
+        this.noise = new double[DOM_SIZE * nbVars];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = rand.nextInt(20);//Math.random();
         }
-        this.noise = new HashMap<>();
-        for (Variable v : agentState.getVariables()) {
-            double[] v_noise = new double[2];
-            for (i = 0; i <v_noise.length; i++) {
-                v_noise[i] = rand.nextInt(20);//Math.random();
+        this.agentState = agentState;
+    }
+
+    /**
+     * @return The neighbors of the variable, i.e., the other variables of the binary constraints involving it, in
+     * the order of its edges, each mapped to the position of its edge among the edges of v. The neighbors are computed
+     * once per variable, and kept in the given cache.
+     */
+    private static Map<Variable, Integer> getNeighbors(Variable v, Map<Variable, Map<Variable, Integer>> cache) {
+        Map<Variable, Integer> neighbors = cache.get(v);
+        if (neighbors == null) {
+            neighbors = new LinkedHashMap<>();
+            for (Constraint c : v.getParticipatingConstraints()) {
+                if (c.isBinary()) {
+                    Variable u = c.getScope().get(0) == v ? c.getScope().get(1) : c.getScope().get(0);
+                    neighbors.putIfAbsent(u, neighbors.size());
+                }
             }
-            noise.put(v.getID(), v_noise);
+            cache.put(v, neighbors);
         }
-        this.agentState = agentState;
+        return neighbors;
+    }
+
+    /**
+     * Numbers the edges of the variables of the list consecutively, and puts the number of the first edge of each
+     * variable in firstEdges.
+     * @return The total number of edges.
+     */
+    private static int setFirstEdges(List<Variable> variables, Map<Variable, Integer> firstEdges,
+                                     Map<Variable, Map<Variable, Integer>> cache) {
+        int nbEdges = 0;
+        for (Variable v : variables) {
+            firstEdges.put(v, nbEdges);
+            nbEdges += getNeighbors(v, cache).size();
+        }
+        return nbEdges;
     }
 
     @Override
     protected void onStart() {
 
         // Initialize Neighbors
-        this.varNeighbors = new HashMap<>();
-        for (Variable v : agentState.getVariables()) {
-            this.varNeighbors.put(v.getID(), new ArrayList());
-
+        List<Variable> variables = agentState.getVariables();
+        Map<Variable, Map<Variable, Integer>> cache = new HashMap<>();
+        // The number of the first edge of each variable, in its owner, for the owners met so far
+        Map<Variable, Integer> firstEdges = new HashMap<>();
+        Set<AgentState> owners = new HashSet<>();
+        owners.add(agentState);
+        int nbEdges = setFirstEdges(variables, firstEdges, cache);
+        edgeOffsets = new int[variables.size() + 1];
+        for (int v = 0; v < variables.size(); v++) {
+            edgeOffsets[v] = firstEdges.get(variables.get(v));
+        }
+        edgeOffsets[variables.size()] = nbEdges;
+        neighborIds = new long[nbEdges];
+        neighborAgents = new ComAgent[nbEdges];
+        reverseEdges = new int[nbEdges];
+        costs = new double[DOM_SIZE * nbEdges];
+        recvCosts = new double[DOM_SIZE * nbEdges];
+        sentCosts = new double[DOM_SIZE * nbEdges];
+        for (int v = 0; v < variables.size(); v++) {
             // For every (binary) constraint involving v, find the other variable u.
-            List<Long> vars_inserted = new ArrayList<>();
-            for (Constraint c : v.getParticipatingConstraints()) {
-                if (c.isBinary()) {
-                    //System.out.println("agent_" + getId() + " var_" + v.getID() +" " + c.toString());
-
-                    Variable u = c.getScope().get(0) == v ? c.getScope().get(1) : c.getScope().get(0);
-                    if (vars_inserted.contains(u.getID()))
-                        continue;
-                    vars_inserted.add(u.getID());
-
-                    ComAgent n_agt = u.getOwnerAgent().equals(agentState) ? null : u.getOwnerAgent().getComAgent();
-                    this.varNeighbors.get(v.getID()).add(new Pair<>(u.getID(), n_agt));
-                    nbVarsNeighbor ++;
-                }
+            int e = edgeOffsets[v];
+            for (Variable u : getNeighbors(variables.get(v), cache).keySet()) {
+                AgentState owner = u.getOwnerAgent();
+                neighborIds[e] = u.getID();
+                neighborAgents[e] = owner.equals(agentState) ? null : owner.getComAgent();
+                if (neighborAgents[e] != null)
+                    nbRemoteEdges++;
+                if (owners.add(owner))
+                    setFirstEdges(owner.getVariables(), firstEdges, cache);
+                reverseEdges[e] = firstEdges.get(u) + getNeighbors(u, cache).get(variables.get(v));
+                e++;
             }
         }
 
         // Set weights
         Tuple tuple = new Tuple(new int[]{1});
-        for (Variable v : agentState.getVariables()) {
-            for (Constraint cv : v.getParticipatingConstraints()) {
+        for (int v = 0; v < variables.size(); v++) {
+            for (Constraint cv : variables.get(v).getParticipatingConstraints()) {
                 if (cv.isUnary())
-                    this.weights.put(v.getID(), cv.getValue(tuple));
-            }
-        }
-
-        // Initialize messages
-        double[] costs = new double[getAgentView().getDomainSize()];
-        Arrays.fill(costs, 0);
-
-        for (Variable v : agentState.getVariables()){
-            costTables.put(v.getID(), new HashMap<>());
-            recvCostTables.put(v.getID(), new HashMap<>());
-            for (Pair<Long, ComAgent> p : varNeighbors.get(v.getID())) {
-                Long uID = p.getFirst();
-                costTables.get(v.getID()).put(uID, costs.clone());
+                    this.weights[v] = cv.getValue(tuple);
             }
         }
 
@@ -133,39 +175,58 @@ public class BinaryCCGAgentMVA extends SynchronousAgent {
     @Override
     protected void cycle() {
         // Send messages
-        for (Long vId : varNeighbors.keySet()) {
-            for (Pair<Long, ComAgent> p : varNeighbors.get(vId)) {
-                Long uId = p.getFirst();
-                Boolean same_agent = (p.getSecond() == null);
-                // todo: make this faster by not constructing the table if sender = recev agent
-                double[] table = getCostTableSumExcluding(vId, uId);
-                Commons.rmValue(table, Commons.getMin(table));
+        double residual = hasSent ? 0 : Double.POSITIVE_INFINITY;
+        for (int v = 0; v < weights.length; v++) {
+            for (int e = edgeOffsets[v]; e < edgeOffsets[v + 1]; e++) {
+                int reverse = reverseEdges[e];
+                boolean local = neighborAgents[e] == null;
+                // The table sent on a local edge is written directly in the receiving slot, and the previous one
+                // is read from the front buffer of the receiver
+                double[] out = local ? recvCosts : sentCosts;
+                int from = DOM_SIZE * (local ? reverse : e);
+                double[] prevTable = local ? costs : sentCosts;
+                double prev0 = prevTable[from], prev1 = prevTable[from + 1];
+
+                setCostTableSumExcluding(v, e, out, from);
+                Commons.normalizeMin(out, from, DOM_SIZE);
                 //Commons.rmValue(table, Commons.getAverage(table));
-                Commons.addArray(table, noise.get(vId));
-
-                if (same_agent) {
-                    recvCostTables.get(uId).put(vId, table/*.clone()*/);
-                    incrRecvMsgs();
-                } else {
-                    CCGTableMessage msg = new CCGTableMessage(table, vId, uId);
-                    p.getSecond().tell(msg, getSelf());
+                Commons.addArray(out, from, noise, DOM_SIZE * v, DOM_SIZE);
+
+                if (hasSent) {
+                    if (damping != 0) {
+                        out[from] = damping * prev0 + (1 - damping) * out[from];
+                        out[from + 1] = damping * prev1 + (1 - damping) * out[from + 1];
+                    }
+                    residual = Math.max(residual, Math.abs(out[from] - prev0));
+                    residual = Math.max(residual, Math.abs(out[from + 1] - prev1));
+                }
+
+                if (!local) {
+                    CCGTableMessage msg = new CCGTableMessage(out[from], out[from + 1],
+                            agentState.getVariables().get(v).getID(), neighborIds[e], reverse);
+                    neighborAgents[e].tell(msg, getSelf());
                 }
             }
         }
+        hasSent = true;
+        reportResidual(residual);
+        // The cycle terminates once this agent has sent its tables and received one from each remote neighbor (the
+        // tables of the remote neighbors may be received before this agent starts its cycle)
+        incrRecvMsgs();
     }
 
     @Override
     protected void onStop() {
         boolean converged = true;
-        for (Long vId : varNeighbors.keySet()) {
-            int val = selectBestValue(vId);
-            getAgentActions().setVariableValue(agtVarIdxMap.get(vId), val);
+        for (int v = 0; v < weights.length; v++) {
+            int val = selectBestValue(v);
+            getAgentActions().setVariableValue(v, val);
             if (Constants.isInf(val)) {
                 converged = false;
             }
 
-//            if (getAgentView().getVariableType(agtVarIdxMap.get(vId)) == Variable.DECISION_VAR) {
-//                System.out.println("Agent " + getName() + "(" + getCurrentCycle() + ") var_" + vId + " val: " + val);
+//            if (getAgentView().getVariableType(v) == Variable.DECISION_VAR) {
+//                System.out.println("Agent " + getName() + "(" + getCurrentCycle() + ") var_" + v + " val: " + val);
 //            }
         }
 
@@ -177,18 +238,18 @@ public class BinaryCCGAgentMVA extends SynchronousAgent {
         super.onReceive(message, sender);
         if (message instanceof CCGTableMessage) {
             CCGTableMessage msg = (CCGTableMessage)message;
-            long vId = msg.getRecverVarId();
-            long uId = msg.getSenderVarId();
-            recvCostTables.get(vId).put(uId, msg.getTable());
-            //System.out.println("var_" + vId + "(" + getCurrentCycle() + ") recv msg: " + Arrays.toString(recvCostTables.get(vId).get(uId)) + " from var_" + uId);
-            //System.out.println(getName() + "[v_" + vId + "]"+"(" + getCurrentCycle() + ")  # msg recv: " + "[v_"+ uId + "]" + message.toString() + (nbRecvMsgs+1) + " / " + nbVarsNeighbor);
+            int from = DOM_SIZE * msg.getRecverEdge();
+            recvCosts[from] = msg.getCost(0);
+            recvCosts[from + 1] = msg.getCost(1);
+            //System.out.println(getName() + "(" + getCurrentCycle() + ")  # msg recv: " + message.toString() + (nbRecvMsgs+1) + " / " + nbRemoteEdges);
             incrRecvMsgs();
         }
     }
 
+    // Counts the messages received in the current cycle, plus the end of the cycle() of this agent
     private void incrRecvMsgs() {
         nbRecvMsgs++;
-        if (nbRecvMsgs >= nbVarsNeighbor) {
+        if (nbRecvMsgs > nbRemoteEdges) {
             //setAgtState(STOPPED);
             terminateCycle();
         }
@@ -196,26 +257,22 @@ public class BinaryCCGAgentMVA extends SynchronousAgent {
 
     @Override
     protected void onCycleStart() {
-        for (Long vId : varNeighbors.keySet()) {
-            int val = selectBestValue(vId);
-            if (Math.random() > 0.5)
-                getAgentActions().setVariableValue(agtVarIdxMap.get(vId), val);
+        for (int v = 0; v < weights.length; v++) {
+            int val = selectBestValue(v);
+            if (rand.nextDouble() > 0.5)
+                getAgentActions().setVariableValue(v, val);
 
-            //System.out.println("Agent " + getName() + "(" + getCurrentCycle() + ") var_" + vId + " val: " + val);
+            //System.out.println("Agent " + getName() + "(" + getCurrentCycle() + ") var_" + v + " val: " + val);
         }
     }
 
     @Override
     protected void onCycleEnd() {
         nbRecvMsgs = 0;
-        // Save all received messages to be used in the next iteration
-        for (Long vID : recvCostTables.keySet()) {
-            for (Map.Entry<Long, double[]> entry : recvCostTables.get(vID).entrySet()) {
-                Long uID = entry.getKey();
-                double[] value = entry.getValue();
-                costTables.get(vID).put(uID, value.clone());
-            }
-        }
+        // The tables received in this cycle are used in the next one
+        double[] tmp = costs;
+        costs = recvCosts;
+        recvCosts = tmp;
 //        System.out.println("Agent " + getName() + " Terminating cycle  " + getCurrentCycle());
     }
 
@@ -225,65 +282,78 @@ public class BinaryCCGAgentMVA extends SynchronousAgent {
     }
 
     /**
-     * Returns the aggregated cost table, excluding the costs produced by this agent
-     * @param vId The variable ID for which to compute the table cost
+     * Writes the aggregated cost table, excluding the costs produced by this agent, in out[from, from + DOM_SIZE)
+     * @param v The local index of the variable for which to compute the table cost
+     * @param excluded The edge of the neighbor to exclude
      */
-    private double[] getCostTableSumExcluding(long vId, long excludedId) {
-        double[] sum = new double[]{weights.get(vId), 0};
-        double[] s = getCostTableSum(vId, excludedId);
-        s[1] += weights.get(vId);
-        sum[0] = s[1];
-        sum[1] = Math.min(s[0], s[1]);
-        return sum;
+    private void setCostTableSumExcluding(int v, int excluded, double[] out, int from) {
+        double[] s = getCostTableSum(v, excluded);
+        s[1] += weights[v];
+        out[from] = s[1];
+        out[from + 1] = Math.min(s[0], s[1]);
     }
 
     /**
      *
-     * @param excludedVarId The variable ID to exclude
-     * @param vId This variable ID
-     * @return
+     * @param v The local index of this variable
+     * @param excluded The edge of the neighbor to exclude (-1 to sum all of them)
+     * @return The sum of the tables received, in a buffer reused at each call
      */
-    private double[] getCostTableSum(long vId, long excludedVarId) {
-        double[] sum = new double[]{0,0};
-        for (Pair<Long, ComAgent> p : varNeighbors.get(vId)) {
-            long uId = p.getFirst();
-            if (uId == excludedVarId)
+    private double[] getCostTableSum(int v, int excluded) {
+        Arrays.fill(sum, 0);
+        for (int e = edgeOffsets[v]; e < edgeOffsets[v + 1]; e++) {
+            if (e == excluded)
                 continue;
-            Commons.addArray(sum, costTables.get(vId).get(uId));
+            Commons.addArray(sum, 0, costs, DOM_SIZE * e, DOM_SIZE);
         }
         return sum;
     }
 
     /**
      *
-     * @param vId This variable ID for which select the best value
+     * @param v The local index of the variable for which select the best value
      * @return
      */
-    private int selectBestValue(long vId) {
-        double[] table = getCostTableSum(vId, -1);
-        table[1] += weights.get(vId);
+    private int selectBestValue(int v) {
+        double[] table = getCostTableSum(v, -1);
+        table[1] += weights[v];
 
         // Add noise to speed up convergence
-        Commons.addArray(table, noise.get(vId));
+        Commons.addArray(table, 0, noise, DOM_SIZE * v, DOM_SIZE);
 
         return Commons.getArgMin(table);
     }
 
     /// Messages ----------------------- //
     public static class CCGTableMessage extends BasicMessage {
-        protected double[] table;
+        // The binary table, as two values rather than an array
+        private double cost0;
+        private double cost1;
         private long senderVarId;
         private long recverVarId;
+        // The number of the edge (receiver, sender) in the receiver agent
+        private int recverEdge;
 
         // vId = sender var ID, uId = receiver var ID
-        public CCGTableMessage(double[] table, long vId, long uId) {
-            this.table = table;
+        public CCGTableMessage(double cost0, double cost1, long vId, long uId, int uEdge) {
+            this.cost0 = cost0;
+            this.cost1 = cost1;
             this.senderVarId = vId;
             this.recverVarId = uId;
+            this.recverEdge = uEdge;
+        }
+
+        public double getCost(int d) {
+            return d == 0 ? cost0 : cost1;
         }
 
         public double[] getTable() {
-            return table;
+            return new double[]{cost0, cost1};
+        }
+
+        @Override
+        public int getSize() {
+            return DOM_SIZE;
         }
 
         public long getSenderVarId() {
@@ -294,10 +364,14 @@ public class BinaryCCGAgentMVA extends SynchronousAgent {
             return recverVarId;
         }
 
+        public int getRecverEdge() {
+            return recverEdge;
+        }
+
         @Override
         public String toString() {
             return "CCGTableMessage{" +
-                    "table=" + Arrays.toString(table) +
+                    "table=" + Arrays.toString(getTable()) +
                     ", sender varId=" + senderVarId +
                     ", recver varId=" + recverVarId +
                     '}';
@@ -0,0 +1,372 @@
+package agent.BinaryCCG;
+
+import communication.AgentStatistics;
+import communication.CycleTickerDeamon;
+import kernel.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+/**
+ * A centralized CCG engine, which runs the synchronous min-sum cycles of BinaryCCGAgentMVA directly over the vertex
+ * cover graph, instead of simulating the agents. The graph is compiled into CSR arrays: the edges (v, u) of each
+ * vertex v are contiguous (in increasing order of u), and the binary table received on each edge lives in two
+ * pools of doubles (current and next cycle), at [2e, 2e + 2). All the vertices are updated in parallel at each
+ * cycle, as each of them only reads the current pool and writes the tables it sends in the next one.
+ *
+ * The engine can be built from a .ccg graph (see CCGGraph) without building the DCOP instance, in a few tens of
+ * bytes per vertex and per edge, or from a DCOP instance whose binary constraints are vertex cover constraints.
+ * The cycles perform the same computations as the agents: the noise and the random choices are drawn from the seed
+ * of the engine, but independently of the order of the sweep, so that a run is reproducible whatever the number of
+ * threads. The message counts are those of the agents, i.e., the messages on the edges between vertices owned by
+ * different agents. The statistics of all the agents are aggregated into a single AgentStatistics, as the summary
+ * only needs their sum: the simulated time is the wall-clock time of the engine.
+ */
+public class CCGCSREngine {
+
+    // Minimum number of vertices processed by a single fork-join task
+    private static final int MIN_GRAIN_SIZE = 1024;
+    private int grainSize = MIN_GRAIN_SIZE;
+
+    // The domains are binary: the table exchanged on an edge is a pair of costs
+    private static final int DOM_SIZE = 2;
+
+    private final int nbVars;
+    // The name of the variable of each vertex, built only for the decision variables when recording the values
+    private IntFunction<String> names;
+    private int[] types;
+    // The cost of the value 1 of each vertex (its unary constraint)
+    private double[] weights;
+    private int[] varAgent;
+
+    // The edges of each vertex (varOffset[v] ... varOffset[v+1]-1): the other vertex, and the edge in reverse
+    private int[] varOffset;
+    private int[] edgeVar;
+    private int[] reverseEdge;
+    // The number of edges between vertices of different agents, i.e., the messages sent at each cycle
+    private long nbRemoteEdges;
+
+    // The tables received on each edge, at the previous cycle (costs) and at this one (recvCosts)
+    private double[] costs;
+    private double[] recvCosts;
+    // DOM_SIZE noisy values per vertex to allow faster convergence
+    private double[] noise;
+
+    private long seed = 0;
+    private double damping = 0;
+    private double[] residuals;
+    private int convergenceCycles = 0;
+    private double convergenceDelta = CycleTickerDeamon.DEFAULT_CONVERGENCE_DELTA;
+
+    /**
+     * @param clustering The grouping of the vertices into agents, which determines the messages counted.
+     */
+    public CCGCSREngine(CCGGraph graph, CCGClustering clustering) {
+        this.nbVars = graph.getNbVertices();
+        this.names = graph::getName;
+        this.weights = new double[nbVars];
+        for (int v = 0; v < nbVars; v++) {
+            weights[v] = graph.getWeight(v);
+        }
+        this.types = graph.getTypes();
+        this.varAgent = graph.getAgents(clustering);
+        compile(graph.getEdges());
+    }
+
+    /**
+     * @param instance A minimization instance with binary domains {0, 1}, whose binary constraints are vertex cover
+     *                 constraints, i.e., only the tuple (0, 0) has a (positive) cost (as the instances read from .ccg
+     *                 files). As in BinaryCCGAgentMVA, only the weights (the costs of the value 1) of the unary
+     *                 constraints are read; their non-negative costs of the value 0 (self-loops) are ignored.
+     * @throws IllegalArgumentException If the instance is not such a CCG instance.
+     */
+    public CCGCSREngine(DCOPInstance instance) {
+        if (instance.getOptimizationType() == Constants.OPT_MAXIMIZE)
+            throw new IllegalArgumentException("Not a CCG instance: CCG minimizes the costs");
+        List<Variable> variables = new ArrayList<>(instance.getDCOPVariables());
+        this.nbVars = variables.size();
+        this.names = v -> variables.get(v).getName();
+        this.types = new int[nbVars];
+        this.weights = new double[nbVars];
+        this.varAgent = new int[nbVars];
+        HashMap<Variable, Integer> varIdx = new HashMap<>();
+        HashMap<Long, Integer> agentIdx = new HashMap<>();
+        for (AgentState agt : instance.getDCOPAgents()) {
+            agentIdx.put(agt.getID(), agentIdx.size());
+        }
+        for (int v = 0; v < nbVars; v++) {
+            Variable x = variables.get(v);
+            if (x.getDomain().getMin() != 0 || x.getDomain().getMax() != 1)
+                throw new IllegalArgumentException("Not a CCG instance: the domain of " + x.getName()
+                        + " is not {0, 1}");
+            varIdx.put(x, v);
+            types[v] = x.getType();
+            varAgent[v] = agentIdx.get(x.getOwnerAgent().getID());
+        }
+
+        List<Integer> edges = new ArrayList<>();
+        for (Constraint c : instance.getDCOPConstraints()) {
+            if (c.isUnary() && c.getValue(new Tuple(new int[]{0})) >= 0) {
+                weights[varIdx.get(c.getScope(0))] = c.getValue(new Tuple(new int[]{1}));
+            } else if (c.isBinary() && isVertexCoverConstraint(c)) {
+                edges.add(varIdx.get(c.getScope(0)));
+                edges.add(varIdx.get(c.getScope(1)));
+            } else {
+                throw new IllegalArgumentException("Not a CCG instance: " + c.getName()
+                        + " is neither a unary weight nor a vertex cover constraint");
+            }
+        }
+        int[] edgeArray = new int[edges.size()];
+        for (int i = 0; i < edgeArray.length; i++) {
+            edgeArray[i] = edges.get(i);
+        }
+        compile(edgeArray);
+    }
+
+    /**
+     * @return True if only the tuple (0, 0) of the binary constraint has a cost, which is positive.
+     */
+    private static boolean isVertexCoverConstraint(Constraint c) {
+        return c.getValue(new Tuple(new int[]{0, 0})) > 0
+                && c.getValue(new Tuple(new int[]{0, 1})) == 0
+                && c.getValue(new Tuple(new int[]{1, 0})) == 0
+                && c.getValue(new Tuple(new int[]{1, 1})) == 0;
+    }
+
+    /**
+     * Sets the seed of the noise and of the random choices of the values (default: 0).
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of vertices below which a sweep is not split among the threads (e.g., to split the sweeps of
+     * a small instance in the tests).
+     */
+    void setGrainSize(int grainSize) {
+        this.grainSize = grainSize;
+    }
+
+    public void setDamping(double damping) {
+        this.damping = damping;
+    }
+
+    /**
+     * Stops the run once the residual of the messages has been smaller than delta for the given number of
+     * consecutive cycles (0 = disabled).
+     */
+    public void setConvergence(int nbCycles, double delta) {
+        this.convergenceCycles = nbCycles;
+        this.convergenceDelta = delta;
+    }
+
+    /**
+     * Builds the CSR arrays of the graph: the neighbors of each vertex are sorted, and the parallel edges (as the
+     * self loops) are dropped.
+     * @param edges The two vertices of each edge i, at 2i and 2i + 1.
+     */
+    private void compile(int[] edges) {
+        int[] offset = new int[nbVars + 1];
+        for (int i = 0; i < edges.length; i += 2) {
+            if (edges[i] != edges[i + 1]) {
+                offset[edges[i] + 1]++;
+                offset[edges[i + 1] + 1]++;
+            }
+        }
+        for (int v = 0; v < nbVars; v++) {
+            offset[v + 1] += offset[v];
+        }
+        int[] neighbors = new int[offset[nbVars]];
+        int[] fill = Arrays.copyOf(offset, nbVars);
+        for (int i = 0; i < edges.length; i += 2) {
+            if (edges[i] != edges[i + 1]) {
+                neighbors[fill[edges[i]]++] = edges[i + 1];
+                neighbors[fill[edges[i + 1]]++] = edges[i];
+            }
+        }
+
+        // Sort the neighbors of each vertex, and compact them without duplicates
+        varOffset = new int[nbVars + 1];
+        int nbEdges = 0;
+        for (int v = 0; v < nbVars; v++) {
+            Arrays.sort(neighbors, offset[v], offset[v + 1]);
+            varOffset[v] = nbEdges;
+            for (int k = offset[v]; k < offset[v + 1]; k++) {
+                if (k == offset[v] || neighbors[k] != neighbors[k - 1])
+                    neighbors[nbEdges++] = neighbors[k];
+            }
+        }
+        varOffset[nbVars] = nbEdges;
+        edgeVar = Arrays.copyOf(neighbors, nbEdges);
+
+        reverseEdge = new int[nbEdges];
+        nbRemoteEdges = 0;
+        for (int v = 0; v < nbVars; v++) {
+            for (int e = varOffset[v]; e < varOffset[v + 1]; e++) {
+                int u = edgeVar[e];
+                reverseEdge[e] = Arrays.binarySearch(edgeVar, varOffset[u], varOffset[u + 1], v);
+                if (varAgent[u] != varAgent[v])
+                    nbRemoteEdges++;
+            }
+        }
+
+        costs = new double[DOM_SIZE * nbEdges];
+        recvCosts = new double[DOM_SIZE * nbEdges];
+        noise = new double[DOM_SIZE * nbVars];
+        residuals = new double[nbVars];
+    }
+
+    /**
+     * Runs the given number of synchronous CCG cycles.
+     * @param nbThreads The number of threads sweeping the vertices (1 = sequential).
+     * @return The statistics of all the agents (solution values and sent messages of each cycle).
+     */
+    public List<AgentStatistics> run(int nbIterations, int nbThreads) {
+        AgentStatistics stats = new AgentStatistics();
+        int nbDecisionVars = 0;
+        for (int v = 0; v < nbVars; v++) {
+            if (types[v] == Variable.DECISION_VAR)
+                nbDecisionVars++;
+        }
+        int[] decisionVars = new int[nbDecisionVars];
+        String[] decisionNames = new String[nbDecisionVars];
+        for (int v = 0, i = 0; v < nbVars; v++) {
+            if (types[v] == Variable.DECISION_VAR) {
+                decisionVars[i] = v;
+                decisionNames[i++] = names.apply(v);
+            }
+        }
+        int[] decisionValues = new int[nbDecisionVars];
+
+        SplittableRandom rand = new SplittableRandom(seed);
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = rand.nextInt(20);
+        }
+        Arrays.fill(costs, 0);
+        Arrays.fill(recvCosts, 0);
+        int[] values = new int[nbVars];
+
+        int nbConvergedCycles = 0;
+        ForkJoinPool pool = nbThreads > 1 ? new ForkJoinPool(nbThreads) : null;
+        long startTime = System.nanoTime();
+        try {
+            for (int cycle = 0; cycle < nbIterations; cycle++) {
+                // Select the values, and compute the tables of this cycle from those of the previous one
+                if (pool == null) {
+                    sweep(0, nbVars, cycle, values);
+                } else {
+                    pool.invoke(new SweepTask(0, nbVars, cycle, values));
+                }
+                double[] tmp = costs; costs = recvCosts; recvCosts = tmp;
+
+                stats.incrSentMessages(nbRemoteEdges);
+                for (int i = 0; i < nbDecisionVars; i++) {
+                    decisionValues[i] = values[decisionVars[i]];
+                }
+                stats.updateIterationStats(System.nanoTime() - startTime, decisionNames, decisionValues);
+
+                if (convergenceCycles > 0) {
+                    double residual = 0;
+                    for (double r : residuals)
+                        residual = Math.max(residual, r);
+                    nbConvergedCycles = residual < convergenceDelta ? nbConvergedCycles + 1 : 0;
+                    if (nbConvergedCycles >= convergenceCycles)
+                        break;
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return Collections.singletonList(stats);
+    }
+
+    /**
+     * For each vertex in [from, to): selects its value, and computes the tables sent to its neighbors (see
+     * BinaryCCGAgentMVA), into the receiving slots of the next pool.
+     */
+    private void sweep(int from, int to, int cycle, int[] values) {
+        for (int v = from; v < to; v++) {
+            double s0 = 0, s1 = 0;
+            for (int e = varOffset[v]; e < varOffset[v + 1]; e++) {
+                s0 += costs[DOM_SIZE * e];
+                s1 += costs[DOM_SIZE * e + 1];
+            }
+
+            // Select the best value (with noise), which is taken with probability 1/2
+            double t0 = s0 + noise[DOM_SIZE * v];
+            double t1 = s1 + weights[v] + noise[DOM_SIZE * v + 1];
+            if (uniform(cycle, v) > 0.5)
+                values[v] = t1 < t0 ? 1 : 0;
+
+            // Tables: with x0, x1 the sums of the tables received from all other neighbors (plus the weight of
+            // the value 1 in x1), the table [x1, min(x0, x1)] minus its minimum, plus noise
+            double residual = cycle == 0 ? Double.POSITIVE_INFINITY : 0;
+            for (int e = varOffset[v]; e < varOffset[v + 1]; e++) {
+                double x0 = s0 - costs[DOM_SIZE * e];
+                double x1 = s1 - costs[DOM_SIZE * e + 1] + weights[v];
+                double m0 = x1 - Math.min(x0, x1) + noise[DOM_SIZE * v];
+                double m1 = noise[DOM_SIZE * v + 1];
+
+                // The previous table sent on the edge is the one its receiver uses at this cycle
+                int out = DOM_SIZE * reverseEdge[e];
+                if (cycle > 0) {
+                    double prev0 = costs[out], prev1 = costs[out + 1];
+                    if (damping != 0) {
+                        m0 = damping * prev0 + (1 - damping) * m0;
+                        m1 = damping * prev1 + (1 - damping) * m1;
+                    }
+                    residual = Math.max(residual, Math.max(Math.abs(m0 - prev0), Math.abs(m1 - prev1)));
+                }
+                recvCosts[out] = m0;
+                recvCosts[out + 1] = m1;
+            }
+            residuals[v] = residual;
+        }
+    }
+
+    /**
+     * @return A uniform random number in [0, 1), drawn for the given vertex at the given cycle from the seed.
+     */
+    private double uniform(int cycle, int v) {
+        // SplitMix64 finalizer over a distinct counter per (cycle, vertex)
+        long z = seed + (((long) cycle << 32) | v) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Sweeps the vertices in the range [from, to).
+     */
+    private class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int cycle;
+        private final int[] values;
+
+        SweepTask(int from, int to, int cycle, int[] values) {
+            this.from = from;
+            this.to = to;
+            this.cycle = cycle;
+            this.values = values;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grainSize) {
+                sweep(from, to, cycle, values);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SweepTask(from, mid, cycle, values),
+                          new SweepTask(mid, to, cycle, values));
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import communication.ComAgent;
 import communication.FactorNode;
 import communication.VariableNode;
 import kernel.AgentState;
+import kernel.SimulationContext;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -13,12 +14,12 @@ import java.util.List;
  */
 public abstract class FactorGraphAgent extends SynchronousAgent {
 
-    // The list of function nodes and variable nodes owned by this agent
+    // The list of function nodes and variable nodes owned by this agent (the index of a node is its position)
     private List<FactorNode> factorNodes;
     private List<VariableNode> variableNodes;
 
-    public FactorGraphAgent(ComAgent statsCollector, AgentState agentState) {
-        super(statsCollector, agentState);
+    public FactorGraphAgent(ComAgent statsCollector, AgentState agentState, SimulationContext context) {
+        super(statsCollector, agentState, context);
         variableNodes = new ArrayList<>();
         factorNodes = new ArrayList<>();
     }
@@ -30,6 +31,7 @@ public abstract class FactorGraphAgent extends SynchronousAgent {
 
     public void addFunctionNode(FactorNode node) {
         if (!factorNodes.contains(node)) {
+            node.setIndex(factorNodes.size());
             factorNodes.add(node);
             // System.out.println("Agent " + this.getName() + " registers function node " + node.toString());
 
@@ -38,6 +40,7 @@ public abstract class FactorGraphAgent extends SynchronousAgent {
 
     public void addVariableNode(VariableNode node) {
         if (!variableNodes.contains(node)) {
+            node.setIndex(variableNodes.size());
             variableNodes.add(node);
             // System.out.println("Agent " + this.getName() + " registers variable node " + node.toString());
         }
@@ -0,0 +1,407 @@
+package agent.MaxSum;
+
+import kernel.*;
+
+import java.util.*;
+
+/**
+ * Bounded MaxSum: relaxes a (minimization) DCOP instance into an acyclic one, on which MaxSum is exact and
+ * converges in a bounded number of cycles, and bounds the quality of the solutions found on it.
+ *
+ * Each dependency of a factor f on one of its variables x is weighted by its impact, i.e., the largest range of
+ * the values of f when only x changes: w(f, x) = max_{y} [max_{x} f(x, y) - min_{x} f(x, y)]. The dependencies
+ * which are not in a maximum spanning tree (forest) of the factor graph are removed, by minimizing f over their
+ * variables. The optimum of the relaxed instance is a lower bound of the optimum of the original one, and it is
+ * computed here exactly, as the relaxed factor graph is a forest. Hence the cost of any solution, evaluated on the
+ * original instance, is at most (cost / lowerBound) times the optimal cost. The sum of the weights of the removed
+ * dependencies (weightBound) is known before solving: the cost of an optimal solution of the relaxed instance
+ * (as found by MaxSum on it) is at most lowerBound + weightBound.
+ */
+public class BoundedMaxSum {
+
+    private final DCOPInstance instance;
+    private final List<Variable> variables;
+    private final List<Constraint> constraints;
+    private final HashMap<Variable, Integer> varIdx;
+
+    // The factors of the original instance, and of the relaxed one (the same object if no dependency is removed)
+    private final Factor[] factors;
+    private final Factor[] relaxedFactors;
+
+    private DCOPInstance relaxedInstance;
+    private double weightBound;
+    private double lowerBound;
+    private int nbRemovedDependencies;
+
+    /**
+     * @throws IllegalArgumentException If the instance is a maximization one: the bounds hold for minimization only.
+     */
+    public BoundedMaxSum(DCOPInstance instance) {
+        if (instance.getOptimizationType() == Constants.OPT_MAXIMIZE)
+            throw new IllegalArgumentException("Bounded MaxSum minimizes the costs: maximization is not supported");
+        this.instance = instance;
+        this.variables = new ArrayList<>(instance.getDCOPVariables());
+        this.constraints = new ArrayList<>(instance.getDCOPConstraints());
+        this.varIdx = new HashMap<>();
+        for (int v = 0; v < variables.size(); v++) {
+            varIdx.put(variables.get(v), v);
+        }
+
+        factors = new Factor[constraints.size()];
+        for (int f = 0; f < factors.length; f++) {
+            factors[f] = new Factor(constraints.get(f));
+        }
+        relaxedFactors = new Factor[factors.length];
+        relax();
+        lowerBound = solveRelaxed();
+
+        HashMap<Long, Integer> factorIdx = new HashMap<>();
+        for (int f = 0; f < factors.length; f++) {
+            factorIdx.put(constraints.get(f).getID(), f);
+        }
+        relaxedInstance = instance.copy((c, scope) -> {
+            int f = factorIdx.get(c.getID());
+            return relaxedFactors[f] == factors[f] ? c.copy(scope) : relaxedFactors[f].toConstraint(c, scope);
+        });
+    }
+
+    /**
+     * @return The relaxed (acyclic) instance, to be solved by MaxSum.
+     */
+    public DCOPInstance getRelaxedInstance() {
+        return relaxedInstance;
+    }
+
+    /**
+     * @return The optimal cost of the relaxed instance, which is a lower bound of the optimal cost.
+     */
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * @return The sum of the weights of the removed dependencies.
+     */
+    public double getWeightBound() {
+        return weightBound;
+    }
+
+    public int getNbRemovedDependencies() {
+        return nbRemovedDependencies;
+    }
+
+    /**
+     * @param values The value of each variable, by name.
+     * @return The cost of the given solution on the original instance (NaN if some variable has no value).
+     */
+    public double getCost(Map<String, Integer> values) {
+        double cost = 0;
+        for (Constraint c : constraints) {
+            Tuple tuple = new Tuple(c.getArity());
+            for (int p = 0; p < c.getArity(); p++) {
+                Integer val = values.get(c.getScope(p).getName());
+                if (val == null)
+                    return Double.NaN;
+                tuple.set(p, val);
+            }
+            cost += c.getValue(tuple);
+        }
+        return cost;
+    }
+
+    /**
+     * Keeps the dependencies of a maximum spanning forest of the factor graph (Kruskal), and minimizes each factor
+     * over the variables of its other dependencies.
+     */
+    private void relax() {
+        int nbVars = variables.size();
+        List<int[]> edges = new ArrayList<>();      // {factor, position of the variable in the factor}
+        List<Double> weights = new ArrayList<>();
+        for (int f = 0; f < factors.length; f++) {
+            for (int i = 0; i < factors[f].vars.length; i++) {
+                edges.add(new int[]{f, i});
+                weights.add(factors[f].getWeight(i));
+            }
+        }
+        Integer[] order = new Integer[edges.size()];
+        for (int e = 0; e < order.length; e++)
+            order[e] = e;
+        // Stable sort, by decreasing weight
+        Arrays.sort(order, (a, b) -> Double.compare(weights.get(b), weights.get(a)));
+
+        // Nodes: the variables, then the factors
+        int[] parent = new int[nbVars + factors.length];
+        for (int n = 0; n < parent.length; n++)
+            parent[n] = n;
+        boolean[][] removed = new boolean[factors.length][];
+        for (int f = 0; f < factors.length; f++)
+            removed[f] = new boolean[factors[f].vars.length];
+
+        for (int e : order) {
+            int f = edges.get(e)[0];
+            int i = edges.get(e)[1];
+            int a = find(parent, factors[f].vars[i]);
+            int b = find(parent, nbVars + f);
+            if (a != b) {
+                parent[a] = b;
+            } else {
+                removed[f][i] = true;
+                weightBound += weights.get(e);
+                nbRemovedDependencies++;
+            }
+        }
+
+        for (int f = 0; f < factors.length; f++) {
+            relaxedFactors[f] = factors[f].minimize(removed[f]);
+        }
+    }
+
+    private static int find(int[] parent, int n) {
+        while (parent[n] != n) {
+            parent[n] = parent[parent[n]];
+            n = parent[n];
+        }
+        return n;
+    }
+
+    /**
+     * Computes the optimal cost of the relaxed instance, by min-sum dynamic programming on each tree of the relaxed
+     * factor graph, rooted at one of its variables.
+     */
+    private double solveRelaxed() {
+        int nbVars = variables.size();
+        List<List<Integer>> varFactors = new ArrayList<>();
+        for (int v = 0; v < nbVars; v++)
+            varFactors.add(new ArrayList<>());
+        for (int f = 0; f < relaxedFactors.length; f++) {
+            for (int x : relaxedFactors[f].vars)
+                varFactors.get(x).add(f);
+        }
+
+        // The message of each node to its parent, and the parent of each factor
+        double[][] varMsg = new double[nbVars][];
+        double[][] factorMsg = new double[relaxedFactors.length][];
+        int[] factorParent = new int[relaxedFactors.length];
+        boolean[] visited = new boolean[nbVars];
+
+        double cost = 0;
+        for (int root = 0; root < nbVars; root++) {
+            if (visited[root])
+                continue;
+            // Nodes in DFS pre-order: variables as v >= 0, factors as -(f + 1)
+            List<Integer> preOrder = new ArrayList<>();
+            Deque<int[]> stack = new ArrayDeque<>();      // {node, parent variable or factor}
+            stack.push(new int[]{root, Integer.MIN_VALUE});
+            visited[root] = true;
+            while (!stack.isEmpty()) {
+                int[] top = stack.pop();
+                int node = top[0];
+                preOrder.add(node);
+                if (node >= 0) {
+                    for (int f : varFactors.get(node)) {
+                        if (-(f + 1) != top[1]) {
+                            factorParent[f] = node;
+                            stack.push(new int[]{-(f + 1), node});
+                        }
+                    }
+                } else {
+                    for (int x : relaxedFactors[-node - 1].vars) {
+                        if (x != top[1]) {
+                            visited[x] = true;
+                            stack.push(new int[]{x, node});
+                        }
+                    }
+                }
+            }
+
+            // Messages from the leaves to the root
+            double[] rootSum = null;
+            for (int k = preOrder.size() - 1; k >= 0; k--) {
+                int node = preOrder.get(k);
+                if (node >= 0) {
+                    double[] sum = new double[variables.get(node).getDomain().size()];
+                    for (int f : varFactors.get(node)) {
+                        if (factorParent[f] == node)
+                            Commons.addArray(sum, factorMsg[f]);
+                    }
+                    if (node == root)
+                        rootSum = sum;
+                    else
+                        varMsg[node] = sum;
+                } else {
+                    int f = -node - 1;
+                    factorMsg[f] = relaxedFactors[f].project(factorParent[f], varMsg);
+                }
+            }
+            cost += Commons.getMin(rootSum);
+        }
+        return cost;
+    }
+
+    /**
+     * A factor as a mixed-radix table over its distinct variables (the last one varies fastest).
+     */
+    private class Factor {
+        private final int[] vars;
+        private final int[] radix;
+        private final double[] table;
+
+        Factor(int[] vars, int[] radix, double[] table) {
+            this.vars = vars;
+            this.radix = radix;
+            this.table = table;
+        }
+
+        Factor(Constraint c) {
+            List<Integer> distinct = new ArrayList<>();
+            for (Variable x : c.getScope()) {
+                if (!distinct.contains(varIdx.get(x)))
+                    distinct.add(varIdx.get(x));
+            }
+            vars = new int[distinct.size()];
+            radix = new int[vars.length];
+            int size = 1;
+            for (int i = 0; i < vars.length; i++) {
+                vars[i] = distinct.get(i);
+                radix[i] = variables.get(vars[i]).getDomain().size();
+                size *= radix[i];
+            }
+            int[] scopeToVar = new int[c.getArity()];
+            for (int p = 0; p < scopeToVar.length; p++)
+                scopeToVar[p] = distinct.indexOf(varIdx.get(c.getScope(p)));
+
+            table = new double[size];
+            int[] idx = new int[vars.length];
+            Tuple tuple = new Tuple(c.getArity());
+            for (int t = 0; t < size; t++) {
+                for (int p = 0; p < scopeToVar.length; p++) {
+                    int i = scopeToVar[p];
+                    tuple.set(p, variables.get(vars[i]).getDomain().getElement(idx[i]));
+                }
+                table[t] = c.getValue(tuple);
+                next(idx, radix);
+            }
+        }
+
+        /**
+         * @return The impact of the i-th variable: max_{y} [max_{x_i} f - min_{x_i} f].
+         */
+        double getWeight(int i) {
+            int stride = 1;
+            for (int j = vars.length - 1; j > i; j--)
+                stride *= radix[j];
+            double weight = 0;
+            for (int t = 0; t < table.length; t++) {
+                // Entries with x_i = 0
+                if ((t / stride) % radix[i] != 0)
+                    continue;
+                double min = table[t];
+                double max = table[t];
+                for (int k = 1; k < radix[i]; k++) {
+                    min = Math.min(min, table[t + k * stride]);
+                    max = Math.max(max, table[t + k * stride]);
+                }
+                weight = Math.max(weight, max - min);
+            }
+            return weight;
+        }
+
+        /**
+         * @return This factor minimized over the variables of the removed positions (this factor, if none is).
+         */
+        Factor minimize(boolean[] removed) {
+            int nbKept = 0;
+            for (boolean r : removed)
+                if (!r) nbKept++;
+            if (nbKept == vars.length)
+                return this;
+
+            int[] keptVars = new int[nbKept];
+            int[] keptRadix = new int[nbKept];
+            int size = 1;
+            for (int i = 0, k = 0; i < vars.length; i++) {
+                if (!removed[i]) {
+                    keptVars[k] = vars[i];
+                    keptRadix[k] = radix[i];
+                    size *= radix[i];
+                    k++;
+                }
+            }
+            double[] relaxedTable = new double[size];
+            Arrays.fill(relaxedTable, Double.POSITIVE_INFINITY);
+
+            int[] idx = new int[vars.length];
+            for (int t = 0; t < table.length; t++) {
+                int rt = 0;
+                for (int i = 0, k = 0; i < vars.length; i++) {
+                    if (!removed[i])
+                        rt = rt * keptRadix[k++] + idx[i];
+                }
+                relaxedTable[rt] = Math.min(relaxedTable[rt], table[t]);
+                next(idx, radix);
+            }
+            return new Factor(keptVars, keptRadix, relaxedTable);
+        }
+
+        /**
+         * @return The table min_{other variables} [f + sum of the messages of the other variables], as a function
+         * of the given variable.
+         */
+        double[] project(int var, double[][] varMsg) {
+            int pos = 0;
+            while (vars[pos] != var)
+                pos++;
+            double[] out = new double[radix[pos]];
+            Arrays.fill(out, Double.POSITIVE_INFINITY);
+            int[] idx = new int[vars.length];
+            for (int t = 0; t < table.length; t++) {
+                double value = table[t];
+                for (int i = 0; i < vars.length; i++) {
+                    if (i != pos)
+                        value += varMsg[vars[i]][idx[i]];
+                }
+                out[idx[pos]] = Math.min(out[idx[pos]], value);
+                next(idx, radix);
+            }
+            return out;
+        }
+
+        /**
+         * @return This factor as a constraint with the name and ID of c, over the given variables of the relaxed
+         * instance.
+         */
+        Constraint toConstraint(Constraint c, ArrayList<Variable> scope) {
+            ArrayList<Variable> keptScope = new ArrayList<>();
+            for (int x : vars) {
+                for (Variable v : scope) {
+                    if (v.getID() == variables.get(x).getID() && !keptScope.contains(v)) {
+                        keptScope.add(v);
+                    }
+                }
+            }
+            Constraint relaxed;
+            if (keptScope.size() == 1)
+                relaxed = new TableUnaryConstraint(c.getName(), c.getID(), keptScope.get(0), 0);
+            else if (keptScope.size() == 2)
+                relaxed = new TableBinaryConstraint(c.getName(), c.getID(), keptScope, 0);
+            else
+                relaxed = new TableConstraint(c.getName(), c.getID(), keptScope, 0);
+
+            int[] idx = new int[vars.length];
+            for (int t = 0; t < table.length; t++) {
+                int[] values = new int[vars.length];
+                for (int i = 0; i < vars.length; i++)
+                    values[i] = keptScope.get(i).getDomain().getElement(idx[i]);
+                relaxed.addValue(new Tuple(values), table[t], instance.getOptimizationType());
+                next(idx, radix);
+            }
+            return relaxed;
+        }
+    }
+
+    private static void next(int[] idx, int[] radix) {
+        for (int j = idx.length - 1; j >= 0 && ++idx[j] == radix[j]; j--) {
+            idx[j] = 0;
+        }
+    }
+}
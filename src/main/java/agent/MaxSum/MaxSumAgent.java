@@ -3,15 +3,16 @@ package agent.MaxSum;
 import agent.FactorGraphAgent;
 import communication.BasicMessage;
 import communication.ComAgent;
+import communication.DCOPagent;
 import communication.FactorNode;
 import communication.VariableNode;
 import kernel.AgentState;
 import kernel.Commons;
+import kernel.Logger;
+import kernel.SimulationContext;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Created by nandofioretto on 5/15/17.
@@ -19,11 +20,16 @@ import java.util.TreeMap;
 public class MaxSumAgent extends FactorGraphAgent {
 
     private int nbCycles = Integer.MAX_VALUE;
-    private double convergenceDelta = 0.001;
+    // The weight of the previous table in each message (0 = no damping)
+    private double damping = 0;
+    // The messages to remote nodes whose values changed by less than threshold since the last one sent are not
+    // sent (0 = all messages are sent): the recipient keeps the last table received.
+    private double threshold = 0;
 
-    // key: variableNode ID, value = maxSumNode
-    private Map<Long, MaxSumVariableNode> variableNodes;
-    private Map<Long, MaxSumFactorNode> factorNodes;
+    // The nodes owned by this agent, indexed by their (local) index: the messages carry the index of the recipient
+    // node and the position of the sender in its neighbors, hence they are delivered without any lookup.
+    private MaxSumVariableNode[] variableNodes;
+    private MaxSumFactorNode[] factorNodes;
 
     // Message counts (MAKE THIS A CLASS Msg Manager)
     private int nbRecvFmsgs = 0;
@@ -31,18 +37,29 @@ public class MaxSumAgent extends FactorGraphAgent {
     private int nbRecvVmsgs = 0;
     int totalNbFneibgbors = 0;
 
-    // key = varID; value = variableNodes index associated to that variable ID
-    private Map<Long, Integer> mapVarPos;
-
-    public MaxSumAgent(ComAgent statsCollector, AgentState agentState, List<Object> parameters) {
-        super(statsCollector, agentState);
-        // Check argument:
-        assert (parameters.size() == 1);
+    // The position of the variable of each variable node (as in variableNodes) in the agent view
+    private int[] varPos;
+
+    // Selective sending: the agents owning remote neighbors of the nodes, and the number of messages not sent to
+    // each of them at the current cycle (V->F and F->V), which are reported along with the first message sent to
+    // the agent, or with a heartbeat message if no message is sent to it.
+    private DCOPagent[] remoteAgents;
+    // The position in remoteAgents of the owner of each neighbor of each node (-1 if owned by this agent)
+    private int[][] vnodeNeighborAgents;
+    private int[][] fnodeNeighborAgents;
+    private int[] nbSkippedVmsgs;
+    private int[] nbSkippedFmsgs;
+
+    public MaxSumAgent(ComAgent statsCollector, AgentState agentState, SimulationContext context,
+                       List<Object> parameters) {
+        super(statsCollector, agentState, context);
+        // Check argument: nb. cycles, timeout [, damping [, selective sending threshold]]
+        assert (parameters.size() >= 1);
         this.nbCycles = (int) parameters.get(0);
-
-        variableNodes = new TreeMap<>();
-        factorNodes = new TreeMap<>();
-        mapVarPos = new HashMap<>();
+        if (parameters.size() > 2)
+            this.damping = (double) parameters.get(2);
+        if (parameters.size() > 3)
+            this.threshold = (double) parameters.get(3);
     }
 
     @Override
@@ -56,22 +73,50 @@ public class MaxSumAgent extends FactorGraphAgent {
         getAgentActions().setVariableValue(0);
 
         // Initialize MaxSumVariableNodes
-        for (VariableNode vnode : getVariableNodes()) {
-            variableNodes.put(vnode.getID(), new MaxSumVariableNode(vnode));
-            int vIdx = findVariableID(vnode.getVariable().getID());
-            mapVarPos.put(vnode.getID(), vIdx);
+        List<VariableNode> vnodes = getVariableNodes();
+        variableNodes = new MaxSumVariableNode[vnodes.size()];
+        varPos = new int[vnodes.size()];
+        for (int i = 0; i < vnodes.size(); i++) {
+            VariableNode vnode = vnodes.get(i);
+            variableNodes[i] = new MaxSumVariableNode(vnode, getRandom());
+            variableNodes[i].setDamping(damping);
+            varPos[i] = findVariableID(vnode.getVariable().getID());
             //totalNbFneibgbors += vnode.getNeighbors().size();
             totalNbFneibgbors += vnode.getNbNotOwnedNeighbors();
         }
-        System.out.println(getName() + " num VariableNode's neighbors: " + totalNbFneibgbors);
+        Logger.debug(() -> getName() + " num VariableNode's neighbors: " + totalNbFneibgbors);
 
         // Initialize MaxSumFactorNodes
-        for (FactorNode fnode : getFactorNodes()) {
-            factorNodes.put(fnode.getID(), new MaxSumFactorNode(fnode));
+        List<FactorNode> fnodes = getFactorNodes();
+        factorNodes = new MaxSumFactorNode[fnodes.size()];
+        for (int i = 0; i < fnodes.size(); i++) {
+            FactorNode fnode = fnodes.get(i);
+            factorNodes[i] = new MaxSumFactorNode(fnode);
+            factorNodes[i].setDamping(damping);
             //totalNbVneibgbors += fnode.getNeighbors().size(); //fnode.getNbNotOwnedNeighbors();
             totalNbVneibgbors += fnode.getNbNotOwnedNeighbors();
         }
-        System.out.println(getName() + " num FactorNode's neighbors: " + totalNbVneibgbors);
+        Logger.debug(() -> getName() + " num FactorNode's neighbors: " + totalNbVneibgbors);
+
+        // Initialize the remote agents
+        List<DCOPagent> agents = new ArrayList<>();
+        vnodeNeighborAgents = new int[variableNodes.length][];
+        for (int i = 0; i < variableNodes.length; i++) {
+            List<FactorNode> neighbors = variableNodes[i].getNeighbors();
+            vnodeNeighborAgents[i] = new int[neighbors.size()];
+            for (int j = 0; j < neighbors.size(); j++)
+                vnodeNeighborAgents[i][j] = getRemoteAgentIndex(agents, neighbors.get(j).getOwner());
+        }
+        fnodeNeighborAgents = new int[factorNodes.length][];
+        for (int i = 0; i < factorNodes.length; i++) {
+            List<VariableNode> neighbors = factorNodes[i].getNeighbors();
+            fnodeNeighborAgents[i] = new int[neighbors.size()];
+            for (int j = 0; j < neighbors.size(); j++)
+                fnodeNeighborAgents[i][j] = getRemoteAgentIndex(agents, neighbors.get(j).getOwner());
+        }
+        remoteAgents = agents.toArray(new DCOPagent[0]);
+        nbSkippedVmsgs = new int[remoteAgents.length];
+        nbSkippedFmsgs = new int[remoteAgents.length];
 
         // start cycling
         super.onStart();
@@ -84,77 +129,149 @@ public class MaxSumAgent extends FactorGraphAgent {
 
         if (message instanceof VnodeToFnodeMessage) {
             VnodeToFnodeMessage msg = (VnodeToFnodeMessage)message;
-            long fnodeId = msg.getFactorNodeID();
-            long vNodeId = msg.getVariableNodeID();
-            factorNodes.get(fnodeId).copyCostTable(msg.getTable(), vNodeId);
+            factorNodes[msg.getRecipientIndex()].copyCostTable(msg.getTable(), msg.getRecipientSlot());
             nbRecvVmsgs ++;
 
-            System.out.println(getName() + " received " + message.toString()
+            Logger.trace(() -> getName() + " received " + message.toString()
                     + "  # V->F msg recv: " + nbRecvVmsgs + " / " + totalNbVneibgbors
                     + "  # F->V msg recv: " + nbRecvFmsgs + " / " + totalNbFneibgbors);
 
-            if (nbRecvVmsgs == totalNbVneibgbors && nbRecvFmsgs == totalNbFneibgbors) {
-                terminateCycle();
-            }
+            onSkippedMessages(msg.getNbSkippedVmsgs(), msg.getNbSkippedFmsgs());
         }
         else if (message instanceof FnodeToVnodeMessage) {
             FnodeToVnodeMessage msg = (FnodeToVnodeMessage)message;
-            long fNodeId = msg.getFactorNodeID();
-            long vNodeId = msg.getVariableNodeID();
-            variableNodes.get(vNodeId).copyCostTable(msg.getTable(), fNodeId);
+            variableNodes[msg.getRecipientIndex()].copyCostTable(msg.getTable(), msg.getRecipientSlot());
             nbRecvFmsgs ++;
 
-            System.out.println(getName() + " received " + message.toString()
+            Logger.trace(() -> getName() + " received " + message.toString()
                     + "  # V->F msg recv: " + nbRecvVmsgs + " / " + totalNbVneibgbors
                     + "  # F->V msg recv: " + nbRecvFmsgs + " / " + totalNbFneibgbors);
 
-            if (nbRecvVmsgs == totalNbVneibgbors && nbRecvFmsgs == totalNbFneibgbors) {
-                terminateCycle();
-            }
+            onSkippedMessages(msg.getNbSkippedVmsgs(), msg.getNbSkippedFmsgs());
+        }
+        else if (message instanceof HeartbeatMessage) {
+            HeartbeatMessage msg = (HeartbeatMessage)message;
+            onSkippedMessages(msg.getNbSkippedVmsgs(), msg.getNbSkippedFmsgs());
+        }
+    }
+
+    /**
+     * Counts the messages the sender did not send at this cycle as received (the last tables received are kept),
+     * and terminates the cycle if all messages have been received.
+     */
+    private void onSkippedMessages(int nbSkippedVmsgs, int nbSkippedFmsgs) {
+        nbRecvVmsgs += nbSkippedVmsgs;
+        nbRecvFmsgs += nbSkippedFmsgs;
+        if (nbRecvVmsgs == totalNbVneibgbors && nbRecvFmsgs == totalNbFneibgbors) {
+            terminateCycle();
         }
     }
 
     @Override
     protected void cycle() {
+        // Compute the tables: VarNode -> FuncNode, and FuncNode -> VarNode (from the tables of the previous cycle)
+        double residual = 0;
+        for (MaxSumVariableNode vnode : variableNodes) {
+            vnode.computeTables();
+            residual = Math.max(residual, vnode.getResidual());
+        }
+        for (MaxSumFactorNode fnode : factorNodes) {
+            fnode.computeTables();
+            residual = Math.max(residual, fnode.getResidual());
+        }
+        // The residual covers the messages of both directions: if none changed, the next ones are the same
+        reportResidual(residual);
+
+        // Count the messages which are not sent, before sending any message
+        if (threshold > 0) {
+            for (int v = 0; v < variableNodes.length; v++) {
+                int[] owners = vnodeNeighborAgents[v];
+                for (int i = 0; i < owners.length; i++) {
+                    if (owners[i] >= 0 && !variableNodes[v].hasChanged(i, threshold))
+                        nbSkippedVmsgs[owners[i]]++;
+                }
+            }
+            for (int f = 0; f < factorNodes.length; f++) {
+                int[] owners = fnodeNeighborAgents[f];
+                for (int i = 0; i < owners.length; i++) {
+                    if (owners[i] >= 0 && !factorNodes[f].hasChanged(i, threshold))
+                        nbSkippedFmsgs[owners[i]]++;
+                }
+            }
+        }
 
         // Send messages: VarNode -> FuncNode
-        for (MaxSumVariableNode vnode : variableNodes.values()) {
-            for (FactorNode fnode : vnode.getNeighbors()) {
-                double[] table = vnode.getTable(fnode);
-                if (fnode.getOwner().equals(this)) {
-                    factorNodes.get(fnode.getID()).copyCostTable(table, vnode.getID());
-                } else {
-                    MaxSumAgent.VnodeToFnodeMessage msg =
-                            new MaxSumAgent.VnodeToFnodeMessage(table, vnode.getID(), fnode.getID(), getCurrentCycle());
-                    fnode.getOwner().tell(msg, getSelf());
+        // The tables and the messages are reused at every cycle: the recipient copies them when received
+        for (int v = 0; v < variableNodes.length; v++) {
+            MaxSumVariableNode vnode = variableNodes[v];
+            List<FactorNode> neighbors = vnode.getNeighbors();
+            for (int i = 0; i < neighbors.size(); i++) {
+                int a = vnodeNeighborAgents[v][i];
+                if (a < 0) {
+                    factorNodes[neighbors.get(i).getIndex()].copyCostTable(vnode.getTable(i), vnode.getSlot(i));
+                } else if (threshold == 0) {
+                    remoteAgents[a].tell(vnode.getMessage(i, getCurrentCycle()), getSelf());
+                } else if (vnode.hasChanged(i, threshold)) {
+                    vnode.markSent(i);
+                    send(vnode.getMessage(i, getCurrentCycle()), a);
                 }
             }
         }
 
         // Send messages: FuncNode -> VarNode
-        for (MaxSumFactorNode fnode : factorNodes.values()) {
-            for (VariableNode vnode : fnode.getNeighbors()) {
-                double[] table = fnode.getTable(vnode);
-                if (vnode.getOwner().equals(this)) {
-                    variableNodes.get(vnode.getID()).copyCostTable(table, fnode.getID());
-                } else {
-                    MaxSumAgent.FnodeToVnodeMessage msg =
-                            new MaxSumAgent.FnodeToVnodeMessage(table, fnode.getID(), vnode.getID(), getCurrentCycle());
-                    vnode.getOwner().tell(msg, getSelf());
+        for (int f = 0; f < factorNodes.length; f++) {
+            MaxSumFactorNode fnode = factorNodes[f];
+            List<VariableNode> neighbors = fnode.getNeighbors();
+            for (int i = 0; i < neighbors.size(); i++) {
+                int a = fnodeNeighborAgents[f][i];
+                if (a < 0) {
+                    variableNodes[neighbors.get(i).getIndex()].copyCostTable(fnode.getTable(i), fnode.getSlot(i));
+                } else if (threshold == 0) {
+                    remoteAgents[a].tell(fnode.getMessage(i, getCurrentCycle()), getSelf());
+                } else if (fnode.hasChanged(i, threshold)) {
+                    fnode.markSent(i);
+                    send(fnode.getMessage(i, getCurrentCycle()), a);
+                }
+            }
+        }
+
+        // The agents to which no message has been sent are told how many messages they will not receive
+        if (threshold > 0) {
+            for (int a = 0; a < remoteAgents.length; a++) {
+                if (nbSkippedVmsgs[a] > 0 || nbSkippedFmsgs[a] > 0) {
+                    remoteAgents[a].tell(new HeartbeatMessage(nbSkippedVmsgs[a], nbSkippedFmsgs[a]), getSelf());
+                    nbSkippedVmsgs[a] = 0;
+                    nbSkippedFmsgs[a] = 0;
                 }
             }
         }
+
+        // An agent with no remote neighbors does not wait for any message
+        if (totalNbVneibgbors == 0 && totalNbFneibgbors == 0) {
+            terminateCycle();
+        }
+    }
+
+    /**
+     * Sends a message to a remote agent (given by its position in remoteAgents), along with the number of messages
+     * not sent to it at this cycle.
+     */
+    private void send(TableMessage msg, int a) {
+        msg.setNbSkippedMsgs(nbSkippedVmsgs[a], nbSkippedFmsgs[a]);
+        nbSkippedVmsgs[a] = 0;
+        nbSkippedFmsgs[a] = 0;
+        remoteAgents[a].tell(msg, getSelf());
     }
 
     @Override
     protected void onCycleStart() {
         // Select best value from all the variables controlled by this agent by calling the routines in variable nodes
-        for (MaxSumVariableNode vnode : variableNodes.values()) {
-            int val = vnode.selectBestValue();
-            getAgentActions().setVariableValue(mapVarPos.get(vnode.getID()), val);
+        for (int i = 0; i < variableNodes.length; i++) {
+            int val = variableNodes[i].selectBestValue();
+            getAgentActions().setVariableValue(varPos[i], val);
         }
 
-        System.out.println("Agent " + getName() + " Starting cycle: " + getCurrentCycle() +
+        Logger.debug(() -> "Agent " + getName() + " Starting cycle: " + getCurrentCycle() +
                 " select value: " + getAgentView().getVariableValue() );
     }
 
@@ -164,13 +281,30 @@ public class MaxSumAgent extends FactorGraphAgent {
         nbRecvVmsgs = 0;
 
         // Save all received messages to be used in the next iteration
-        variableNodes.values().forEach(MaxSumVariableNode::saveReceivedCostTables);
-        factorNodes.values().forEach(MaxSumFactorNode::saveReceivedCostTables);
+        for (MaxSumVariableNode vnode : variableNodes)
+            vnode.saveReceivedCostTables();
+        for (MaxSumFactorNode fnode : factorNodes)
+            fnode.saveReceivedCostTables();
 
-        System.out.println("Agent " + getName() + " Terminating cycle  " + getCurrentCycle());
+        Logger.debug(() -> "Agent " + getName() + " Terminating cycle  " + getCurrentCycle());
     }
 
     /// Auxiliary Functions
+    /**
+     * @return The position of the given agent in the list of remote agents, to which it is added if missing, or -1
+     * if it is this agent.
+     */
+    private int getRemoteAgentIndex(List<DCOPagent> agents, DCOPagent agent) {
+        if (agent.equals(this))
+            return -1;
+        int a = agents.indexOf(agent);
+        if (a < 0) {
+            a = agents.size();
+            agents.add(agent);
+        }
+        return a;
+    }
+
     private int findVariableID(long id) {
         for (int i = 0; i < getAgentView().getNbVariables(); i++) {
             long vId = getAgentView().getVariableId(i);
@@ -186,12 +320,20 @@ public class MaxSumAgent extends FactorGraphAgent {
         protected double[] table;
         protected long fNodeId; // sender factor node
         protected long vNodeId; // receiver factor node
+        // The index of the recipient node in its owner, and the position of the sender node in its neighbors
+        protected int recvIndex;
+        protected int recvSlot;
         protected int cycleNo;
+        // The number of messages (V->F and F->V) the sender did not send to the recipient at this cycle
+        protected int nbSkippedVmsgs;
+        protected int nbSkippedFmsgs;
 
-        public TableMessage(double[] table, long vNodeId, long fNodeId, int currCycle) {
+        public TableMessage(double[] table, long vNodeId, long fNodeId, int recvIndex, int recvSlot, int currCycle) {
             this.table = table;//table.clone();
             this.vNodeId = vNodeId;
             this.fNodeId = fNodeId;
+            this.recvIndex = recvIndex;
+            this.recvSlot = recvSlot;
             this.cycleNo = currCycle;
         }
 
@@ -203,14 +345,72 @@ public class MaxSumAgent extends FactorGraphAgent {
             return vNodeId;
         }
 
+        public int getRecipientIndex() {
+            return recvIndex;
+        }
+
+        public int getRecipientSlot() {
+            return recvSlot;
+        }
+
         public int getCycleNo() {
             return cycleNo;
         }
 
+        void setCycleNo(int cycleNo) {
+            this.cycleNo = cycleNo;
+        }
+
         public double[] getTable() {
             return table;
         }
 
+        public int getNbSkippedVmsgs() {
+            return nbSkippedVmsgs;
+        }
+
+        public int getNbSkippedFmsgs() {
+            return nbSkippedFmsgs;
+        }
+
+        void setNbSkippedMsgs(int nbSkippedVmsgs, int nbSkippedFmsgs) {
+            this.nbSkippedVmsgs = nbSkippedVmsgs;
+            this.nbSkippedFmsgs = nbSkippedFmsgs;
+        }
+
+        @Override
+        public int getSize() {
+            return table.length;
+        }
+
+    }
+
+    /**
+     * Tells the recipient how many messages (V->F and F->V) the sender did not send to it at this cycle, when
+     * no other message is sent to it.
+     */
+    public static class HeartbeatMessage extends BasicMessage {
+        private static final long serialVersionUID = -8531699129511414324L;
+        private final int nbSkippedVmsgs;
+        private final int nbSkippedFmsgs;
+
+        public HeartbeatMessage(int nbSkippedVmsgs, int nbSkippedFmsgs) {
+            this.nbSkippedVmsgs = nbSkippedVmsgs;
+            this.nbSkippedFmsgs = nbSkippedFmsgs;
+        }
+
+        public int getNbSkippedVmsgs() {
+            return nbSkippedVmsgs;
+        }
+
+        public int getNbSkippedFmsgs() {
+            return nbSkippedFmsgs;
+        }
+
+        @Override
+        public String toString() {
+            return "HeartbeatMessage: skipped V->F " + nbSkippedVmsgs + " F->V " + nbSkippedFmsgs;
+        }
     }
 
     public static class VnodeToFnodeMessage extends TableMessage {
@@ -219,10 +419,13 @@ public class MaxSumAgent extends FactorGraphAgent {
          * @param table The cost table
          * @param vNodeId sender (variable) node ID
          * @param fNodeId receiver (factor) node ID
+         * @param fNodeIndex receiver (factor) node index, in its owner
+         * @param slot position of the sender in the neighbors of the receiver
          * @param currCycle the sender cycle number
          */
-        public VnodeToFnodeMessage(double[] table, long vNodeId, long fNodeId, int currCycle) {
-            super(table, vNodeId, fNodeId, currCycle);
+        public VnodeToFnodeMessage(double[] table, long vNodeId, long fNodeId, int fNodeIndex, int slot,
+                                   int currCycle) {
+            super(table, vNodeId, fNodeId, fNodeIndex, slot, currCycle);
         }
 
         @Override
@@ -234,15 +437,30 @@ public class MaxSumAgent extends FactorGraphAgent {
     }
 
     public static class FnodeToVnodeMessage extends TableMessage {
+        // The size of the constraint table of the sender, which is swept to compute the message
+        private int nbComputedCells;
+
         /**
          * A Variable to Factor node message
          * @param table The cost table
          * @param fNodeId sender (factor) node ID
          * @param vNodeId receiver (variable) node ID
+         * @param vNodeIndex receiver (variable) node index, in its owner
+         * @param slot position of the sender in the neighbors of the receiver
          * @param currCycle the sender cycle number
          */
-        public FnodeToVnodeMessage(double[] table, long fNodeId, long vNodeId, int currCycle) {
-            super(table, vNodeId, fNodeId, currCycle);
+        public FnodeToVnodeMessage(double[] table, long fNodeId, long vNodeId, int vNodeIndex, int slot,
+                                   int currCycle) {
+            super(table, vNodeId, fNodeId, vNodeIndex, slot, currCycle);
+        }
+
+        void setNbComputedCells(int nbComputedCells) {
+            this.nbComputedCells = nbComputedCells;
+        }
+
+        @Override
+        public int getNbComputedCells() {
+            return nbComputedCells > 0 ? nbComputedCells : getSize();
         }
 
         @Override
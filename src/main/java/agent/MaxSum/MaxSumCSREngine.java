@@ -0,0 +1,577 @@
+package agent.MaxSum;
+
+import communication.AgentStatistics;
+import communication.CycleTickerDeamon;
+import kernel.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A centralized MaxSum engine, which runs the synchronous MaxSum cycles directly over the factor graph, instead of
+ * simulating the agents. The factor graph is compiled into CSR arrays: the edges of each factor are contiguous (in
+ * order of scope), and each variable lists the IDs of its edges (in order of constraint). All messages live in one
+ * contiguous pool per direction and buffer (current and next cycle), at a per-edge offset.
+ *
+ * The cycles perform the same computations as MaxSumAgent, in the same order, hence the solution values of each
+ * cycle are identical; the message counts are those of the agents, i.e., the messages on the edges between nodes
+ * owned by different agents. The simulated time is the wall-clock time of the engine. Damping and the convergence
+ * check are those of MaxSumAgent and CycleTickerDeamon.
+ */
+public class MaxSumCSREngine {
+
+    // Minimum number of nodes processed by a single fork-join task
+    private static final int MIN_GRAIN_SIZE = 256;
+    private int grainSize = MIN_GRAIN_SIZE;
+
+    private final Variable[] variables;
+    private final List<AgentState> agents;
+
+    // Variables: domain sizes, and their edges (varEdges[varOffset[v]] ... varEdges[varOffset[v+1]-1])
+    private int[] domSize;
+    private int[] varOffset;
+    private int[] varEdges;
+
+    // Factors: their edges (factorOffset[f] ... factorOffset[f+1]-1)
+    private int[] factorOffset;
+    // Edges: the variable of the edge, and the offset of its messages in the pools (msgOffset[e+1]-msgOffset[e]
+    // values, the domain size of the variable)
+    private int[] edgeVar;
+    private int[] msgOffset;
+
+    // The constraint tables. Binary factors: the matrix oriented towards the variable of each edge, at
+    // edgeTable[e]. Other factors: the mixed-radix table over the factor variables, at factorTable[f] (-1 for
+    // binary factors).
+    private double[] tables;
+    private int[] edgeTable;
+    private int[] factorTable;
+
+    // The messages sent by the variables to the factors (q), and by the factors to the variables (r)
+    private double[] q, qNext;
+    private double[] r, rNext;
+
+    // The number of messages sent at each cycle by each agent (without selective sending)
+    private int[] agentMsgs;
+    private int[] varAgent;
+
+    // Selective sending (disabled if threshold = 0): the messages computed by the variables and the factors, of
+    // which only those which changed by at least threshold since the last one sent on a remote edge are delivered
+    // (into qNext and rNext). The link (pair of sender and recipient agents) of each edge, in each direction (-1 if
+    // the two nodes are owned by the same agent), and the messages sent and not sent on each link at this cycle.
+    private double threshold = 0;
+    private double[] qOut, rOut;
+    private int[] qLink, rLink;
+    private int[] linkSender;
+    private int[] linkSent, linkSkipped;
+    private int maxDomSize;
+    private int maxArity;
+
+    // The weight of the previous table in each message, the maximum change of the messages of each variable and of
+    // each factor at the current cycle, and the convergence check (disabled if convergenceCycles = 0)
+    private double damping = 0;
+    private double[] residuals;
+    private double[] factorResiduals;
+    private int convergenceCycles = 0;
+    private double convergenceDelta = CycleTickerDeamon.DEFAULT_CONVERGENCE_DELTA;
+
+    public MaxSumCSREngine(DCOPInstance instance) {
+        this(instance, new MinIdFactorAllocation());
+    }
+
+    /**
+     * @param allocation The allocation of the factors to the agents, which determines the messages counted.
+     */
+    public MaxSumCSREngine(DCOPInstance instance, FactorAllocation allocation) {
+        this.agents = new ArrayList<>(instance.getDCOPAgents());
+        this.variables = instance.getDCOPVariables().toArray(new Variable[0]);
+        compile(instance, allocation);
+    }
+
+    /**
+     * Sets the number of nodes below which a sweep is not split among the threads (e.g., to split the sweeps of a
+     * small instance in the tests).
+     */
+    void setGrainSize(int grainSize) {
+        this.grainSize = grainSize;
+    }
+
+    public void setDamping(double damping) {
+        this.damping = damping;
+    }
+
+    /**
+     * Sets the selective sending threshold (see MaxSumAgent).
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Stops the run once the residual of the messages has been smaller than delta for the given number of
+     * consecutive cycles (0 = disabled).
+     */
+    public void setConvergence(int nbCycles, double delta) {
+        this.convergenceCycles = nbCycles;
+        this.convergenceDelta = delta;
+    }
+
+    /**
+     * Builds the CSR arrays of the factor graph, with nodes and edges in the same order as kernel.FactorGraph.
+     */
+    private void compile(DCOPInstance instance, FactorAllocation allocation) {
+        int nbVars = variables.length;
+        HashMap<Variable, Integer> varIdx = new HashMap<>();
+        domSize = new int[nbVars];
+        varAgent = new int[nbVars];
+        HashMap<Long, Integer> agentIdx = new HashMap<>();
+        for (int i = 0; i < agents.size(); i++) {
+            agentIdx.put(agents.get(i).getID(), i);
+        }
+        for (int v = 0; v < nbVars; v++) {
+            varIdx.put(variables[v], v);
+            domSize[v] = variables[v].getDomain().size();
+            varAgent[v] = agentIdx.get(variables[v].getOwnerAgent().getID());
+            maxDomSize = Math.max(maxDomSize, domSize[v]);
+        }
+
+        // Factor edges, in order of scope (a variable occurring twice in a scope is a single edge)
+        List<Constraint> constraints = new ArrayList<>(instance.getDCOPConstraints());
+        factorOffset = new int[constraints.size() + 1];
+        List<Integer> edgeVarList = new ArrayList<>();
+        for (int f = 0; f < constraints.size(); f++) {
+            factorOffset[f] = edgeVarList.size();
+            for (Variable x : constraints.get(f).getScope()) {
+                int v = varIdx.get(x);
+                if (!edgeVarList.subList(factorOffset[f], edgeVarList.size()).contains(v))
+                    edgeVarList.add(v);
+            }
+            maxArity = Math.max(maxArity, edgeVarList.size() - factorOffset[f]);
+        }
+        int nbEdges = edgeVarList.size();
+        factorOffset[constraints.size()] = nbEdges;
+        edgeVar = new int[nbEdges];
+        msgOffset = new int[nbEdges + 1];
+        for (int e = 0; e < nbEdges; e++) {
+            edgeVar[e] = edgeVarList.get(e);
+            msgOffset[e + 1] = msgOffset[e] + domSize[edgeVar[e]];
+        }
+
+        // Variable edges, in order of constraint
+        varOffset = new int[nbVars + 1];
+        for (int e = 0; e < nbEdges; e++) {
+            varOffset[edgeVar[e] + 1]++;
+        }
+        for (int v = 0; v < nbVars; v++) {
+            varOffset[v + 1] += varOffset[v];
+        }
+        varEdges = new int[nbEdges];
+        int[] fill = Arrays.copyOf(varOffset, nbVars);
+        for (int e = 0; e < nbEdges; e++) {
+            varEdges[fill[edgeVar[e]]++] = e;
+        }
+
+        // Message counts: a factor is owned by the agent given by the allocation
+        long[] owners = allocation.allocate(instance);
+        agentMsgs = new int[agents.size()];
+        qLink = new int[nbEdges];
+        rLink = new int[nbEdges];
+        HashMap<Long, Integer> links = new HashMap<>();
+        List<Integer> senders = new ArrayList<>();
+        for (int f = 0; f < constraints.size(); f++) {
+            int owner = agentIdx.get(owners[f]);
+            for (int e = factorOffset[f]; e < factorOffset[f + 1]; e++) {
+                int agent = varAgent[edgeVar[e]];
+                qLink[e] = rLink[e] = -1;
+                if (agent != owner) {
+                    agentMsgs[owner]++;                 // factor -> variable
+                    agentMsgs[agent]++;                 // variable -> factor
+                    qLink[e] = getLink(links, senders, agent, owner);
+                    rLink[e] = getLink(links, senders, owner, agent);
+                }
+            }
+        }
+        linkSender = new int[senders.size()];
+        for (int l = 0; l < linkSender.length; l++) {
+            linkSender[l] = senders.get(l);
+        }
+        linkSent = new int[linkSender.length];
+        linkSkipped = new int[linkSender.length];
+
+        // Constraint tables
+        edgeTable = new int[nbEdges];
+        factorTable = new int[constraints.size()];
+        int size = 0;
+        for (int f = 0; f < constraints.size(); f++) {
+            if (isBinary(constraints.get(f), f)) {
+                factorTable[f] = -1;
+                for (int e = factorOffset[f]; e < factorOffset[f + 1]; e++) {
+                    edgeTable[e] = size;
+                    size += domSize[edgeVar[factorOffset[f]]] * domSize[edgeVar[factorOffset[f] + 1]];
+                }
+            } else {
+                factorTable[f] = size;
+                int tableSize = 1;
+                for (int e = factorOffset[f]; e < factorOffset[f + 1]; e++) {
+                    tableSize *= domSize[edgeVar[e]];
+                }
+                size += tableSize;
+            }
+        }
+        tables = new double[size];
+        for (int f = 0; f < constraints.size(); f++) {
+            Constraint c = constraints.get(f);
+            if (factorTable[f] < 0) {
+                buildConstraintMatrix(c, factorOffset[f], factorOffset[f] + 1);
+                buildConstraintMatrix(c, factorOffset[f] + 1, factorOffset[f]);
+            } else {
+                buildConstraintTable(c, f);
+            }
+        }
+
+        residuals = new double[nbVars];
+        factorResiduals = new double[constraints.size()];
+        int nbValues = msgOffset[nbEdges];
+        q = new double[nbValues];
+        qNext = new double[nbValues];
+        r = new double[nbValues];
+        rNext = new double[nbValues];
+    }
+
+    private int getLink(HashMap<Long, Integer> links, List<Integer> senders, int sender, int recipient) {
+        long key = (long) sender * agents.size() + recipient;
+        Integer link = links.get(key);
+        if (link == null) {
+            link = senders.size();
+            links.put(key, link);
+            senders.add(sender);
+        }
+        return link;
+    }
+
+    private boolean isBinary(Constraint c, int f) {
+        return factorOffset[f + 1] - factorOffset[f] == 2 && c.getArity() == 2;
+    }
+
+    /**
+     * Builds the constraint matrix at edgeTable[e], whose rows are indexed by the values of the variable of e, and
+     * whose columns are indexed by the values of the variable of the other edge o.
+     */
+    private void buildConstraintMatrix(Constraint c, int e, int o) {
+        Variable x = variables[edgeVar[e]];
+        Variable y = variables[edgeVar[o]];
+        int xPos = c.getScope(0).equals(x) ? 0 : 1;
+        Tuple tuple = new Tuple(2);
+        int base = edgeTable[e];
+        for (int i = 0; i < domSize[edgeVar[e]]; i++) {
+            tuple.set(xPos, x.getDomain().getElement(i));
+            for (int j = 0; j < domSize[edgeVar[o]]; j++) {
+                tuple.set(1 - xPos, y.getDomain().getElement(j));
+                tables[base++] = c.getValue(tuple);
+            }
+        }
+    }
+
+    /**
+     * Builds the mixed-radix table of the factor f (the variable of its last edge varies fastest).
+     */
+    private void buildConstraintTable(Constraint c, int f) {
+        int first = factorOffset[f];
+        int k = factorOffset[f + 1] - first;
+        int[] scopeToEdge = new int[c.getArity()];
+        for (int p = 0; p < scopeToEdge.length; p++) {
+            for (int i = 0; i < k; i++) {
+                if (variables[edgeVar[first + i]].equals(c.getScope(p)))
+                    scopeToEdge[p] = i;
+            }
+        }
+        int size = 1;
+        for (int i = 0; i < k; i++) {
+            size *= domSize[edgeVar[first + i]];
+        }
+        int[] idx = new int[k];
+        Tuple tuple = new Tuple(c.getArity());
+        for (int t = 0; t < size; t++) {
+            for (int p = 0; p < scopeToEdge.length; p++) {
+                int i = scopeToEdge[p];
+                tuple.set(p, variables[edgeVar[first + i]].getDomain().getElement(idx[i]));
+            }
+            tables[factorTable[f] + t] = c.getValue(tuple);
+            for (int j = k - 1; j >= 0 && ++idx[j] == domSize[edgeVar[first + j]]; j--) {
+                idx[j] = 0;
+            }
+        }
+    }
+
+    /**
+     * Runs the given number of synchronous MaxSum cycles.
+     * @param nbThreads The number of threads sweeping the nodes (1 = sequential).
+     * @return The statistics of each agent (solution values and sent messages of each cycle).
+     */
+    public List<AgentStatistics> run(int nbIterations, int nbThreads) {
+        List<AgentStatistics> stats = new ArrayList<>();
+        List<List<Integer>> agentVars = new ArrayList<>();
+        for (int a = 0; a < agents.size(); a++) {
+            stats.add(new AgentStatistics());
+            agentVars.add(new ArrayList<>());
+        }
+        for (int v = 0; v < variables.length; v++) {
+            if (variables[v].getType() == Variable.DECISION_VAR)
+                agentVars.get(varAgent[v]).add(v);
+        }
+        int[] values = new int[variables.length];
+        int[] cycleMsgs = agentMsgs;
+        if (threshold > 0) {
+            qOut = new double[q.length];
+            rOut = new double[r.length];
+            cycleMsgs = new int[agents.size()];
+        }
+
+        int nbConvergedCycles = 0;
+        ForkJoinPool pool = nbThreads > 1 ? new ForkJoinPool(nbThreads) : null;
+        long startTime = System.nanoTime();
+        try {
+            for (int cycle = 0; cycle < nbIterations; cycle++) {
+                // Select the values, and compute the messages of this cycle from those of the previous one
+                if (pool == null) {
+                    sweepVariables(0, variables.length, values);
+                    sweepFactors(0, factorTable.length);
+                } else {
+                    pool.invoke(new SweepTask(true, 0, variables.length, values));
+                    pool.invoke(new SweepTask(false, 0, factorTable.length, values));
+                }
+                if (threshold > 0) {
+                    deliver(cycleMsgs);
+                }
+                double[] tmp = q; q = qNext; qNext = tmp;
+                tmp = r; r = rNext; rNext = tmp;
+
+                long nanoTime = System.nanoTime() - startTime;
+                for (int a = 0; a < agents.size(); a++) {
+                    AgentStatistics agtStats = stats.get(a);
+                    agtStats.incrSentMessages(cycleMsgs[a]);
+                    List<Integer> vars = agentVars.get(a);
+                    String[] names = new String[vars.size()];
+                    int[] vals = new int[vars.size()];
+                    for (int i = 0; i < vars.size(); i++) {
+                        names[i] = variables[vars.get(i)].getName();
+                        vals[i] = values[vars.get(i)];
+                    }
+                    agtStats.updateIterationStats(nanoTime, names, vals);
+                }
+
+                if (convergenceCycles > 0) {
+                    // The residual of the messages of both directions (see MaxSumAgent)
+                    double residual = 0;
+                    for (double r : residuals)
+                        residual = Math.max(residual, r);
+                    for (double r : factorResiduals)
+                        residual = Math.max(residual, r);
+                    nbConvergedCycles = residual < convergenceDelta ? nbConvergedCycles + 1 : 0;
+                    if (nbConvergedCycles >= convergenceCycles)
+                        break;
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * For each variable in [from, to): selects its value, and computes the messages to its factors
+     * (see MaxSumVariableNode).
+     */
+    private void sweepVariables(int from, int to, int[] values) {
+        double[] sum = new double[maxDomSize];
+        double[] table = new double[maxDomSize];
+        // The messages computed at the previous cycle, and those of this cycle
+        double[] prev = qOut != null ? qOut : q;
+        double[] next = qOut != null ? qOut : qNext;
+        for (int v = from; v < to; v++) {
+            int d = domSize[v];
+            // Select best value
+            Arrays.fill(sum, 0, d, 0);
+            for (int k = varOffset[v]; k < varOffset[v + 1]; k++) {
+                Commons.addArray(sum, 0, r, msgOffset[varEdges[k]], d);
+            }
+            values[v] = variables[v].getDomain().getElement(Commons.getArgMin(sum, 0, d));
+
+            // Messages: the sum of the tables received from all other factors, minus its average (averaged with the
+            // previous message, with damping)
+            double residual = 0;
+            for (int k = varOffset[v]; k < varOffset[v + 1]; k++) {
+                int out = msgOffset[varEdges[k]];
+                Arrays.fill(table, 0, d, 0);
+                for (int l = varOffset[v]; l < varOffset[v + 1]; l++) {
+                    if (l != k)
+                        Commons.addArray(table, 0, r, msgOffset[varEdges[l]], d);
+                }
+                double avg = 0;
+                for (int i = 0; i < d; i++)
+                    avg += table[i];
+                avg = avg / (double) d;
+                for (int i = 0; i < d; i++) {
+                    double value = table[i] - avg;
+                    if (damping != 0)
+                        value = damping * prev[out + i] + (1 - damping) * value;
+                    residual = Math.max(residual, Math.abs(value - prev[out + i]));
+                    next[out + i] = value;
+                }
+            }
+            residuals[v] = residual;
+        }
+    }
+
+    /**
+     * For each factor in [from, to): computes the messages to its variables (averaged with the previous messages,
+     * with damping), see MaxSumFactorNode.
+     */
+    private void sweepFactors(int from, int to) {
+        int[] idx = new int[maxArity];
+        double[] suffix = new double[maxArity + 1];
+        double[] prevMsgs = new double[maxArity * maxDomSize];
+        // The messages computed at the previous cycle, and those of this cycle
+        double[] prev = rOut != null ? rOut : r;
+        double[] next = rOut != null ? rOut : rNext;
+        for (int f = from; f < to; f++) {
+            int first = factorOffset[f];
+            // The messages of the factor are contiguous
+            int begin = msgOffset[first];
+            int end = msgOffset[factorOffset[f + 1]];
+            System.arraycopy(prev, begin, prevMsgs, 0, end - begin);
+            if (factorTable[f] < 0) {
+                project(first, first + 1, next);
+                project(first + 1, first, next);
+            } else {
+                projectAll(f, idx, suffix, next);
+            }
+            double residual = 0;
+            for (int i = begin; i < end; i++) {
+                if (damping != 0)
+                    next[i] = damping * prevMsgs[i - begin] + (1 - damping) * next[i];
+                residual = Math.max(residual, Math.abs(next[i] - prevMsgs[i - begin]));
+            }
+            factorResiduals[f] = residual;
+        }
+    }
+
+    /**
+     * Selective sending: delivers the computed messages which are local, or which changed by at least threshold
+     * since the last one sent, while the recipients of the other ones keep the last message received. Counts the
+     * messages sent by each agent: the messages delivered on remote edges, and a heartbeat on each link on which
+     * only messages not sent were counted.
+     */
+    private void deliver(int[] cycleMsgs) {
+        Arrays.fill(linkSent, 0);
+        Arrays.fill(linkSkipped, 0);
+        for (int e = 0; e < edgeVar.length; e++) {
+            deliver(e, qLink[e], qOut, q, qNext);
+            deliver(e, rLink[e], rOut, r, rNext);
+        }
+        Arrays.fill(cycleMsgs, 0);
+        for (int l = 0; l < linkSender.length; l++) {
+            cycleMsgs[linkSender[l]] += linkSent[l] + (linkSent[l] == 0 && linkSkipped[l] > 0 ? 1 : 0);
+        }
+    }
+
+    private void deliver(int e, int link, double[] out, double[] cur, double[] next) {
+        int from = msgOffset[e];
+        int to = msgOffset[e + 1];
+        boolean send = true;
+        if (link >= 0) {
+            double dist = 0;
+            for (int i = from; i < to; i++)
+                dist = Math.max(dist, Math.abs(out[i] - cur[i]));
+            send = dist >= threshold;
+            if (send)
+                linkSent[link]++;
+            else
+                linkSkipped[link]++;
+        }
+        System.arraycopy(send ? out : cur, from, next, from, to - from);
+    }
+
+    /**
+     * Computes the message on the edge e of a binary factor, whose other edge is o.
+     */
+    private void project(int e, int o, double[] next) {
+        int matrix = edgeTable[e];
+        int recv = msgOffset[o];
+        int nbCols = domSize[edgeVar[o]];
+        int out = msgOffset[e];
+        int nbRows = domSize[edgeVar[e]];
+        for (int row = 0, base = matrix; row < nbRows; row++, base += nbCols) {
+            next[out + row] = Commons.addMin(tables, base, q, recv, nbCols);
+        }
+    }
+
+    /**
+     * Computes the messages on all edges of the (non-binary) factor f, in one sweep over its table, with the
+     * prefix and suffix sums of the received tables.
+     */
+    private void projectAll(int f, int[] idx, double[] suffix, double[] next) {
+        int first = factorOffset[f];
+        int k = factorOffset[f + 1] - first;
+        for (int i = 0; i < k; i++) {
+            Arrays.fill(next, msgOffset[first + i], msgOffset[first + i + 1], Double.POSITIVE_INFINITY);
+        }
+        Arrays.fill(idx, 0, k, 0);
+        suffix[k] = 0;
+        int size = 1;
+        for (int i = 0; i < k; i++) {
+            size *= domSize[edgeVar[first + i]];
+        }
+        int table = factorTable[f];
+        for (int t = 0; t < size; t++) {
+            for (int j = k - 1; j >= 0; j--) {
+                suffix[j] = q[msgOffset[first + j] + idx[j]] + suffix[j + 1];
+            }
+            double prefix = 0;
+            for (int i = 0; i < k; i++) {
+                double value = tables[table + t] + (prefix + suffix[i + 1]);
+                int out = msgOffset[first + i] + idx[i];
+                if (value < next[out])
+                    next[out] = value;
+                prefix += q[msgOffset[first + i] + idx[i]];
+            }
+            for (int j = k - 1; j >= 0 && ++idx[j] == domSize[edgeVar[first + j]]; j--) {
+                idx[j] = 0;
+            }
+        }
+    }
+
+    /**
+     * Sweeps the variables (or the factors) in the range [from, to).
+     */
+    private class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final boolean variableSweep;
+        private final int from;
+        private final int to;
+        private final int[] values;
+
+        SweepTask(boolean variableSweep, int from, int to, int[] values) {
+            this.variableSweep = variableSweep;
+            this.from = from;
+            this.to = to;
+            this.values = values;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grainSize) {
+                if (variableSweep)
+                    sweepVariables(from, to, values);
+                else
+                    sweepFactors(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SweepTask(variableSweep, from, mid, values),
+                          new SweepTask(variableSweep, mid, to, values));
+            }
+        }
+    }
+}
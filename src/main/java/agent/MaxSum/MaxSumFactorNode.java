@@ -6,9 +6,7 @@ import communication.VariableNode;
 import kernel.*;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by nando on 5/24/17.
@@ -17,28 +15,73 @@ public class MaxSumFactorNode {
 
     private FactorNode node;
 
-    // !!!!!!!!!!! We assume now that all constraints are binary !!!!!!!!!!!!!!
-
     // Cost received by each variable participating to this factor - if this factor is f(x, y),
     // then it will receive two cost tables, one from x and  one from y
-    // key: variable ID; value: vector of size Dom of variable
-    // [prev cycle] - used to sum up and implement agent logic
-    private Map<Long, double[]> costTable;
+    // indexed as the neighbors of the node; vector of size Dom of variable
+    // [prev cycle] - used to sum up and implement agent logic (front buffer)
+    private double[][] costTables;
 
     // [current cycle]
-    // used to store new coming messages
-    private Map<Long, double[]> recvCostTables;
+    // used to store new coming messages (back buffer, swapped with the front one when the cycle ends)
+    private double[][] recvCostTables;
+    private boolean[] received;
+    // The position of this node in the neighbors of each variable node
+    private int[] slots;
+
+    // Binary factors: the constraint matrix oriented towards each variable, i.e., a flat row-major array whose rows
+    // are indexed by the values of the variable, and whose columns are indexed by the values of the other variable.
+    private double[][] matrices;
+
+    // Other factors (unary, n-ary, or whose scope repeats a variable): the constraint table over the neighbor
+    // variables, as a flat mixed-radix array (the last neighbor varies fastest).
+    private double[] table;
+    private int[] radix;
+    private int[] idx;
+    private double[] suffix;
+
+    // The tables sent to each variable node, and the messages carrying them, reused at every cycle. With selective
+    // sending, sentTables holds the last table actually sent to each remote variable node.
+    private double[][] outTables;
+    private double[][] sentTables;
+    private MaxSumAgent.FnodeToVnodeMessage[] outMessages;
+
+    // The weight of the previous table in each table sent (0 = no damping), the tables computed by the previous call
+    // to computeTables, and the maximum change of a value of the tables computed by the last call
+    private double damping;
+    private double[][] prevTables;
+    private double residual;
 
     public MaxSumFactorNode (FactorNode node) {
         this.node = node;
-        costTable = new HashMap<>();
-        recvCostTables = new HashMap<>();
-
-        for (VariableNode v : node.getNeighbors()) {
-            double[] costs = new double[v.getVariable().getDomain().size()];
-            Arrays.fill(costs, 0);
-            costTable.put(v.getID(), costs);
-            recvCostTables.put(v.getID(), costs.clone());
+        int nbNeighbors = node.getNeighbors().size();
+        costTables = new double[nbNeighbors][];
+        recvCostTables = new double[nbNeighbors][];
+        received = new boolean[nbNeighbors];
+        outTables = new double[nbNeighbors][];
+        sentTables = new double[nbNeighbors][];
+        prevTables = new double[nbNeighbors][];
+        outMessages = new MaxSumAgent.FnodeToVnodeMessage[nbNeighbors];
+
+        slots = new int[nbNeighbors];
+        for (int i = 0; i < nbNeighbors; i++) {
+            VariableNode v = node.getNeighbors().get(i);
+            int domSize = v.getVariable().getDomain().size();
+            costTables[i] = new double[domSize];
+            recvCostTables[i] = new double[domSize];
+            outTables[i] = new double[domSize];
+            sentTables[i] = new double[domSize];
+            prevTables[i] = new double[domSize];
+            slots[i] = node.getSlot(i);
+        }
+
+        // The constraint tables never change, hence they are built once, when the node is created
+        if (nbNeighbors == 2 && node.getConstraint().getArity() == 2) {
+            matrices = new double[2][];
+            for (int i = 0; i < nbNeighbors; i++) {
+                matrices[i] = getConstraintMatrix(node.getNeighbors().get(i).getVariable());
+            }
+        } else {
+            buildConstraintTable();
         }
     }
 
@@ -56,52 +99,177 @@ public class MaxSumFactorNode {
 
     @Deprecated
     public void sendMessages(int currCycle) {
-        for (VariableNode vnode : node.getNeighbors()) {
-            // Note: this need to be extedned if we handle multiple constraints [todo]
-            double[][] cTable = getConstraintTable(vnode.getVariable());
-            // Add values received from other agents (variable nodes)
-            sumCostTablesExcluding(cTable, vnode.getID());
-            // Project on the (first variable) dest. of message
-            double[] table = project(cTable);
-            //Commons.rmValue(table, Commons.getMin(table));
+        computeTables();
+        for (int i = 0; i < node.getNeighbors().size(); i++) {
+            VariableNode vnode = node.getNeighbors().get(i);
+            double[] table = getTable(i).clone();
 
             // Send messages to Funcation Nodes
             MaxSumAgent.FnodeToVnodeMessage msg =
-                    new MaxSumAgent.FnodeToVnodeMessage(table, getID(), vnode.getID(), currCycle);
+                    new MaxSumAgent.FnodeToVnodeMessage(table, getID(), vnode.getID(),
+                            vnode.getIndex(), slots[i], currCycle);
             vnode.getOwner().tell(msg, node.getOwner().getSelf());
         }
     }
 
     public double[] getTable(VariableNode vNode) {
-        // todo: To handle nary constraints, we need to modify this function
-        double[][] cTable = getConstraintTable(vNode.getVariable());
-        // Add values received from other agents (variable nodes)
-        sumCostTablesExcluding(cTable, vNode.getID());
-        // Project on the (first variable) dest. of message
-        double[] table = project(cTable);
-        //Commons.rmValue(table, Commons.getMin(table));
-        return table;
+        return getTable(node.getNeighbors().indexOf(vNode));
+    }
+
+    /**
+     * @param i The position of the variable node in the neighbors of this node.
+     * @return The table to be sent to the variable node, as computed by the last call to computeTables.
+     */
+    public double[] getTable(int i) {
+        return outTables[i];
+    }
+
+    public void setDamping(double damping) {
+        this.damping = damping;
+    }
+
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * Computes the tables to be sent to all variable nodes, from the tables received at the previous cycle: the
+     * table of a variable x is min_{y} f(x, y) + sum of the tables received from the variables y != x. With
+     * damping, the new table is averaged with the previous one.
+     */
+    public void computeTables() {
+        for (int i = 0; i < outTables.length; i++) {
+            System.arraycopy(outTables[i], 0, prevTables[i], 0, outTables[i].length);
+        }
+        if (matrices != null) {
+            project(matrices[0], costTables[1], outTables[0]);
+            project(matrices[1], costTables[0], outTables[1]);
+        } else {
+            projectAll();
+        }
+        residual = 0;
+        for (int i = 0; i < outTables.length; i++) {
+            double[] out = outTables[i];
+            double[] prev = prevTables[i];
+            for (int j = 0; j < out.length; j++) {
+                if (damping != 0)
+                    out[j] = damping * prev[j] + (1 - damping) * out[j];
+                residual = Math.max(residual, Math.abs(out[j] - prev[j]));
+            }
+        }
+    }
+
+    /**
+     * Adds the values received from the other variable node, and projects on the dest. of message, in a single
+     * pass over the oriented matrix.
+     */
+    private static void project(double[] matrix, double[] recvTable, double[] table) {
+        int nbCols = recvTable.length;
+        for (int row = 0, base = 0; row < table.length; row++, base += nbCols) {
+            table[row] = Commons.addMin(matrix, base, recvTable, 0, nbCols);
+        }
+    }
+
+    /**
+     * Computes the tables of all variable nodes in one sweep over the mixed-radix table. For each entry, the sum of
+     * the received tables excluding the i-th variable is obtained from the prefix and suffix sums, hence a k-ary
+     * factor costs O(k |table|), instead of O(k^2 |table|) with one sweep per variable.
+     */
+    private void projectAll() {
+        int k = radix.length;
+        for (int i = 0; i < k; i++) {
+            Arrays.fill(outTables[i], Double.POSITIVE_INFINITY);
+        }
+        Arrays.fill(idx, 0);
+        suffix[k] = 0;
+        for (int e = 0; e < table.length; e++) {
+            for (int j = k - 1; j >= 0; j--) {
+                suffix[j] = costTables[j][idx[j]] + suffix[j + 1];
+            }
+            double prefix = 0;
+            for (int i = 0; i < k; i++) {
+                double value = table[e] + (prefix + suffix[i + 1]);
+                if (value < outTables[i][idx[i]])
+                    outTables[i][idx[i]] = value;
+                prefix += costTables[i][idx[i]];
+            }
+            // Next entry
+            for (int j = k - 1; j >= 0 && ++idx[j] == radix[j]; j--) {
+                idx[j] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return The number of cells of the constraint table, which are all read to compute the tables.
+     */
+    public int getTableSize() {
+        return matrices != null ? matrices[0].length : table.length;
+    }
+
+    /**
+     * @param i The position of the variable node in the neighbors of this node.
+     * @return true if a value of the last table computed for the variable node differs by at least threshold from
+     * the last table sent to it (see markSent).
+     */
+    public boolean hasChanged(int i, double threshold) {
+        return Commons.getMaxDistance(outTables[i], sentTables[i]) >= threshold;
     }
 
+    /**
+     * Saves the last table computed for the variable node as the one it holds.
+     */
+    public void markSent(int i) {
+        System.arraycopy(outTables[i], 0, sentTables[i], 0, outTables[i].length);
+    }
 
-    public void copyCostTable(double[] table, long fNodeId) {
-        recvCostTables.put(fNodeId, table);
+    /**
+     * @param i The position of the variable node in the neighbors of this node.
+     * @return The position of this node in the neighbors of the variable node.
+     */
+    public int getSlot(int i) {
+        return slots[i];
+    }
+
+    /**
+     * @param i The position of the variable node in the neighbors of this node.
+     * @return The message carrying the last table computed for the variable node (see getTable).
+     */
+    public MaxSumAgent.FnodeToVnodeMessage getMessage(int i, int currCycle) {
+        if (outMessages[i] == null) {
+            VariableNode vnode = node.getNeighbors().get(i);
+            outMessages[i] = new MaxSumAgent.FnodeToVnodeMessage(outTables[i], getID(), vnode.getID(),
+                    vnode.getIndex(), slots[i], currCycle);
+            outMessages[i].setNbComputedCells(getTableSize());
+        }
+        outMessages[i].setCycleNo(currCycle);
+        return outMessages[i];
+    }
+
+    /**
+     * @param i The position of the variable node in the neighbors of this node.
+     */
+    public void copyCostTable(double[] table, int i) {
+        System.arraycopy(table, 0, recvCostTables[i], 0, table.length);
+        received[i] = true;
     }
 
     public void saveReceivedCostTables() {
-        for (Map.Entry<Long, double[]> entry : recvCostTables.entrySet()) {
-            Long key = entry.getKey();
-            double[] value = entry.getValue();
-            // todo: you could avoid to clone table here
-            costTable.put(key, value.clone());
+        for (int i = 0; i < received.length; i++) {
+            if (received[i]) {
+                double[] table = costTables[i];
+                costTables[i] = recvCostTables[i];
+                recvCostTables[i] = table;
+                received[i] = false;
+            }
         }
     }
-    
+
     // GET TABLE CONSTRAINT (BINARY).
     // I am going to order the constraint Table so that the variable vIdx ( to send  )
     // is going to be positioned as FIRST element of the table scope
-    private double[][] getConstraintTable(Variable variable) {
-        TableBinaryConstraint c = (TableBinaryConstraint)node.getConstraint();
+    private double[] getConstraintMatrix(Variable variable) {
+        Constraint c = node.getConstraint();
         int v_idx = Commons.getIdx(c.getScope(), variable);
         assert (v_idx >= 0);
         int map_dom_1 = v_idx;      // I wont this to be = to v_dix
@@ -110,45 +278,54 @@ public class MaxSumFactorNode {
         Domain dom_2 = c.getScope(map_dom_2).getDomain();
         Tuple tuple = new Tuple(2);
 
-        double[][] cTable = new double[dom_1.size()][dom_2.size()];
+        double[] matrix = new double[dom_1.size() * dom_2.size()];
         for (int i = 0; i < dom_1.size(); i++) {
             tuple.set(map_dom_1, dom_1.getElement(i));
             for (int j = 0; j < dom_2.size(); j++) {
                 tuple.set(map_dom_2, dom_2.getElement(j));
-                cTable[i][j] = c.getValue(tuple);
+                matrix[i * dom_2.size() + j] = c.getValue(tuple);
             }
         }
-        return cTable;
+        return matrix;
     }
 
-    // Add values received from other agents (variable nodes)
-    // Note: this need to be extedned if we handle multiple constraints [todo]
-    private void sumCostTablesExcluding(double[][] cTable, long vnodeID)
-    {
-        for (VariableNode v : node.getNeighbors()) {
-            if (v.getID() == vnodeID)
-                continue;
-
-            Domain vDom = v.getVariable().getDomain();
-            double[] recvTable = costTable.get(v.getID());
+    // GET TABLE CONSTRAINT (N-ARY).
+    // The table is indexed by the values of the neighbor variables: a variable occurring more than once in the
+    // scope takes the same value at each of its positions.
+    private void buildConstraintTable() {
+        Constraint c = node.getConstraint();
+        List<VariableNode> neighbors = node.getNeighbors();
+        int k = neighbors.size();
+        radix = new int[k];
+        idx = new int[k];
+        suffix = new double[k + 1];
+        int size = 1;
+        for (int i = 0; i < k; i++) {
+            radix[i] = neighbors.get(i).getVariable().getDomain().size();
+            size *= radix[i];
+        }
 
-            for (int i = 0; i < vDom.size(); i++) {
-                Commons.addValue(cTable[i], recvTable[i]);
+        // The neighbor variable at each position of the scope
+        int[] scopeToNeighbor = new int[c.getArity()];
+        for (int p = 0; p < scopeToNeighbor.length; p++) {
+            for (int i = 0; i < k; i++) {
+                if (neighbors.get(i).getVariable().equals(c.getScope(p)))
+                    scopeToNeighbor[p] = i;
             }
         }
-    }
 
-    /**
-     * Project the table on its first dimension (column) by minimizing all other dimensions
-     * @return
-     */
-    private double[] project(double[][] cTable) {
-        int size = cTable.length;
-        double[] table = new double[size];
-        for (int i = 0; i < size; i++) {
-            table[i] = Commons.getMin(cTable[i]);
+        table = new double[size];
+        Tuple tuple = new Tuple(c.getArity());
+        for (int e = 0; e < size; e++) {
+            for (int p = 0; p < scopeToNeighbor.length; p++) {
+                int i = scopeToNeighbor[p];
+                tuple.set(p, neighbors.get(i).getVariable().getDomain().getElement(idx[i]));
+            }
+            table[e] = c.getValue(tuple);
+            for (int j = k - 1; j >= 0 && ++idx[j] == radix[j]; j--) {
+                idx[j] = 0;
+            }
         }
-        return table;
     }
 
 }
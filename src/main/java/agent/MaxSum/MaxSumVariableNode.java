@@ -8,9 +8,8 @@ import kernel.Domain;
 import kernel.Variable;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * Created by nando on 5/24/17.
@@ -20,32 +19,51 @@ public class MaxSumVariableNode {
     // node not needed - only need domain size
     public VariableNode node;
 
-    // Cost received by each function f(x,y) by projecting out y if this variable is x [prev cycle]
-    // key: functionNode ID; value: vector of size Dom of this variable
-    private HashMap<Long, double[]> costTable;
-
-    // Cost received by each function f(x,y) at currenct cycle
-    // key: functionNode ID; value: vector of size Dom of this variable
-    private HashMap<Long, double[]> recvCostTables;
+    // Cost received by each function f(x,y) by projecting out y if this variable is x, indexed as the neighbors of
+    // the node. The front buffer holds the tables of the previous cycle, and the back buffer the tables received
+    // at the current cycle: the buffers of an edge are swapped (not copied) when the cycle ends.
+    private double[][] costTables;
+    private double[][] recvCostTables;
+    private boolean[] received;
+    // The position of this node in the neighbors of each function node
+    private int[] slots;
+
+    // The tables sent to each function node, and the messages carrying them, reused at every cycle. With selective
+    // sending, sentTables holds the last table actually sent to each remote function node.
+    private double[][] outTables;
+    private double[][] sentTables;
+    private MaxSumAgent.VnodeToFnodeMessage[] outMessages;
+    private double[] sum;
+    private double[] next;
+
+    // The weight of the previous table in each table sent (0 = no damping), and the maximum change of a value of
+    // the tables computed by the last call to computeTables
+    private double damping;
+    private double residual;
 
     // A vector of noisy values to allow faster convergence
     public double[] noise;
 
-    public MaxSumVariableNode(VariableNode node) {
+    public MaxSumVariableNode(VariableNode node, SplittableRandom random) {
         this.node = node;
-        costTable = new HashMap<>();
-        recvCostTables = new HashMap<>();
-
-        for (FactorNode f : node.getNeighbors()) {
-            double[] costs = new double[node.getVariable().getDomain().size()];
-            Arrays.fill(costs, 0);
-            costTable.put(f.getID(), costs);
-            recvCostTables.put(f.getID(), costs.clone());
-        }
-
-        noise = new  double[node.getVariable().getDomain().size()];
+        int domSize = node.getVariable().getDomain().size();
+        int nbNeighbors = node.getNeighbors().size();
+        costTables = new double[nbNeighbors][domSize];
+        recvCostTables = new double[nbNeighbors][domSize];
+        received = new boolean[nbNeighbors];
+        outTables = new double[nbNeighbors][domSize];
+        sentTables = new double[nbNeighbors][domSize];
+        outMessages = new MaxSumAgent.VnodeToFnodeMessage[nbNeighbors];
+        sum = new double[domSize];
+        next = new double[domSize];
+
+        slots = new int[nbNeighbors];
+        for (int i = 0; i < nbNeighbors; i++)
+            slots[i] = node.getSlot(i);
+
+        noise = new  double[domSize];
         for (int i = 0; i <noise.length; i++)
-            noise[i] = Math.random();
+            noise[i] = random.nextDouble();
     }
 
     public long getID() {
@@ -64,8 +82,16 @@ public class MaxSumVariableNode {
         return node.getVariable();
     }
 
+    public void setDamping(double damping) {
+        this.damping = damping;
+    }
+
+    public double getResidual() {
+        return residual;
+    }
+
     public int selectBestValue() {
-        double[] table = getCostTableSum();
+        double[] table = getCostTableSumExcluding(-1, sum);
         Domain dom = node.getVariable().getDomain();
         int val_idx = Commons.getArgMin(table);
         return dom.getElement(val_idx);
@@ -77,60 +103,123 @@ public class MaxSumVariableNode {
 
     @Deprecated
     public void sendMessages(int currCycle) {
-        for (FactorNode fnode : node.getNeighbors()) {
-            double[] table = getCostTableSumExcluding(fnode.getID());
-            // addUnaryConstraints(table);  // todo later
-            //Commons.rmValue(table, Commons.getMin(table));
-            Commons.rmValue(table, Commons.getAverage(table));
-            //Commons.addArray(table, getNoise());
-
+        computeTables();
+        for (int i = 0; i < node.getNeighbors().size(); i++) {
+            FactorNode fnode = node.getNeighbors().get(i);
+            double[] table = getTable(i).clone();
             MaxSumAgent.VnodeToFnodeMessage msg =
-                        new MaxSumAgent.VnodeToFnodeMessage(table, getID(), fnode.getID(), currCycle);
+                        new MaxSumAgent.VnodeToFnodeMessage(table, getID(), fnode.getID(),
+                            fnode.getIndex(), slots[i], currCycle);
             fnode.getOwner().tell(msg, node.getOwner().getSelf());
         }
     }
 
     public double[] getTable(FactorNode fNode) {
-        double[] table = getCostTableSumExcluding(fNode.getID());
-        // addUnaryConstraints(table);  // todo later
-        //Commons.rmValue(table, Commons.getMin(table));
-        Commons.rmValue(table, Commons.getAverage(table));
-        //Commons.addArray(table, getNoise());
-        return table;
+        return getTable(node.getNeighbors().indexOf(fNode));
+    }
+
+    /**
+     * @param i The position of the function node in the neighbors of this node.
+     * @return The table to be sent to the function node, as computed by the last call to computeTables.
+     */
+    public double[] getTable(int i) {
+        return outTables[i];
+    }
+
+    /**
+     * Computes the tables to be sent to all function nodes, from the tables received at the previous cycle: the
+     * table of a function node is the sum of the tables received from the other ones, minus its average. With
+     * damping, the new table is averaged with the previous one.
+     */
+    public void computeTables() {
+        residual = 0;
+        for (int i = 0; i < outTables.length; i++) {
+            double[] table = getCostTableSumExcluding(i, next);
+            // addUnaryConstraints(table);  // todo later
+            //Commons.rmValue(table, Commons.getMin(table));
+            Commons.normalizeAverage(table);
+            //Commons.addArray(table, getNoise());
+            double[] out = outTables[i];
+            for (int j = 0; j < out.length; j++) {
+                double value = damping == 0 ? table[j] : damping * out[j] + (1 - damping) * table[j];
+                residual = Math.max(residual, Math.abs(value - out[j]));
+                out[j] = value;
+            }
+        }
+    }
+
+    /**
+     * @param i The position of the function node in the neighbors of this node.
+     * @return true if a value of the last table computed for the function node differs by at least threshold from
+     * the last table sent to it (see markSent).
+     */
+    public boolean hasChanged(int i, double threshold) {
+        return Commons.getMaxDistance(outTables[i], sentTables[i]) >= threshold;
+    }
+
+    /**
+     * Saves the last table computed for the function node as the one it holds.
+     */
+    public void markSent(int i) {
+        System.arraycopy(outTables[i], 0, sentTables[i], 0, outTables[i].length);
+    }
+
+    /**
+     * @param i The position of the function node in the neighbors of this node.
+     * @return The position of this node in the neighbors of the function node.
+     */
+    public int getSlot(int i) {
+        return slots[i];
     }
 
-    public void copyCostTable(double[] table, long fNodeId) {
-        recvCostTables.put(fNodeId, table);
+    /**
+     * @param i The position of the function node in the neighbors of this node.
+     * @return The message carrying the last table computed for the function node (see getTable).
+     */
+    public MaxSumAgent.VnodeToFnodeMessage getMessage(int i, int currCycle) {
+        if (outMessages[i] == null) {
+            FactorNode fnode = node.getNeighbors().get(i);
+            outMessages[i] = new MaxSumAgent.VnodeToFnodeMessage(outTables[i], getID(), fnode.getID(),
+                    fnode.getIndex(), slots[i], currCycle);
+        }
+        outMessages[i].setCycleNo(currCycle);
+        return outMessages[i];
+    }
+
+    /**
+     * @param i The position of the function node in the neighbors of this node.
+     */
+    public void copyCostTable(double[] table, int i) {
+        System.arraycopy(table, 0, recvCostTables[i], 0, table.length);
+        received[i] = true;
     }
 
     public void saveReceivedCostTables() {
-        for (Map.Entry<Long, double[]> entry : recvCostTables.entrySet()) {
-            Long key = entry.getKey();
-            double[] value = entry.getValue();
-            // todo: you could avoid to clone table here
-            costTable.put(key, value.clone());
+        for (int i = 0; i < received.length; i++) {
+            if (received[i]) {
+                double[] table = costTables[i];
+                costTables[i] = recvCostTables[i];
+                recvCostTables[i] = table;
+                received[i] = false;
+            }
         }
     }
 
     /**
      *
-     * @param excludedId The ID of the function node which is excluded from summing the values of the cost table
+     * @param excluded The position of the function node which is excluded from summing the values of the cost
+     *                 table (-1 to sum all of them)
+     * @param sum The array where to store the aggregated cost table
      * @return The aggregated cost table
-     * @// TODO: 5/25/17 If you need to search for more than one ID, then pass a HashSet.
      */
-    private double[] getCostTableSumExcluding(long excludedId) {
-        double[] sum = new double[node.getVariable().getDomain().size()];
+    private double[] getCostTableSumExcluding(int excluded, double[] sum) {
         Arrays.fill(sum, 0);
-        for (FactorNode f : node.getNeighbors()) {
-            if (f.getID() == excludedId)
+        for (int i = 0; i < costTables.length; i++) {
+            if (i == excluded)
                 continue;
-            Commons.addArray(sum, costTable.get(f.getID()));
+            Commons.addArray(sum, costTables[i]);
         }
         return sum;
     }
 
-    private double[] getCostTableSum() {
-        return getCostTableSumExcluding(-1);
-    }
-
 }
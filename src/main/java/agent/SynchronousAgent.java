@@ -5,7 +5,9 @@ import communication.CycleTickerDeamon;
 import communication.DCOPagent;
 import communication.Message;
 import kernel.AgentState;
-import kernel.DCOPinfo;
+import kernel.SimulationContext;
+
+import java.util.SplittableRandom;
 
 /**
  * Created by nando on 6/2/17.
@@ -14,11 +16,21 @@ public abstract class SynchronousAgent extends DCOPagent {
 
     int currentCycle;
     CycleTickerDeamon cycleTickerDeamon;
+    // The random generator of this agent, derived from the seed of the simulation
+    private final SplittableRandom random;
 
-    public SynchronousAgent(ComAgent statsCollector, AgentState agentState) {
+    public SynchronousAgent(ComAgent statsCollector, AgentState agentState, SimulationContext context) {
         super(statsCollector, agentState);
         this.currentCycle = 0;
-        cycleTickerDeamon = DCOPinfo.cycleTickerDeamon;
+        cycleTickerDeamon = context.getCycleTickerDeamon();
+        random = context.splitRandom();
+    }
+
+    /**
+     * @return The random generator of this agent (not shared with any other agent, hence not thread-safe).
+     */
+    protected SplittableRandom getRandom() {
+        return random;
     }
 
     @Override
@@ -37,9 +49,15 @@ public abstract class SynchronousAgent extends DCOPagent {
     }
 
 
+    /**
+     * Runs a cycle. With batching, the messages sent by the cycle are coalesced into one envelope per recipient, sent
+     * once the cycle has sent all its messages.
+     */
     protected void runCycle() {
+        startBatch();
         onCycleStart();
         cycle();
+        flushBatch();
     }
 
     protected abstract void cycle();
@@ -49,10 +67,19 @@ public abstract class SynchronousAgent extends DCOPagent {
     protected abstract void onCycleStart();
 
     protected void terminateCycle() {
+        // The cycle may terminate while it is sending its messages
+        flushBatch();
         onCycleEnd();
         cycleTickerDeamon.terminateAgentCycle(getSelf());
     }
 
+    /**
+     * Reports the maximum residual of the messages sent during the current cycle, for the convergence check.
+     */
+    protected void reportResidual(double residual) {
+        setCycleResidual(residual);
+    }
+
     public int getCurrentCycle() {
         return currentCycle;
     }
@@ -0,0 +1,228 @@
+package communication;
+
+import kernel.SimulationContext;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs each agent as a long-lived actor, which processes its mail as soon as a message is sent to it, instead of
+ * being polled by the executor. When virtual threads are available (JDK 21+) each actor owns a virtual thread,
+ * which parks while its mailbox is empty; otherwise the actors are dispatched onto a pool of carrier threads
+ * whenever they receive mail. In both cases an actor is run by at most one thread at a time.
+ *
+ * The calling thread only acts as a coordinator: it awaits for all actors to be idle, and then it starts a new
+ * cycle if all agents have terminated the current one. The execution ends when the given number of cycles has
+ * been completed, or when all actors are idle and no cycle is in progress (e.g., for asynchronous algorithms), or
+ * once all agents have met their termination condition.
+ */
+public class ActorExecutor implements AgentExecutor {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method unstarted = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+        } catch (Exception e) {
+            // Virtual threads are not supported by this JVM: use the carrier pool
+        }
+        OF_VIRTUAL = ofVirtual;
+        UNSTARTED = unstarted;
+    }
+
+    private final int nbThreads;
+
+    // Number of actors which are scheduled or running
+    private final AtomicInteger nbActive = new AtomicInteger();
+    private final Object quiescence = new Object();
+    private volatile boolean shutdown;
+
+    // The carrier threads, when the actors are not run on virtual threads
+    private ExecutorService carriers;
+
+    public ActorExecutor(int nbThreads) {
+        this.nbThreads = nbThreads;
+    }
+
+    @Override
+    public void execute(SimulationContext context, List<DCOPagent> agents, int nbIterations) {
+        CycleTickerDeamon ticker = context.getCycleTickerDeamon();
+        shutdown = false;
+
+        List<Actor> actors = new ArrayList<>(agents.size());
+        for (DCOPagent agt : agents) {
+            actors.add(new Actor(agt));
+        }
+        if (!startVirtualThreads(actors)) {
+            carriers = Executors.newFixedThreadPool(nbThreads);
+        }
+
+        try {
+            // Agents may have received messages before being attached to their actor
+            for (Actor actor : actors) {
+                actor.agent.setMailListener(actor);
+                actor.onMail(actor.agent);
+            }
+
+            while (true) {
+                awaitQuiescence();
+                if (ticker.isCycleCompleted() && !ticker.isFinished(nbIterations) && !allTerminated(actors)) {
+                    ticker.startNewCycle();
+                } else {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        } finally {
+            shutdown = true;
+            for (Actor actor : actors) {
+                actor.agent.setMailListener(null);
+                if (actor.thread != null) {
+                    LockSupport.unpark(actor.thread);
+                }
+            }
+            try {
+                for (Actor actor : actors) {
+                    if (actor.thread != null) {
+                        actor.thread.join();
+                    }
+                }
+                if (carriers != null) {
+                    carriers.shutdown();
+                    carriers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            for (Actor actor : actors) {
+                actor.agent.clearScheduled();
+            }
+            carriers = null;
+        }
+    }
+
+    /**
+     * Creates and starts one virtual thread per actor.
+     * @return false if virtual threads are not supported.
+     */
+    private boolean startVirtualThreads(List<Actor> actors) {
+        if (OF_VIRTUAL == null)
+            return false;
+        try {
+            for (Actor actor : actors) {
+                actor.thread = (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), actor);
+            }
+        } catch (Exception e) {
+            // e.g., virtual threads are a preview feature which has not been enabled
+            for (Actor actor : actors) {
+                actor.thread = null;
+            }
+            return false;
+        }
+        for (Actor actor : actors) {
+            actor.thread.start();
+        }
+        return true;
+    }
+
+    private void awaitQuiescence() throws InterruptedException {
+        synchronized (quiescence) {
+            while (nbActive.get() != 0) {
+                quiescence.wait();
+            }
+        }
+    }
+
+    private void onIdle() {
+        if (nbActive.decrementAndGet() == 0) {
+            synchronized (quiescence) {
+                quiescence.notifyAll();
+            }
+        }
+    }
+
+    private static boolean allTerminated(List<Actor> actors) {
+        for (Actor actor : actors) {
+            if (actor.agent.getAgtState() != ComAgent.TERMINATED)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The actor wrapping an agent. The agent "scheduled" flag is set when the actor has mail to process, and it
+     * is cleared only once the actor has been run and found its mailbox empty.
+     */
+    private class Actor implements MailListener, Runnable {
+        private final ComAgent agent;
+        private Thread thread;
+
+        Actor(ComAgent agent) {
+            this.agent = agent;
+        }
+
+        @Override
+        public void onMail(ComAgent recipient) {
+            if (agent.markScheduled()) {
+                nbActive.incrementAndGet();
+                if (thread != null) {
+                    LockSupport.unpark(thread);
+                } else {
+                    carriers.execute(this);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            if (thread == null) {
+                // Processes the mail once, then leaves the carrier to the other actors
+                if (step()) {
+                    carriers.execute(this);
+                }
+                return;
+            }
+            while (!shutdown && agent.getAgtState() != ComAgent.TERMINATED) {
+                if (!agent.isScheduled() || !step()) {
+                    LockSupport.park(this);
+                }
+            }
+        }
+
+        /**
+         * Lets the agent process its mail.
+         * @return true if the actor is still scheduled, as new mail has arrived.
+         */
+        private boolean step() {
+            try {
+                agent.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            if (agent.getAgtState() == ComAgent.TERMINATED) {
+                // The flag is never cleared, hence the actor will not be scheduled anymore
+                onIdle();
+                return false;
+            }
+            agent.clearScheduled();
+            // A message sent after clearing the flag schedules the actor again. The mail of a stopped agent is
+            // processed only once the next cycle is started.
+            if (agent.getAgtState() == ComAgent.RUNNING && agent.hasMail() && agent.markScheduled()) {
+                return true;
+            }
+            onIdle();
+            return false;
+        }
+    }
+}
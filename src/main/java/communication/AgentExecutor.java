@@ -0,0 +1,23 @@
+package communication;
+
+import kernel.SimulationContext;
+
+import java.util.List;
+
+/**
+ * Drives the execution of the spawned agents: it lets them process their mail until the cycle ticker
+ * has counted the given number of cycles, and it starts every new cycle once all agents have terminated the
+ * previous one.
+ */
+public interface AgentExecutor {
+
+    /**
+     * Runs the agents until nbIterations synchronous cycles have been completed, or the messages have converged
+     * (see CycleTickerDeamon#isFinished).
+     * @param context The context of the simulation the agents belong to.
+     * @param agents The spawned agents.
+     * @param nbIterations The number of cycles to execute.
+     */
+    void execute(SimulationContext context, List<DCOPagent> agents, int nbIterations);
+
+}
@@ -64,6 +64,13 @@ public class AgentStatistics {
         sentMessages += n;
     }
 
+    /**
+     * @throws ArithmeticException If the number of messages sent overflows the counter.
+     */
+    public void incrSentMessages(long n) {
+        sentMessages = Math.toIntExact(sentMessages + n);
+    }
+
     public void updateIterationStats() {
         stopWatch.suspend();
         sentMessagesIter.add(sentMessages);
@@ -89,6 +96,21 @@ public class AgentStatistics {
         stopWatch.resume();
     }
 
+    /**
+     * Saves the statistics of an iteration which has not been measured by the stop watch (e.g., computed by a
+     * centralized engine): the given time, and the values of the given decision variables.
+     */
+    public void updateIterationStats(long nanoTime, String[] varNames, int[] values) {
+        sentMessagesIter.add(sentMessages);
+        nanoTimeIter.add(nanoTime);
+        for (int i = 0; i < varNames.length; i++) {
+            if (!solutionValue.containsKey(varNames[i])) {
+                solutionValue.put(varNames[i], new ArrayList<>());
+            }
+            solutionValue.get(varNames[i]).add(values[i]);
+        }
+    }
+
     public HashMap<String, List<Integer>> getSolutionValue() {
         return solutionValue;
     }
@@ -63,6 +63,20 @@ public class BasicMessage implements Serializable {
         this.NCCCs = NCCCs;
     }
 
+    /**
+     * @return The number of values (e.g., cost table cells) carried by the message.
+     */
+    public int getSize() {
+        return 0;
+    }
+
+    /**
+     * @return The number of cost table cells read by the sender to compute the message (by default, its size).
+     */
+    public int getNbComputedCells() {
+        return getSize();
+    }
+
     public boolean isTrackable() {
         return trackable;
     }
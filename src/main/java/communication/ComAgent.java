@@ -23,6 +23,7 @@
 package communication;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Created by ffiorett on 7/17/15.
@@ -38,7 +39,19 @@ public abstract class ComAgent {
     private HashMap<Long, ComAgent> neigbhorRefByID;
     private ComAgent leaderRef = null;
     private AgentStatistics agentStatistics;
-    private Queue<TrackableObject> mailbox;
+    private Mailbox mailbox;
+    private final Mailbox.Handler mailHandler;
+    private volatile MailListener mailListener = null;
+    private NetworkModel networkModel = null;
+    // key: recipient, value: the envelope of the messages sent to it in the current batch (see setBatching)
+    private final LinkedHashMap<ComAgent, Envelope> outbox = new LinkedHashMap<>();
+    private boolean batching = false;
+    private boolean collecting = false;
+    // Whether the messages of an envelope are being delivered: their time is that of the envelope (see mailHandler)
+    private boolean unpacking = false;
+    private volatile int scheduled = 0;
+    private static final AtomicIntegerFieldUpdater<ComAgent> SCHEDULED =
+            AtomicIntegerFieldUpdater.newUpdater(ComAgent.class, "scheduled");
     protected static int HEATUP = -1;
     protected static int RUNNING = 0;
     protected static int STOPPED = 1;
@@ -53,12 +66,35 @@ public abstract class ComAgent {
         this.neighborsRef = new ArrayList<ComAgent>();
         this.neigbhorRefByID = new HashMap<Long, ComAgent>();
         this.agentStatistics = new AgentStatistics();
-        this.mailbox = new LinkedList<>();
+        this.mailbox = new MpscArrayMailbox();
+        this.mailHandler = (message, sender) -> {
+            try {
+                if (message instanceof Envelope) {
+                    // The simulated time is updated once per envelope. The messages are delivered as they were sent,
+                    // without stamping them: the sender may reuse them, and their own time is stale
+                    updateSimulatedTime(((Envelope) message).getSimulatedNanoTime());
+                    unpacking = true;
+                    try {
+                        for (BasicMessage m : ((Envelope) message).getMessages())
+                            onReceive(m, sender);
+                    } finally {
+                        unpacking = false;
+                    }
+                } else {
+                    onReceive(message, sender);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        };
         agentStatistics.getStopWatch().start();
         this.state = HEATUP;
     }
 
     public void run() {
+        if (state == TERMINATED)
+            return;
+
         if (state == HEATUP) {
             // preStart only if first time
             preStart();
@@ -72,6 +108,7 @@ public abstract class ComAgent {
         } else {
             // enter here only when terminated
             preStop();
+            state = TERMINATED;
         }
     }
 
@@ -88,10 +125,8 @@ public abstract class ComAgent {
     protected void onReceive(Object message, ComAgent sender) {
         if (message instanceof BasicMessage) {
             // Save statistics info
-            agentStatistics.getStopWatch().suspend();
-            long recvSimTime = ((BasicMessage) message).getSimulatedNanoTime();
-            agentStatistics.getStopWatch().updateTimeIfFaster(recvSimTime);
-            agentStatistics.getStopWatch().resume();            // Resumes Simulated Time (if suspended)
+            if (!unpacking)
+                updateSimulatedTime(((BasicMessage) message).getSimulatedNanoTime());
         } else if (message instanceof Message.RegisterNeighbor) {
             Message.RegisterNeighbor actorNeighbor = (Message.RegisterNeighbor) message;
             if (actorNeighbor.getAgentRef() != getSelf()) {
@@ -106,6 +141,15 @@ public abstract class ComAgent {
         }
     }
 
+    /**
+     * Advances the simulated time of this agent to the reception time of a message, if it is later.
+     */
+    private void updateSimulatedTime(long recvSimTime) {
+        agentStatistics.getStopWatch().suspend();
+        agentStatistics.getStopWatch().updateTimeIfFaster(recvSimTime);
+        agentStatistics.getStopWatch().resume();            // Resumes Simulated Time (if suspended)
+    }
+
     /**
      * Sends a message to this agent.
      * @param message The message to be sent
@@ -115,7 +159,8 @@ public abstract class ComAgent {
         try {
             String sName = sender == null ? "none" : sender.getName();
             //System.out.println(sName + " sending " + message.toString() + " to " + getName());
-            mailbox.add(new TrackableObject(message, sender));
+            mailbox.add(message, sender);
+            notifyMailListener();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -123,16 +168,32 @@ public abstract class ComAgent {
 
     /**
      * Mirror of tell function for BasicMessage objects.
-     * It is used to update the statistics.
+     * It is used to update the statistics: the message is stamped with the simulated time of the sender, plus the
+     * delay of the link to this agent (if a network model is set). If the sender is collecting a batch of messages,
+     * the message is only added to the sender's envelope for this agent.
      * @param message The message to be sent
      * @param sender  The sender of the message
      */
     public void tell(BasicMessage message, ComAgent sender) {
+        if (sender.collecting && message.isTrackable()) {
+            Envelope envelope = sender.outbox.get(this);
+            if (envelope == null) {
+                envelope = new Envelope();
+                sender.outbox.put(this, envelope);
+            }
+            envelope.add(message);
+            return;
+        }
         sender.getAgentStatistics().getStopWatch().suspend();
-        if (message.isTrackable())
-            message.setSimulatedNanoTime(sender.getAgentStatistics().getStopWatch().getNanoTime());
+        if (message.isTrackable()) {
+            long simTime = sender.getAgentStatistics().getStopWatch().getNanoTime();
+            if (networkModel != null)
+                simTime += networkModel.getDelay(sender, this, message);
+            message.setSimulatedNanoTime(simTime);
+        }
         try {
-            mailbox.add(new TrackableObject(message, sender));
+            mailbox.add(message, sender);
+            notifyMailListener();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -150,15 +211,112 @@ public abstract class ComAgent {
      */
     public void processMail() {
         agentStatistics.getStopWatch().resume();
-        while (!mailbox.isEmpty()) {
-            try {
-                TrackableObject to = mailbox.remove();
-                onReceive(to.getObject(), to.getTrack());
-            } catch (Exception e) {
-                e.printStackTrace();
+        mailbox.drain(mailHandler);
+        agentStatistics.getStopWatch().suspend();
+    }
+
+    /**
+     * Starts collecting the messages sent by this agent into envelopes, if batching is enabled, until the next call
+     * to flushBatch.
+     */
+    protected void startBatch() {
+        collecting = batching;
+    }
+
+    /**
+     * Sends the messages collected since the last call to startBatch: one envelope per recipient, or the message
+     * itself if it is the only one sent to the recipient. It does nothing if no batch is being collected.
+     */
+    protected void flushBatch() {
+        if (!collecting)
+            return;
+        collecting = false;
+        for (Map.Entry<ComAgent, Envelope> entry : outbox.entrySet()) {
+            List<BasicMessage> messages = entry.getValue().getMessages();
+            if (messages.size() == 1) {
+                entry.getKey().tell(messages.get(0), this);
+            } else {
+                entry.getKey().tell(entry.getValue(), this);
             }
         }
-        agentStatistics.getStopWatch().suspend();
+        outbox.clear();
+    }
+
+    /**
+     * Sets whether the messages sent by this agent to the same recipient in a batch (e.g., in a cycle, see
+     * SynchronousAgent) are coalesced into a single envelope. The network (and the statistics) see each envelope as
+     * one message.
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * Replaces the agent mailbox. It must be called before any message is sent to this agent.
+     * @param mailbox The new (empty) mailbox.
+     */
+    public void setMailbox(Mailbox mailbox) {
+        assert (this.mailbox.isEmpty());
+        this.mailbox = mailbox;
+    }
+
+    /**
+     * Replaces the agent mailbox, and moves the messages pending in the current mailbox to the new one, in order
+     * of arrival. It must be called when the agent is not running.
+     * @param mailbox The new mailbox.
+     * @return The previous mailbox, which is left empty.
+     */
+    Mailbox moveMailbox(Mailbox mailbox) {
+        Mailbox previous = this.mailbox;
+        this.mailbox = mailbox;
+        previous.drain(mailbox::add);
+        return previous;
+    }
+
+    /**
+     * Sets the model of the links on which the messages to this agent are delivered.
+     * @param networkModel The network model, or null to deliver the messages instantly.
+     */
+    public void setNetworkModel(NetworkModel networkModel) {
+        this.networkModel = networkModel;
+    }
+
+    /**
+     * Sets the listener which is notified whenever a message is sent to this agent.
+     * @param mailListener The listener, or null to disable the notifications.
+     */
+    public void setMailListener(MailListener mailListener) {
+        this.mailListener = mailListener;
+    }
+
+    private void notifyMailListener() {
+        MailListener listener = mailListener;
+        if (listener != null) {
+            listener.onMail(this);
+        }
+    }
+
+    /**
+     * Marks this agent as scheduled for execution (e.g., as being in a ready queue).
+     * @return false if the agent was already marked.
+     */
+    boolean markScheduled() {
+        return SCHEDULED.compareAndSet(this, 0, 1);
+    }
+
+    void clearScheduled() {
+        scheduled = 0;
+    }
+
+    boolean isScheduled() {
+        return scheduled != 0;
+    }
+
+    /**
+     * @return true if a message has been added to the mailbox and not yet processed.
+     */
+    boolean hasMail() {
+        return !mailbox.isEmpty();
     }
 
     public ComAgent getSelf() {
@@ -176,11 +334,13 @@ public abstract class ComAgent {
         return this.state;
     }
 
+    /**
+     * Sets the agent state. Stopping the agent suspends its stop watch, which is resumed only when the agent
+     * processes its mail again: the time an agent awaits to be run (by the executor) is not simulated time.
+     */
     public void setAgtState(int state) {
         if (this.state == RUNNING && state == STOPPED) {
             agentStatistics.getStopWatch().suspend();
-        } else if (this.state == STOPPED && state == RUNNING) {
-            agentStatistics.getStopWatch().resume();
         }
         this.state = state;
     }
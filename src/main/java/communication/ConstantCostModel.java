@@ -0,0 +1,24 @@
+package communication;
+
+/**
+ * Charges the same time for processing every algorithm message, whatever its content. The control messages
+ * (e.g., cycle and start signals) are free.
+ */
+public class ConstantCostModel implements CostModel {
+
+    private final long nsPerMessage;
+
+    public ConstantCostModel(long nsPerMessage) {
+        this.nsPerMessage = nsPerMessage;
+    }
+
+    @Override
+    public long getProcessingCost(Object message) {
+        return message instanceof BasicMessage ? nsPerMessage : 0;
+    }
+
+    @Override
+    public long getSendingCost(BasicMessage message) {
+        return 0;
+    }
+}
@@ -0,0 +1,30 @@
+package communication;
+
+/**
+ * All links have the same latency and bandwidth.
+ */
+public class ConstantNetworkModel extends NetworkModel {
+
+    private final long latency;
+    private final double bandwidth;
+
+    /**
+     * @param latency The latency of every link, in nanoseconds.
+     * @param bandwidth The bandwidth of every link, in Mbit/s (0 = unlimited).
+     * @throws IllegalArgumentException If the latency or the bandwidth is negative.
+     */
+    public ConstantNetworkModel(long latency, double bandwidth) {
+        this.latency = checkLatency(latency);
+        this.bandwidth = checkBandwidth(bandwidth);
+    }
+
+    @Override
+    protected long getLatency(long senderId, long recipientId) {
+        return latency;
+    }
+
+    @Override
+    protected double getBandwidth(long senderId, long recipientId) {
+        return bandwidth;
+    }
+}
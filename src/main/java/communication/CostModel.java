@@ -0,0 +1,21 @@
+package communication;
+
+/**
+ * Estimates the computation time spent by an agent on its messages. It is used by the discrete-event executor in
+ * place of the wall clock, hence the simulated time of a run only depends on the instance and the algorithm.
+ */
+public interface CostModel {
+
+    /**
+     * @param message A message received by an agent.
+     * @return The simulated time, in nanoseconds, spent by the recipient to process the message.
+     */
+    long getProcessingCost(Object message);
+
+    /**
+     * @param message A message sent by an agent.
+     * @return The simulated time, in nanoseconds, spent by the sender to produce the message.
+     */
+    long getSendingCost(BasicMessage message);
+
+}
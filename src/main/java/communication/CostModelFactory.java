@@ -0,0 +1,37 @@
+package communication;
+
+/**
+ * Creates the cost model used by the discrete-event executor, from a specification of the form:
+ * <ul>
+ *     <li>CELLS[:nsPerMessage[:nsPerCell]] (default: 10000 ns per message, 1000 ns per table cell);</li>
+ *     <li>COMPUTED_CELLS[:nsPerMessage[:nsPerCell]]: as CELLS, but the sender of a message is charged the cells it
+ *     reads to compute it;</li>
+ *     <li>MSGS[:nsPerMessage] (default: 10000 ns per message).</li>
+ * </ul>
+ */
+public class CostModelFactory {
+
+    public static final long DEFAULT_NS_PER_MESSAGE = 10000;
+    public static final long DEFAULT_NS_PER_CELL = 1000;
+
+    /**
+     * @throws IllegalArgumentException If the specification is invalid.
+     */
+    public static CostModel create(String spec) {
+        String[] tokens = spec.split(":");
+        String type = tokens[0].toUpperCase();
+        try {
+            long nsPerMessage = tokens.length > 1 ? Long.parseLong(tokens[1]) : DEFAULT_NS_PER_MESSAGE;
+            if (type.equals("CELLS") || type.equals("COMPUTED_CELLS")) {
+                long nsPerCell = tokens.length > 2 ? Long.parseLong(tokens[2]) : DEFAULT_NS_PER_CELL;
+                return new TableCellsCostModel(nsPerMessage, nsPerCell, type.equals("COMPUTED_CELLS"));
+            }
+            else if (type.equals("MSGS"))
+                return new ConstantCostModel(nsPerMessage);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cost model: " + spec, e);
+        }
+        throw new IllegalArgumentException("Unknown cost model: " + spec);
+    }
+
+}
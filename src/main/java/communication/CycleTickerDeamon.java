@@ -3,51 +3,167 @@ package communication;
 import kernel.AgentState;
 import kernel.AgentView;
 import kernel.Constants;
-import kernel.DCOPinfo;
+import kernel.Logger;
+import kernel.SimulationContext;
 
 import java.util.*;
+import java.util.concurrent.Phaser;
 
 /**
  * Created by nando on 6/2/17.
+ * Synchronizes the cycles of the agents through a (tiered) phased barrier: each agent is a party which arrives
+ * when it terminates its cycle. The cycle is completed once all agents have arrived, and the next cycle is started
+ * by the executor (see {@link #startNewCycle()}), never by the agent which arrives last.
+ *
+ * When a convergence check is set, each agent records the maximum residual of the messages it sent during the
+ * cycle (see {@link DCOPagent#getCycleResidual()}), without synchronization. The residuals are reduced once per
+ * cycle, when the barrier advances, and the run is finished once the global residual has stayed below the
+ * convergence delta for the given number of consecutive cycles.
  */
 public class CycleTickerDeamon /*extends ComAgent*/ {
 
-    int currentCycle;
+    // Maximum number of parties registered to a leaf phaser (a Phaser supports at most 65535 parties).
+    private static final int MAX_PARTIES = 4096;
+
+    public static final double DEFAULT_CONVERGENCE_DELTA = 0.001;
+
+    private volatile int currentCycle;
+    private volatile boolean cycleCompleted;
     int nbAgents;
-    BitSet agentsTerminatedCurrentCycle;
+    private final SimulationContext context;
+
+    private Phaser root;
+    // key: agent ID, value: the phaser to which the agent arrives
+    private HashMap<Long, Phaser> agentPhaser;
+
+    // Convergence check (disabled if convergenceCycles = 0)
+    private double convergenceDelta = DEFAULT_CONVERGENCE_DELTA;
+    private int convergenceCycles = 0;
+    private int nbConvergedCycles;
+    private volatile boolean converged;
 
-    public CycleTickerDeamon(List<AgentState> spawnedAgentStates) {
+    public CycleTickerDeamon(SimulationContext context, List<AgentState> spawnedAgentStates) {
+        this.context = context;
         currentCycle = 0;
+        cycleCompleted = false;
         nbAgents = spawnedAgentStates.size();
-        agentsTerminatedCurrentCycle = new BitSet(spawnedAgentStates.size());
+        agentPhaser = new HashMap<>();
+
+        root = new Phaser() {
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties) {
+                Logger.debug(() -> "Cycle: " + currentCycle);
+                checkConvergence();
+                currentCycle ++;
+                cycleCompleted = true;
+                return false;
+            }
+        };
+
+        Phaser leaf = null;
+        for (int i = 0; i < spawnedAgentStates.size(); i++) {
+            if (i % MAX_PARTIES == 0) {
+                leaf = new Phaser(root, Math.min(MAX_PARTIES, nbAgents - i));
+            }
+            agentPhaser.put(spawnedAgentStates.get(i).getID(), leaf);
+        }
+    }
+
+    /**
+     * Enables the convergence check.
+     * @param nbCycles The number of consecutive cycles whose residual must be smaller than delta (0 = disabled).
+     * @param delta The convergence delta.
+     */
+    public void setConvergence(int nbCycles, double delta) {
+        this.convergenceCycles = nbCycles;
+        this.convergenceDelta = delta;
+    }
+
+    /**
+     * Reduces the residuals of the agents. It is called when the barrier advances: the residuals recorded by the
+     * agents before they arrived are visible.
+     */
+    private void checkConvergence() {
+        if (convergenceCycles == 0)
+            return;
+        double residual = 0;
+        for (DCOPagent agt : context.getAgentsRef().values()) {
+            residual = Math.max(residual, agt.getCycleResidual());
+        }
+        nbConvergedCycles = residual < convergenceDelta ? nbConvergedCycles + 1 : 0;
+        converged = nbConvergedCycles >= convergenceCycles;
+    }
+
+    /**
+     * @return true if the messages have converged, i.e., their residual has been smaller than the convergence
+     * delta for the given number of consecutive cycles.
+     */
+    public boolean isConverged() {
+        return converged;
     }
 
-    public synchronized void terminateAgentCycle(ComAgent agent) {
-        AgentView agentView = DCOPinfo.agentsRef.get(agent.getId()).getAgentView();
+    /**
+     * @return true if no new cycle is to be started: the given number of cycles has been completed, or the
+     * messages have converged.
+     */
+    public boolean isFinished(int nbIterations) {
+        return currentCycle >= nbIterations || converged;
+    }
+
+    /**
+     * Saves the agent statistics of the current cycle and marks the agent as arrived to the cycle barrier.
+     * It is called by the agent itself, hence it can be executed concurrently by different agents.
+     */
+    public void terminateAgentCycle(ComAgent agent) {
+        // An agent arrives at most once per cycle
+        if (agent.getAgtState() != ComAgent.RUNNING)
+            return;
+
+        AgentView agentView = context.getAgent(agent.getId()).getAgentView();
         agent.getAgentStatistics().updateIterationStats(agentView);
         agent.setAgtState(ComAgent.STOPPED);
-        agentsTerminatedCurrentCycle.set((int)agent.getId());
-        if (agentsTerminatedCurrentCycle.cardinality() == nbAgents)
-        {
-            // compute cost
-            System.out.println("Cycle: " + currentCycle);
-            //DCOPinfo.leaderAgent.getAgentStatistics().setSolutionCostIter(getProblemCost())
-            //System.out.println(getProblemCost());
-            currentCycle ++;
-            agentsTerminatedCurrentCycle.clear();
-
-            // start new cycle by sending each message
-            for (DCOPagent agt : DCOPinfo.agentsRef.values()) {
-                agt.setAgtState(ComAgent.RUNNING);
-                agt.tell(new Message.StartNewCycle(), ComAgent.noSender());
-            }
+        agentPhaser.get(agent.getId()).arrive();
+    }
+
+    /**
+     * @return true if all agents have terminated the current cycle and the new one has not been started yet.
+     */
+    public boolean isCycleCompleted() {
+        return cycleCompleted;
+    }
+
+    /**
+     * Starts a new cycle by waking up and signaling all agents.
+     * It must be called when no agent is running (i.e., in between two executor passes).
+     */
+    public void startNewCycle() {
+        cycleCompleted = false;
+        for (DCOPagent agt : context.getAgentsRef().values()) {
+            if (agt.getAgtState() == ComAgent.TERMINATED)
+                continue;
+            agt.setAgtState(ComAgent.RUNNING);
+            agt.tell(new Message.StartNewCycle(), ComAgent.noSender());
         }
     }
 
+    /**
+     * @return true if the current cycle cannot be completed, as some agent has not terminated it but no running
+     * agent has pending mail (e.g., an agent failed while processing a message).
+     * It must be called when no agent is running.
+     */
+    public boolean isStalled() {
+        if (cycleCompleted)
+            return false;
+        for (DCOPagent agt : context.getAgentsRef().values()) {
+            if (agt.getAgtState() == ComAgent.RUNNING && agt.hasMail())
+                return false;
+        }
+        return true;
+    }
 
     public double getProblemCost() {
         double cost = 0;
-        for (DCOPagent agt : DCOPinfo.agentsRef.values()) {
+        for (DCOPagent agt : context.getAgentsRef().values()) {
             double val = agt.getAgentView().getEvaluator().evaluate();
             if (Constants.isInf(val)) {
                 return Constants.infinity;
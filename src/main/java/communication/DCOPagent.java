@@ -36,6 +36,8 @@ public abstract class DCOPagent extends ComAgent {
     private int algorithmState;
     private AgentActions agentActions;
     private AgentView agentView;
+    // The maximum residual of the messages sent during the current cycle (see CycleTickerDeamon)
+    private double cycleResidual;
 
     public DCOPagent(ComAgent statsCollector, AgentState agentState) {
         super(agentState.getName(), agentState.getID());
@@ -47,6 +49,18 @@ public abstract class DCOPagent extends ComAgent {
         this.statsCollector = statsCollector;
     }
 
+    /**
+     * Sets the maximum residual (i.e., the largest change of a value) of the messages sent by this agent during the
+     * current cycle. It must be called before the agent terminates its cycle.
+     */
+    protected void setCycleResidual(double residual) {
+        cycleResidual = residual;
+    }
+
+    public double getCycleResidual() {
+        return cycleResidual;
+    }
+
     @Override
     protected void preStart() {
         statsCollector.tell(new StatisticsDeamon.WatchMe(getSelf()), getSelf());
@@ -0,0 +1,155 @@
+package communication;
+
+import kernel.Logger;
+import kernel.SimulationContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Simulates the agents with a discrete-event engine, from the calling thread only. Every message is an event,
+ * timestamped with the logical clock of its sender (the simulated time of a BasicMessage), and the events are
+ * delivered one at a time, in order of timestamp (ties are broken by order of sending).
+ *
+ * The stop watches of the agents are logical: the wall clock is never read, and the time spent by an agent on a
+ * message is charged by the given cost model. A new cycle is started, at the time of the last event, once no
+ * event is pending and all agents have terminated the current cycle. Hence the simulated time and the results of
+ * a run are reproducible, and they do not depend on the host nor on its load.
+ */
+public class DiscreteEventExecutor implements AgentExecutor {
+
+    private final CostModel costModel;
+    private final PriorityQueue<Event> events = new PriorityQueue<>((e1, e2) -> {
+        int cmp = Long.compare(e1.time, e2.time);
+        return cmp != 0 ? cmp : Long.compare(e1.seq, e2.seq);
+    });
+    // The time of the last delivered event
+    private long now;
+    private long nextSeq;
+
+    public DiscreteEventExecutor(CostModel costModel) {
+        this.costModel = costModel;
+    }
+
+    @Override
+    public void execute(SimulationContext context, List<DCOPagent> agents, int nbIterations) {
+        CycleTickerDeamon ticker = context.getCycleTickerDeamon();
+        events.clear();
+        now = 0;
+        nextSeq = 0;
+
+        List<Mailbox> previousMailboxes = new ArrayList<>(agents.size());
+        for (DCOPagent agt : agents) {
+            agt.getAgentStatistics().getStopWatch().setLogical();
+            // The messages sent before the execution are delivered first, in order of arrival
+            previousMailboxes.add(agt.moveMailbox(new EventMailbox(agt)));
+        }
+
+        try {
+            while (!ticker.isFinished(nbIterations)) {
+                Event event = events.poll();
+                if (event == null) {
+                    if (ticker.isCycleCompleted()) {
+                        ticker.startNewCycle();
+                        continue;
+                    }
+                    Logger.warn(() -> "No message is pending, but cycle " + ticker.getCurrentCycle()
+                            + " is not completed.");
+                    break;
+                }
+                deliver(event);
+            }
+        } finally {
+            for (int i = 0; i < agents.size(); i++) {
+                agents.get(i).moveMailbox(previousMailboxes.get(i));
+            }
+            events.clear();
+        }
+    }
+
+    /**
+     * Advances the clock of the recipient to the event time (if it is behind), charges the processing cost of the message, and
+     * lets the recipient process it.
+     */
+    private void deliver(Event event) {
+        now = Math.max(now, event.time);
+        ComAgent recipient = event.mailbox.owner;
+        StopWatch stopWatch = recipient.getAgentStatistics().getStopWatch();
+        // A message cannot be processed before its delivery. In particular, no agent starts a cycle before the
+        // time at which the previous one has been completed: hence every message of the new cycle is delivered
+        // after the (simultaneous) start signals.
+        stopWatch.updateTimeIfFaster(event.time);
+        stopWatch.addTime(costModel.getProcessingCost(event.message));
+
+        event.mailbox.released.add(event);
+        try {
+            recipient.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Event {
+        private final long time;
+        private final long seq;
+        private final EventMailbox mailbox;
+        private final Object message;
+        private final ComAgent sender;
+
+        Event(long time, long seq, EventMailbox mailbox, Object message, ComAgent sender) {
+            this.time = time;
+            this.seq = seq;
+            this.mailbox = mailbox;
+            this.message = message;
+            this.sender = sender;
+        }
+    }
+
+    /**
+     * Turns every message added into an event. The owner of the mailbox only sees the messages which have been
+     * delivered by the engine. The sender of a trackable message is charged with the cost of producing it, and
+     * the message is timestamped with the sender's clock plus the network delay; the other messages are
+     * timestamped with the current time.
+     */
+    private class EventMailbox implements Mailbox {
+        private final ComAgent owner;
+        private final ArrayDeque<Event> released = new ArrayDeque<>();
+
+        EventMailbox(ComAgent owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void add(Object message, ComAgent sender) {
+            long time = now;
+            if (message instanceof BasicMessage && sender != null && ((BasicMessage) message).isTrackable()) {
+                BasicMessage basicMessage = (BasicMessage) message;
+                StopWatch stopWatch = sender.getAgentStatistics().getStopWatch();
+                // The message has been stamped with the sender clock (plus the network delay) when it was sent
+                long sendingCost = costModel.getSendingCost(basicMessage);
+                stopWatch.addTime(sendingCost);
+                basicMessage.setSimulatedNanoTime(basicMessage.getSimulatedNanoTime() + sendingCost);
+                time = basicMessage.getSimulatedNanoTime();
+            }
+            events.add(new Event(time, nextSeq++, this, message, sender));
+        }
+
+        @Override
+        public int drain(Handler handler) {
+            int count = 0;
+            Event event;
+            while ((event = released.poll()) != null) {
+                handler.onMessage(event.message, event.sender);
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return released.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package communication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carries all the messages sent by an agent to the same recipient in a cycle, as a single network message. The
+ * envelope is unpacked by the recipient's mailbox handler, hence the agents only see the messages it carries, in
+ * order of sending, at the time of the envelope.
+ */
+public class Envelope extends BasicMessage {
+    private static final long serialVersionUID = -2318426431587291746L;
+    private final List<BasicMessage> messages = new ArrayList<>();
+    private int size = 0;
+    private int nbComputedCells = 0;
+
+    public void add(BasicMessage message) {
+        messages.add(message);
+        size += message.getSize();
+        nbComputedCells += message.getNbComputedCells();
+    }
+
+    public List<BasicMessage> getMessages() {
+        return messages;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getNbComputedCells() {
+        return nbComputedCells;
+    }
+
+    @Override
+    public String toString() {
+        return "Envelope{" +
+                "messages=" + messages +
+                '}';
+    }
+}
@@ -0,0 +1,31 @@
+package communication;
+
+/**
+ * Creates the executor used to run the agents.
+ */
+public class ExecutorFactory {
+
+    public static AgentExecutor create(String type, int nbThreads) {
+        return create(type, nbThreads, CostModelFactory.create("CELLS"));
+    }
+
+    /**
+     * @param costModel The cost model charging the computation time of the agents, in a discrete-event simulation.
+     * @throws IllegalArgumentException If the type is unknown.
+     */
+    public static AgentExecutor create(String type, int nbThreads, CostModel costModel) {
+        if (type.toUpperCase().equals("SEQ"))
+            return new SequentialExecutor();
+        else if (type.toUpperCase().equals("PAR"))
+            return new ParallelCycleExecutor(nbThreads);
+        else if (type.toUpperCase().equals("READY"))
+            return new ReadyQueueExecutor(nbThreads);
+        else if (type.toUpperCase().equals("ACTOR"))
+            return new ActorExecutor(nbThreads);
+        else if (type.toUpperCase().equals("DES"))
+            return new DiscreteEventExecutor(costModel);
+        else
+            throw new IllegalArgumentException("Unknown executor: " + type);
+    }
+
+}
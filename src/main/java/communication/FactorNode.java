@@ -11,25 +11,43 @@ import java.util.List;
  */
 public class FactorNode {
     private List<VariableNode> neighbors;
+    // The position of this node in the neighbors of each of its neighbors
+    private List<Integer> slots;
     private Constraint constraint;
     private DCOPagent owner;
+    // The position of the node in the function nodes of its owner
+    private int index = -1;
 
     public FactorNode(FactorGraphAgent owner, Constraint constraint) {
         this.owner = owner;
         this.constraint = constraint;
         neighbors = new ArrayList<>();
+        slots = new ArrayList<>();
         owner.addFunctionNode(this);
     }
 
-    public void addNeighbor(VariableNode varNode) {
-        if (!neighbors.contains(varNode))
-            neighbors.add(varNode);
+    /**
+     * Adds a neighbor, unless it is already one (e.g., a variable appearing twice in the scope of a factor).
+     * @param slot The position of this node in the neighbors of varNode.
+     */
+    public void addNeighbor(VariableNode varNode, int slot) {
+        if (neighbors.contains(varNode))
+            return;
+        neighbors.add(varNode);
+        slots.add(slot);
     }
 
     public List<VariableNode> getNeighbors() {
         return neighbors;
     }
 
+    /**
+     * @return The position of this node in the neighbors of its i-th neighbor.
+     */
+    public int getSlot(int i) {
+        return slots.get(i);
+    }
+
     public Constraint getConstraint() {
         return constraint;
     }
@@ -38,6 +56,14 @@ public class FactorNode {
         return owner;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     public long getID() {
         return constraint.getID();
     }
@@ -0,0 +1,34 @@
+package communication;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A mailbox backed by a concurrent linked queue: every message is wrapped into a TrackableObject
+ * and stored into its own queue node.
+ */
+public class LinkedQueueMailbox implements Mailbox {
+
+    private final Queue<TrackableObject> queue = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void add(Object message, ComAgent sender) {
+        queue.add(new TrackableObject(message, sender));
+    }
+
+    @Override
+    public int drain(Handler handler) {
+        int n = 0;
+        TrackableObject to;
+        while ((to = queue.poll()) != null) {
+            handler.onMessage(to.getObject(), to.getTrack());
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+}
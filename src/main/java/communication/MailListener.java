@@ -0,0 +1,16 @@
+package communication;
+
+/**
+ * Notified whenever a message is added to the mailbox of an agent. It is used by the executors which run an
+ * agent only when it has pending mail.
+ */
+public interface MailListener {
+
+    /**
+     * Called by the sender, right after the message has been added to the recipient's mailbox.
+     * It can be called concurrently by multiple senders.
+     * @param recipient The agent which has received the message.
+     */
+    void onMail(ComAgent recipient);
+
+}
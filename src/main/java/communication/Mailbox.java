@@ -0,0 +1,35 @@
+package communication;
+
+/**
+ * The queue of messages of an agent. Messages can be added by any thread (the senders), but they are
+ * consumed only by the thread which is currently running the agent owning the mailbox.
+ */
+public interface Mailbox {
+
+    /**
+     * Adds a message to the mailbox. It can be called concurrently by multiple senders.
+     * @param message The message to be delivered
+     * @param sender  The sender of the message
+     */
+    void add(Object message, ComAgent sender);
+
+    /**
+     * Removes all messages in the mailbox, in order of arrival, and passes them to the handler.
+     * Messages added while draining are processed as well.
+     * It must be called by one consumer at a time.
+     * @return The number of messages processed.
+     */
+    int drain(Handler handler);
+
+    /**
+     * It must be called by the consumer. The result is exact only while no sender is adding a message: a message
+     * whose addition is in progress may or may not be counted. The senders notify the owner of the mailbox once
+     * the message is added (see ComAgent.tell), so that a message missed here is not lost.
+     * @return true if every message added to the mailbox has been drained.
+     */
+    boolean isEmpty();
+
+    interface Handler {
+        void onMessage(Object message, ComAgent sender);
+    }
+}
@@ -0,0 +1,20 @@
+package communication;
+
+/**
+ * Creates the mailbox of an agent.
+ */
+public class MailboxFactory {
+
+    /**
+     * @throws IllegalArgumentException If the type is unknown.
+     */
+    public static Mailbox create(String type) {
+        if (type.toUpperCase().equals("LINKED"))
+            return new LinkedQueueMailbox();
+        else if (type.toUpperCase().equals("MPSC"))
+            return new MpscArrayMailbox();
+        else
+            throw new IllegalArgumentException("Unknown mailbox: " + type);
+    }
+
+}
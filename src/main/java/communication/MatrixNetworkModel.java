@@ -0,0 +1,67 @@
+package communication;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The latency and bandwidth of each link are read from a file. The file contains one row per sender agent, and
+ * one column per recipient agent (in order of agent ID); each entry is either the latency of the link, in
+ * microseconds, or "latency/bandwidth", with the bandwidth in Mbit/s. Empty lines and lines starting with '#'
+ * are ignored. The links which are not in the matrix have the default bandwidth and no latency.
+ */
+public class MatrixNetworkModel extends NetworkModel {
+
+    private final long[][] latency;
+    private final double[][] bandwidth;
+    private final double defaultBandwidth;
+
+    /**
+     * @param file The matrix file.
+     * @param defaultBandwidth The bandwidth of the links whose entry does not specify it, in Mbit/s
+     *                         (0 = unlimited).
+     * @throws IllegalArgumentException If a latency or a bandwidth is negative.
+     */
+    public MatrixNetworkModel(String file, double defaultBandwidth) throws IOException {
+        this.defaultBandwidth = checkBandwidth(defaultBandwidth);
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                rows.add(line.split("\\s+"));
+            }
+        }
+
+        latency = new long[rows.size()][];
+        bandwidth = new double[rows.size()][];
+        for (int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            latency[i] = new long[row.length];
+            bandwidth[i] = new double[row.length];
+            for (int j = 0; j < row.length; j++) {
+                String[] link = row[j].split("/");
+                latency[i][j] = checkLatency((long) (Double.parseDouble(link[0]) * 1000));
+                bandwidth[i][j] = link.length > 1 ? checkBandwidth(Double.parseDouble(link[1])) : defaultBandwidth;
+            }
+        }
+    }
+
+    @Override
+    protected long getLatency(long senderId, long recipientId) {
+        if (senderId < latency.length && recipientId < latency[(int) senderId].length)
+            return latency[(int) senderId][(int) recipientId];
+        return 0;
+    }
+
+    @Override
+    protected double getBandwidth(long senderId, long recipientId) {
+        if (senderId < bandwidth.length && recipientId < bandwidth[(int) senderId].length)
+            return bandwidth[(int) senderId][(int) recipientId];
+        return defaultBandwidth;
+    }
+}
@@ -0,0 +1,131 @@
+package communication;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An unbounded, lock-free, multi-producer single-consumer mailbox.
+ * Messages are stored in a linked list of fixed-size array chunks: a producer claims a slot of the tail chunk
+ * with a single atomic increment and publishes the message in it; when the chunk is full, producers link a new
+ * one. The consumer drains the published slots in claim order, without allocating any node per message.
+ */
+public class MpscArrayMailbox implements Mailbox {
+
+    private static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private static final AtomicReferenceFieldUpdater<MpscArrayMailbox, Chunk> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(MpscArrayMailbox.class, Chunk.class, "tail");
+
+    private final int chunkSize;
+
+    // Written by producers only
+    private volatile Chunk tail;
+
+    // Accessed by the consumer only
+    private Chunk head;
+    private int headIdx;
+
+    public MpscArrayMailbox() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public MpscArrayMailbox(int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.head = new Chunk(chunkSize);
+        this.headIdx = 0;
+        this.tail = head;
+    }
+
+    @Override
+    public void add(Object message, ComAgent sender) {
+        while (true) {
+            Chunk chunk = tail;
+            int idx = chunk.claim();
+            if (idx < chunkSize) {
+                chunk.senders[idx] = sender;
+                chunk.messages.lazySet(idx, message);   // publishes sender and message
+                return;
+            }
+            // The chunk is full: link a new chunk (or help the producer which is linking it)
+            Chunk next = chunk.next;
+            if (next == null) {
+                Chunk newChunk = new Chunk(chunkSize);
+                next = chunk.casNext(newChunk) ? newChunk : chunk.next;
+            }
+            TAIL.compareAndSet(this, chunk, next);
+        }
+    }
+
+    @Override
+    public int drain(Handler handler) {
+        int n = 0;
+        Chunk chunk = head;
+        int idx = headIdx;
+        while (true) {
+            if (idx == chunkSize) {
+                Chunk next = chunk.next;
+                if (next == null)
+                    break;
+                chunk = next;
+                idx = 0;
+                head = chunk;
+                continue;
+            }
+            Object message = chunk.messages.get(idx);
+            if (message == null)    // not claimed, or claimed but not yet published
+                break;
+            ComAgent sender = chunk.senders[idx];
+            chunk.messages.lazySet(idx, null);
+            chunk.senders[idx] = null;
+            idx++;
+            headIdx = idx;
+            handler.onMessage(message, sender);
+            n++;
+        }
+        headIdx = idx;
+        return n;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        // Checks the claimed slots rather than the published ones, so that a message being added to the current chunk
+        // is counted. A producer which finds the chunk full claims no slot until the next chunk is linked, hence its
+        // message is not counted yet (see Mailbox.isEmpty)
+        Chunk chunk = head;
+        int idx = headIdx;
+        if (idx == chunkSize) {
+            chunk = chunk.next;
+            if (chunk == null)
+                return true;
+            idx = 0;
+        }
+        return chunk.claimed <= idx;
+    }
+
+    private static final class Chunk {
+        private static final AtomicIntegerFieldUpdater<Chunk> CLAIMED =
+                AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "claimed");
+        private static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+        final AtomicReferenceArray<Object> messages;
+        final ComAgent[] senders;
+        volatile int claimed;
+        volatile Chunk next;
+
+        Chunk(int size) {
+            messages = new AtomicReferenceArray<>(size);
+            senders = new ComAgent[size];
+        }
+
+        int claim() {
+            // Once the chunk is full there is no need to keep on incrementing the counter
+            return claimed >= senders.length ? senders.length : CLAIMED.getAndIncrement(this);
+        }
+
+        boolean casNext(Chunk chunk) {
+            return NEXT.compareAndSet(this, null, chunk);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package communication;
+
+import java.util.SplittableRandom;
+
+/**
+ * Models the links between agents: it computes the simulated delay of a message, as the latency of the link plus
+ * the transmission time of the message at the link bandwidth. Links are independent, and contention is not
+ * modeled.
+ */
+public abstract class NetworkModel {
+
+    // Size of the header of a message (e.g., sender, recipient and simulated time), in bytes
+    public static final int HEADER_BYTES = 64;
+    // Size of a message value (i.e., a double), in bytes
+    public static final int VALUE_BYTES = 8;
+
+    /**
+     * @return The simulated delay of the message on the link from sender to recipient, in nanoseconds.
+     */
+    public long getDelay(ComAgent sender, ComAgent recipient, BasicMessage message) {
+        return getLatency(sender.getId(), recipient.getId())
+                + getTransmissionTime(getBytes(message), getBandwidth(sender.getId(), recipient.getId()));
+    }
+
+    /**
+     * Gives the random generator of the links from the agent senderId, before the run. The generator is only used
+     * while the sender runs. The default models are deterministic, and ignore it.
+     */
+    public void setRandom(long senderId, SplittableRandom random) {
+    }
+
+    /**
+     * @return The latency of the link from the agent senderId to the agent recipientId, in nanoseconds.
+     */
+    protected abstract long getLatency(long senderId, long recipientId);
+
+    /**
+     * @return The bandwidth of the link from the agent senderId to the agent recipientId, in Mbit/s, or 0 if the
+     * bandwidth is unlimited.
+     */
+    protected abstract double getBandwidth(long senderId, long recipientId);
+
+    /**
+     * @return The latency, in nanoseconds.
+     * @throws IllegalArgumentException If it is negative: a message would arrive before it is sent.
+     */
+    protected static long checkLatency(long latency) {
+        if (latency < 0)
+            throw new IllegalArgumentException("Negative latency: " + latency + " ns");
+        return latency;
+    }
+
+    /**
+     * @return The bandwidth, in Mbit/s.
+     * @throws IllegalArgumentException If it is negative or not a number.
+     */
+    protected static double checkBandwidth(double bandwidth) {
+        if (!(bandwidth >= 0))
+            throw new IllegalArgumentException("Invalid bandwidth: " + bandwidth + " Mbit/s");
+        return bandwidth;
+    }
+
+    public static long getBytes(BasicMessage message) {
+        return HEADER_BYTES + (long) VALUE_BYTES * message.getSize();
+    }
+
+    /**
+     * @return The time needed to transmit the given bytes at the given bandwidth (in Mbit/s), in nanoseconds.
+     */
+    public static long getTransmissionTime(long bytes, double mbps) {
+        if (mbps <= 0)
+            return 0;
+        return (long) (bytes * 8 * 1000 / mbps);
+    }
+}
@@ -0,0 +1,48 @@
+package communication;
+
+import java.io.IOException;
+
+/**
+ * Creates the network model, from a specification of the form (latencies in microseconds, bandwidths in Mbit/s,
+ * where a bandwidth of 0 is unlimited):
+ * <ul>
+ *     <li>NONE: messages are delivered instantly;</li>
+ *     <li>CONST:latency[:bandwidth];</li>
+ *     <li>UNIFORM:minLatency:maxLatency[:bandwidth], seeded by the seed of the simulation;</li>
+ *     <li>MATRIX:file[:bandwidth] (see MatrixNetworkModel).</li>
+ * </ul>
+ */
+public class NetworkModelFactory {
+
+    /**
+     * @return The network model, or null for NONE.
+     * @throws IllegalArgumentException If the specification is invalid (e.g., a negative latency or bandwidth, or a
+     * minimum latency above the maximum), or if the matrix file cannot be read.
+     */
+    public static NetworkModel create(String spec) {
+        String[] tokens = spec.split(":");
+        String type = tokens[0].toUpperCase();
+        try {
+            if (type.equals("NONE"))
+                return null;
+            else if (type.equals("CONST"))
+                return new ConstantNetworkModel(getMicros(tokens[1]), getDouble(tokens, 2));
+            else if (type.equals("UNIFORM"))
+                return new UniformNetworkModel(getMicros(tokens[1]), getMicros(tokens[2]), getDouble(tokens, 3));
+            else if (type.equals("MATRIX"))
+                return new MatrixNetworkModel(tokens[1], getDouble(tokens, 2));
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid network model: " + spec, e);
+        }
+        throw new IllegalArgumentException("Unknown network model: " + spec);
+    }
+
+    private static long getMicros(String token) {
+        return (long) (Double.parseDouble(token) * 1000);
+    }
+
+    private static double getDouble(String[] tokens, int i) {
+        return tokens.length > i ? Double.parseDouble(tokens[i]) : 0;
+    }
+
+}
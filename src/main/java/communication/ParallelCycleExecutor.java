@@ -0,0 +1,79 @@
+package communication;
+
+import kernel.Logger;
+import kernel.SimulationContext;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the agents on a fork-join pool. At each pass, the agents are partitioned in contiguous ranges which are
+ * executed in parallel; the end of the pass (the join) is the only point in which a new cycle is started.
+ */
+public class ParallelCycleExecutor implements AgentExecutor {
+
+    private final int nbThreads;
+
+    // Minimum number of agents executed by a single fork-join task
+    private static final int MIN_GRAIN_SIZE = 16;
+
+    public ParallelCycleExecutor(int nbThreads) {
+        this.nbThreads = nbThreads;
+    }
+
+    @Override
+    public void execute(SimulationContext context, List<DCOPagent> agents, int nbIterations) {
+        DCOPagent[] agentsArray = agents.toArray(new DCOPagent[agents.size()]);
+        // About 4 tasks per thread, to balance agents with different work loads.
+        int grainSize = Math.max(MIN_GRAIN_SIZE, agentsArray.length / (4 * nbThreads));
+        CycleTickerDeamon ticker = context.getCycleTickerDeamon();
+
+        ForkJoinPool pool = new ForkJoinPool(nbThreads);
+        try {
+            while (!ticker.isFinished(nbIterations)) {
+                pool.invoke(new RunAgentsTask(agentsArray, 0, agentsArray.length, grainSize));
+                if (ticker.isCycleCompleted() && !ticker.isFinished(nbIterations)) {
+                    ticker.startNewCycle();
+                } else if (ticker.isStalled()) {
+                    Logger.warn(() -> "No agent has pending mail, but cycle " + ticker.getCurrentCycle()
+                            + " is not completed.");
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs the agents in the range [from, to).
+     */
+    private static class RunAgentsTask extends RecursiveAction {
+        private static final long serialVersionUID = 8261657684473197624L;
+        private final DCOPagent[] agents;
+        private final int from;
+        private final int to;
+        private final int grainSize;
+
+        RunAgentsTask(DCOPagent[] agents, int from, int to, int grainSize) {
+            this.agents = agents;
+            this.from = from;
+            this.to = to;
+            this.grainSize = grainSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grainSize) {
+                for (int i = from; i < to; i++) {
+                    agents[i].run();
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RunAgentsTask(agents, from, mid, grainSize),
+                          new RunAgentsTask(agents, mid, to, grainSize));
+            }
+        }
+    }
+}
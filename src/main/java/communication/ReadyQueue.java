@@ -0,0 +1,43 @@
+package communication;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The queue of agents having pending mail. An agent is added to the queue when a message is sent to it,
+ * unless it is already queued.
+ */
+public class ReadyQueue implements MailListener {
+
+    private final Queue<ComAgent> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Adds the agent to the queue, if not already present.
+     */
+    public void schedule(ComAgent agent) {
+        if (agent.markScheduled()) {
+            queue.add(agent);
+        }
+    }
+
+    @Override
+    public void onMail(ComAgent recipient) {
+        schedule(recipient);
+    }
+
+    /**
+     * Removes the next ready agent from the queue. Messages sent to the agent from now on will schedule it again.
+     * @return The agent removed, or null if the queue is empty.
+     */
+    public ComAgent poll() {
+        ComAgent agent = queue.poll();
+        if (agent != null) {
+            agent.clearScheduled();
+        }
+        return agent;
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+}
@@ -0,0 +1,108 @@
+package communication;
+
+import kernel.Logger;
+import kernel.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs only the agents which have pending mail. The execution proceeds in waves: each wave runs the agents
+ * currently in the ready queue (in parallel, if more than one thread is used), and the messages they send
+ * schedule their recipients for the next wave. A new cycle is started when the ready queue is empty and all
+ * agents have terminated the current cycle.
+ */
+public class ReadyQueueExecutor implements AgentExecutor {
+
+    private final int nbThreads;
+
+    // Minimum number of agents executed by a single fork-join task
+    private static final int MIN_GRAIN_SIZE = 16;
+
+    public ReadyQueueExecutor(int nbThreads) {
+        this.nbThreads = nbThreads;
+    }
+
+    @Override
+    public void execute(SimulationContext context, List<DCOPagent> agents, int nbIterations) {
+        CycleTickerDeamon ticker = context.getCycleTickerDeamon();
+        ReadyQueue readyQueue = new ReadyQueue();
+        // Agents may have received messages before being attached to the ready queue
+        for (DCOPagent agt : agents) {
+            agt.setMailListener(readyQueue);
+            readyQueue.schedule(agt);
+        }
+
+        ForkJoinPool pool = nbThreads > 1 ? new ForkJoinPool(nbThreads) : null;
+        List<ComAgent> wave = new ArrayList<>();
+        try {
+            while (!ticker.isFinished(nbIterations)) {
+                ComAgent agt;
+                while ((agt = readyQueue.poll()) != null) {
+                    wave.add(agt);
+                }
+
+                if (wave.isEmpty()) {
+                    if (ticker.isCycleCompleted()) {
+                        ticker.startNewCycle();
+                        continue;
+                    }
+                    Logger.warn(() -> "No agent has pending mail, but cycle " + ticker.getCurrentCycle()
+                            + " is not completed.");
+                    break;
+                }
+
+                if (pool == null || wave.size() <= MIN_GRAIN_SIZE) {
+                    for (ComAgent a : wave) {
+                        a.run();
+                    }
+                } else {
+                    ComAgent[] waveArray = wave.toArray(new ComAgent[wave.size()]);
+                    int grainSize = Math.max(MIN_GRAIN_SIZE, waveArray.length / (4 * nbThreads));
+                    pool.invoke(new RunAgentsTask(waveArray, 0, waveArray.length, grainSize));
+                }
+                wave.clear();
+            }
+        } finally {
+            for (DCOPagent agt : agents) {
+                agt.setMailListener(null);
+            }
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Runs the agents in the range [from, to).
+     */
+    private static class RunAgentsTask extends RecursiveAction {
+        private static final long serialVersionUID = 2784249659845191438L;
+        private final ComAgent[] agents;
+        private final int from;
+        private final int to;
+        private final int grainSize;
+
+        RunAgentsTask(ComAgent[] agents, int from, int to, int grainSize) {
+            this.agents = agents;
+            this.from = from;
+            this.to = to;
+            this.grainSize = grainSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grainSize) {
+                for (int i = from; i < to; i++) {
+                    agents[i].run();
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RunAgentsTask(agents, from, mid, grainSize),
+                          new RunAgentsTask(agents, mid, to, grainSize));
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package communication;
+
+import kernel.Logger;
+import kernel.SimulationContext;
+
+import java.util.List;
+
+/**
+ * Runs all agents from the calling thread, one after the other.
+ */
+public class SequentialExecutor implements AgentExecutor {
+
+    @Override
+    public void execute(SimulationContext context, List<DCOPagent> agents, int nbIterations) {
+        CycleTickerDeamon ticker = context.getCycleTickerDeamon();
+        while (!ticker.isFinished(nbIterations)) {
+            for (DCOPagent agt : agents) {
+                agt.run();
+            }
+            if (ticker.isCycleCompleted() && !ticker.isFinished(nbIterations)) {
+                ticker.startNewCycle();
+            } else if (ticker.isStalled()) {
+                Logger.warn(() -> "No agent has pending mail, but cycle " + ticker.getCurrentCycle()
+                        + " is not completed.");
+                break;
+            }
+        }
+    }
+}
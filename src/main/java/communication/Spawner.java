@@ -38,19 +38,32 @@ public class Spawner {
 
     private List<AgentState> spawnedAgentStates;
     private HashMap<String, DCOPagent> yellowPages;
+    private List<DCOPagent> spawnedAgents;
+    private AgentExecutor executor;
+    private String mailboxType;
+    private NetworkModel networkModel;
+    private boolean batching;
+    private int convergenceCycles;
+    private double convergenceDelta = CycleTickerDeamon.DEFAULT_CONVERGENCE_DELTA;
+    private FactorAllocation factorAllocation = new MinIdFactorAllocation();
+    private SimulationContext context;
     DCOPInstance dcopInstance = null;
 
     public Spawner(DCOPInstance instance) {
         dcopInstance = instance;
         spawnedAgentStates = new ArrayList<>();
         yellowPages = new HashMap<>();
+        spawnedAgents = new ArrayList<>();
+        executor = new SequentialExecutor();
+        mailboxType = "MPSC";
+        context = new SimulationContext();
 
         for (AgentState agt : instance.getDCOPAgents()) {
             spawnedAgentStates.add(agt);
         }
 
-        DCOPinfo.nbAgents = spawnedAgentStates.size();
-        DCOPinfo.nbConstraints = instance.getDCOPConstraints().size();
+        context.setNbAgents(spawnedAgentStates.size());
+        context.setNbConstraints(instance.getDCOPConstraints().size());
     }
 
     /**
@@ -62,26 +75,38 @@ public class Spawner {
 
         // Spawn the Statistics collector Deamon
         final ComAgent statsCollector = new StatisticsDeamon(spawnedAgentStates.size());
+        statsCollector.setMailbox(MailboxFactory.create(mailboxType));
         statsCollector.run();
 
         // todo: To enforce synchronicity: If an agent a_i has terminated its cycle, remove it from the pool of agents
         // onto which iterate (or have a special state -- STOPPED / PAUSED / AWAITING).
         // Add all agents back to the pool when the cycle is terminated for all agents (or set their state back to RUNNING)
-        DCOPinfo.cycleTickerDeamon = new CycleTickerDeamon(spawnedAgentStates);
+        context.setCycleTickerDeamon(new CycleTickerDeamon(context, spawnedAgentStates));
+        context.getCycleTickerDeamon().setConvergence(convergenceCycles, convergenceDelta);
 
         // Spawns agents and start the DCOP algorithm
         // @note: This is fine
         for (AgentState agtState : spawnedAgentStates) {
-            DCOPagent agt = AgentFactory.create(statsCollector, agtState, algParameters);
-            DCOPinfo.agentsRef.put(agt.getId(), agt);
+            DCOPagent agt = AgentFactory.create(statsCollector, agtState, context, algParameters);
+            agt.setMailbox(MailboxFactory.create(mailboxType));
+            agt.setNetworkModel(networkModel);
+            agt.setBatching(batching);
+            context.getAgentsRef().put(agt.getId(), agt);
             yellowPages.put(agtState.getName(), agt);
+            spawnedAgents.add(agt);
             agt.run();
         }
+        // The generators of the links are split once all agents hold theirs, so that the network model does not
+        // change the random choices of the agents
+        if (networkModel != null) {
+            for (DCOPagent agt : spawnedAgents)
+                networkModel.setRandom(agt.getId(), context.splitRandom());
+        }
 
         // Save leader AgentRef
         String leaderName = spawnedAgentStates.get(0).getName();
-        DCOPinfo.leaderAgent = DCOPinfo.agentsRef.get((long)0);
-        assert (DCOPinfo.leaderAgent.getId() == 0);
+        context.setLeaderAgent(context.getAgent(0));
+        assert (context.getLeaderAgent().getId() == 0);
 
         // Links Agent Neighbors as ComAgent objects.
         for (AgentState agtState : this.spawnedAgentStates) {
@@ -110,15 +135,70 @@ public class Spawner {
             actor.tell(new Message.StartSignal(), ComAgent.noSender());
         }
 
-        while(DCOPinfo.cycleTickerDeamon.getCurrentCycle() < nbIterations) {
-            for (DCOPagent agt : yellowPages.values()) {
-                agt.run();
-            }
-        }
+        executor.execute(context, spawnedAgents, nbIterations);
 
         //statsCollector.join();
     }
 
+    /**
+     * Sets the executor used to run the agents (default: sequential).
+     */
+    public void setExecutor(AgentExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the type of mailbox given to each agent (default: MPSC).
+     */
+    public void setMailboxType(String mailboxType) {
+        this.mailboxType = mailboxType;
+    }
+
+    /**
+     * Sets the model of the links between agents (default: null, i.e., messages are delivered instantly).
+     */
+    public void setNetworkModel(NetworkModel networkModel) {
+        this.networkModel = networkModel;
+    }
+
+    /**
+     * Sets whether the agents coalesce the messages sent to the same recipient into envelopes (default: false).
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * Stops the run once the residual of the agents messages has been smaller than delta for the given number of
+     * consecutive cycles (default: 0, i.e., the run always executes all cycles).
+     */
+    public void setConvergence(int nbCycles, double delta) {
+        this.convergenceCycles = nbCycles;
+        this.convergenceDelta = delta;
+    }
+
+    /**
+     * Sets the seed of the simulation (default: 0), from which the random generators of each agent and of its links
+     * are derived: a run is reproducible, whatever the executor.
+     */
+    public void setSeed(long seed) {
+        context.setSeed(seed);
+    }
+
+    /**
+     * Sets the allocation of the function nodes to the agents, for the factor graph algorithms (default: MIN_ID).
+     */
+    public void setFactorAllocation(FactorAllocation factorAllocation) {
+        this.factorAllocation = factorAllocation;
+    }
+
+    /**
+     * @return The context of the simulation run by this spawner.
+     */
+    public SimulationContext getContext() {
+        return context;
+    }
+
     public Collection<DCOPagent> getSpawnedAgents() {
         return yellowPages.values();
     }
@@ -128,9 +208,9 @@ public class Spawner {
      * At the end of this function all agents will know their position in their ordering and their neighbors.
      */
     private void constructOrdering() {
-        if (DCOPinfo.leaderAgent instanceof FactorGraphAgent)
+        if (context.getLeaderAgent() instanceof FactorGraphAgent)
         {
-            FactorGraph a = new FactorGraph(dcopInstance);
+            FactorGraph a = new FactorGraph(dcopInstance, context, factorAllocation);
         }
     }
 
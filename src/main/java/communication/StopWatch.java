@@ -24,12 +24,16 @@ package communication;
 
 /**
  * Created by ffiorett on 7/10/15.
+ * Measures the simulated time of an agent. By default the time is read from the wall clock; a logical stop watch
+ * instead only advances through {@link #addTime(long)} and {@link #updateTimeIfFaster(long)}, so that the
+ * simulated time does not depend on the host (see DiscreteEventExecutor).
  */
 public class StopWatch {
     private long startTime;
     private long stopTime;
     private long totalTime;
     private boolean suspended;
+    private boolean logical;
 
     public StopWatch() {
         this.startTime = 0;
@@ -72,10 +76,34 @@ public class StopWatch {
             this.totalTime = totalTime;
     }
 
+    /**
+     * Advances the total time of the StopWatch.
+     * @param nanoTime The elapsed time in nanoseconds.
+     */
+    public void addTime(long nanoTime) {
+        totalTime += nanoTime;
+    }
+
+    /**
+     * Switches the StopWatch to logical time, and resets it. The wall clock is not read anymore.
+     */
+    public void setLogical() {
+        reset();
+        logical = true;
+    }
+
+    public boolean isLogical() {
+        return logical;
+    }
+
     /**
      * Starts the StopWatch.
      */
     public void start() {
+        if (logical) {
+            suspended = false;
+            return;
+        }
         startTime = System.nanoTime();
         stopTime = startTime;
         suspended = false;
@@ -85,6 +113,8 @@ public class StopWatch {
      * Stops the StopWatch.
      */
     public void stop() {
+        if (logical)
+            return;
         stopTime = System.nanoTime();
         if (!suspended)
             totalTime += (stopTime - startTime);
@@ -93,6 +123,8 @@ public class StopWatch {
     public void suspend() {
         if (!suspended) {
             suspended = true;
+            if (logical)
+                return;
             long timeNow = System.nanoTime();
             totalTime += (timeNow - startTime);
             startTime = 0;
@@ -0,0 +1,41 @@
+package communication;
+
+/**
+ * Charges the time proportionally to the cost table cells touched: a message of size s costs s cells to its
+ * sender, which computes the table, and s cells plus a fixed overhead to its recipient, which reads it.
+ * Optionally, the sender is charged the cells it reads to compute the table instead (e.g. the whole constraint
+ * table for a MaxSum function to variable message), so that the agents owning many factors are slower.
+ * The control messages (e.g., cycle and start signals) are free.
+ */
+public class TableCellsCostModel implements CostModel {
+
+    private final long nsPerMessage;
+    private final long nsPerCell;
+    private final boolean chargeComputedCells;
+
+    public TableCellsCostModel(long nsPerMessage, long nsPerCell) {
+        this(nsPerMessage, nsPerCell, false);
+    }
+
+    /**
+     * @param chargeComputedCells Whether the sender of a message is charged the cells read to compute it (see
+     *                            BasicMessage.getNbComputedCells) rather than its size.
+     */
+    public TableCellsCostModel(long nsPerMessage, long nsPerCell, boolean chargeComputedCells) {
+        this.nsPerMessage = nsPerMessage;
+        this.nsPerCell = nsPerCell;
+        this.chargeComputedCells = chargeComputedCells;
+    }
+
+    @Override
+    public long getProcessingCost(Object message) {
+        if (message instanceof BasicMessage)
+            return nsPerMessage + nsPerCell * ((BasicMessage) message).getSize();
+        return 0;
+    }
+
+    @Override
+    public long getSendingCost(BasicMessage message) {
+        return nsPerCell * (chargeComputedCells ? message.getNbComputedCells() : message.getSize());
+    }
+}
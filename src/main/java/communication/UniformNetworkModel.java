@@ -0,0 +1,52 @@
+package communication;
+
+import java.util.HashMap;
+import java.util.SplittableRandom;
+
+/**
+ * The latency of each message is drawn uniformly at random in [minLatency, maxLatency], from the random generator
+ * of its sender. The generators are split from the seed of the simulation, hence the latencies are reproducible
+ * whatever the executor, and the senders do not contend for a shared generator.
+ * All links have the same bandwidth.
+ */
+public class UniformNetworkModel extends NetworkModel {
+
+    private final long minLatency;
+    private final long maxLatency;
+    private final double bandwidth;
+    // The generator of each sender, only used by the thread running the sender
+    private final HashMap<Long, SplittableRandom> randoms = new HashMap<>();
+
+    /**
+     * @param minLatency The minimum latency, in nanoseconds.
+     * @param maxLatency The maximum latency, in nanoseconds.
+     * @param bandwidth The bandwidth of every link, in Mbit/s (0 = unlimited).
+     * @throws IllegalArgumentException If a latency or the bandwidth is negative, or if minLatency > maxLatency.
+     */
+    public UniformNetworkModel(long minLatency, long maxLatency, double bandwidth) {
+        if (minLatency > maxLatency)
+            throw new IllegalArgumentException("Minimum latency " + minLatency + " ns above the maximum "
+                    + maxLatency + " ns");
+        this.minLatency = checkLatency(minLatency);
+        this.maxLatency = checkLatency(maxLatency);
+        this.bandwidth = checkBandwidth(bandwidth);
+    }
+
+    @Override
+    public void setRandom(long senderId, SplittableRandom random) {
+        randoms.put(senderId, random);
+    }
+
+    @Override
+    protected long getLatency(long senderId, long recipientId) {
+        SplittableRandom rand = randoms.get(senderId);
+        if (rand == null)
+            throw new IllegalStateException("No random generator for the sender " + senderId);
+        return minLatency + (long) (rand.nextDouble() * (maxLatency - minLatency));
+    }
+
+    @Override
+    protected double getBandwidth(long senderId, long recipientId) {
+        return bandwidth;
+    }
+}
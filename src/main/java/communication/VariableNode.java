@@ -11,28 +11,38 @@ import java.util.List;
  */
 public class VariableNode {
     private List<FactorNode> neighbors;
+    // The position of this node in the neighbors of each of its neighbors
+    private List<Integer> slots;
 
     // Factor Nodes whose constraint is shared with the variable of this variable node, and whose other variables are
     // of higher ID of this variable
     private List<FactorNode> higherPriorityNeighbors;
 
     private DCOPagent owner;
+    // The position of the node in the variable nodes of its owner
+    private int index = -1;
     private Variable variable;
 
     public VariableNode(FactorGraphAgent owner, Variable variable) {
         this.owner = owner;
         this.variable = variable;
         neighbors = new ArrayList<>();
+        slots = new ArrayList<>();
         higherPriorityNeighbors = new ArrayList<>();
         owner.addVariableNode(this);
     }
 
-    public void addNeighbor(FactorNode fNode) {
-        if (!neighbors.contains(fNode))
-            neighbors.add(fNode);
-
-        if (!higherPriorityNeighbors.contains(fNode) &&
-                fNode.getOwner().getId() > owner.getId())
+    /**
+     * Adds a neighbor, unless it is already one (e.g., a factor whose scope contains the variable twice).
+     * @param slot The position of this node in the neighbors of fNode.
+     */
+    public void addNeighbor(FactorNode fNode, int slot) {
+        if (neighbors.contains(fNode))
+            return;
+        neighbors.add(fNode);
+        slots.add(slot);
+
+        if (fNode.getOwner().getId() > owner.getId())
             higherPriorityNeighbors.add(fNode);
     }
 
@@ -40,6 +50,13 @@ public class VariableNode {
         return neighbors;
     }
 
+    /**
+     * @return The position of this node in the neighbors of its i-th neighbor.
+     */
+    public int getSlot(int i) {
+        return slots.get(i);
+    }
+
     public List<FactorNode> getHigherPriorityNeighbors() {
         return higherPriorityNeighbors;
     }
@@ -48,6 +65,14 @@ public class VariableNode {
         return owner;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     public Variable getVariable() {
         return variable;
     }
@@ -20,18 +20,29 @@
  * THE SOFTWARE.
  */
 
+import agent.BinaryCCG.CCGCSREngine;
+import agent.MaxSum.BoundedMaxSum;
+import agent.MaxSum.MaxSumCSREngine;
+import communication.AgentStatistics;
 import communication.DCOPagent;
+import communication.CostModelFactory;
+import communication.CycleTickerDeamon;
+import communication.ExecutorFactory;
+import communication.NetworkModelFactory;
 import communication.Spawner;
 import kernel.*;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by ffiorett on 7/7/15.
@@ -44,11 +55,32 @@ public class dcop_jtools {
         int nbIterations = 5;
         long timeoutMs = Constants.infinity; // no-timeout
         String file = "../data/2-constraint.dimacs";
+        String executorType = "SEQ";
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        String mailboxType = "MPSC";
+        String costModel = "CELLS";
+        String networkModel = "NONE";
+        boolean batching = false;
+        double damping = 0;
+        double threshold = 0;
+        int convergenceCycles = 0;
+        double convergenceDelta = CycleTickerDeamon.DEFAULT_CONVERGENCE_DELTA;
+        String factorAllocation = "MIN_ID";
+        String ccgClustering = "VERTEX";
+        long seed = 0;
 
         if (argv.length < 1) {
             System.out.println(getUsage());
             return;
         }
+        if (argv[0].equals("-b") || argv[0].equals("--batch")) {
+            try {
+                new BatchRunner(argv[1]).run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return;
+        }
         file = argv[0];
         String fileout_stats = "";
         for (int i = 1; i < argv.length; i++) {
@@ -64,42 +96,230 @@ public class dcop_jtools {
             if (argv[i].equals("-o")) {
                 fileout_stats = argv[i+1];
             }
+            if (argv[i].equals("-e") || argv[i].equals("--executor")) {
+                executorType = argv[i+1];
+            }
+            if (argv[i].equals("-j") || argv[i].equals("--threads")) {
+                nbThreads = Integer.parseInt(argv[i+1]);
+            }
+            if (argv[i].equals("-m") || argv[i].equals("--mailbox")) {
+                mailboxType = argv[i+1];
+            }
+            if (argv[i].equals("-c") || argv[i].equals("--cost-model")) {
+                costModel = argv[i+1];
+            }
+            if (argv[i].equals("-n") || argv[i].equals("--network")) {
+                networkModel = argv[i+1];
+            }
+            if (argv[i].equals("-B") || argv[i].equals("--batching")) {
+                batching = argv[i+1].toUpperCase().equals("ON");
+            }
+            if (argv[i].equals("-D") || argv[i].equals("--damping")) {
+                damping = Double.parseDouble(argv[i+1]);
+            }
+            if (argv[i].equals("-S") || argv[i].equals("--selective")) {
+                threshold = Double.parseDouble(argv[i+1]);
+            }
+            if (argv[i].equals("-C") || argv[i].equals("--convergence")) {
+                String[] spec = argv[i+1].split(":");
+                convergenceCycles = Integer.parseInt(spec[0]);
+                if (spec.length > 1)
+                    convergenceDelta = Double.parseDouble(spec[1]);
+            }
+            if (argv[i].equals("-F") || argv[i].equals("--factor-allocation")) {
+                factorAllocation = argv[i+1];
+            }
+            if (argv[i].equals("-G") || argv[i].equals("--ccg-clustering")) {
+                ccgClustering = argv[i+1];
+            }
+            if (argv[i].equals("-s") || argv[i].equals("--seed")) {
+                seed = Long.parseLong(argv[i+1]);
+            }
+            if (argv[i].equals("-L") || argv[i].equals("--log")) {
+                Logger.setLevel(Logger.Level.valueOf(argv[i+1].toUpperCase()));
+            }
         }
         algParams.add(agentType);
         algParams.add(nbIterations);
         algParams.add(timeoutMs);
+        algParams.add(damping);
+        algParams.add(threshold);
 
-        DCOPInstance dcopInstance = DCOPInstanceFactory.importDCOPInstance(file);
-        System.out.println("Read DCOP instance. N_agents=" + dcopInstance.getDCOPAgents().size()
-                + " N_vars=" + dcopInstance.getDCOPVariables().size()
-                + " N_cons=" + dcopInstance.getDCOPConstraints().size()
+        if (agentType.equals("CCG-CSR") && file.toLowerCase().endsWith(".ccg")) {
+            // Centralized engine on the graph of the file, which is not built as a DCOP instance
+            try {
+                CCGGraph graph = CCGGraph.read(file);
+                Logger.info(() -> "Read CCG graph. N_vertices=" + graph.getNbVertices()
+                        + " N_edges=" + graph.getNbEdges()
+                        + "\nStarting algorithm... ");
+                runCCGEngine(new CCGCSREngine(graph, CCGClusteringFactory.create(ccgClustering)), seed, damping,
+                        convergenceCycles, convergenceDelta, nbIterations, nbThreads, fileout_stats);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        DCOPInstance dcopInstance = DCOPInstanceFactory.importDCOPInstance(file,
+                CCGClusteringFactory.create(ccgClustering));
+        final DCOPInstance instance = dcopInstance;
+        Logger.info(() -> "Read DCOP instance. N_agents=" + instance.getDCOPAgents().size()
+                + " N_vars=" + instance.getDCOPVariables().size()
+                + " N_cons=" + instance.getDCOPConstraints().size()
                 + "\nStarting algorithm... ");
 
+        // Bounded MaxSum: MaxSum on the relaxed (acyclic) instance, on which it converges in a bounded number of
+        // cycles (hence the convergence check is enabled by default)
+        BoundedMaxSum bms = null;
+        if (agentType.equals("BMS")) {
+            bms = new BoundedMaxSum(dcopInstance);
+            dcopInstance = bms.getRelaxedInstance();
+            algParams.set(0, "MINSUM");
+            if (convergenceCycles == 0)
+                convergenceCycles = 2;
+        }
+
+        if (agentType.equals("MINSUM-CSR")) {
+            // Centralized engine: no agents are spawned
+            MaxSumCSREngine engine = new MaxSumCSREngine(dcopInstance,
+                    FactorAllocationFactory.create(factorAllocation));
+            engine.setDamping(damping);
+            engine.setThreshold(threshold);
+            engine.setConvergence(convergenceCycles, convergenceDelta);
+            List<AgentStatistics> stats = engine.run(nbIterations, nbThreads);
+            printStatsSummary(stats, fileout_stats);
+            return;
+        }
+        if (agentType.equals("CCG-CSR")) {
+            runCCGEngine(new CCGCSREngine(dcopInstance), seed, damping, convergenceCycles, convergenceDelta,
+                    nbIterations, nbThreads, fileout_stats);
+            return;
+        }
+
         Spawner spawner = new Spawner(dcopInstance);
+        spawner.setExecutor(ExecutorFactory.create(executorType, nbThreads,
+                CostModelFactory.create(costModel)));
+        spawner.setMailboxType(mailboxType);
+        spawner.setNetworkModel(NetworkModelFactory.create(networkModel));
+        spawner.setBatching(batching);
+        spawner.setConvergence(convergenceCycles, convergenceDelta);
+        spawner.setFactorAllocation(FactorAllocationFactory.create(factorAllocation));
+        spawner.setSeed(seed);
         spawner.spawn(algParams);
 
         // Summary Output
-        printSummary(spawner.getSpawnedAgents(), fileout_stats);
+        Map<String, Object> summary = getSummaryJSON(spawner.getSpawnedAgents());
+        if (bms != null)
+            summary.put("bounds", getBoundsJSON(bms, summary));
+        printSummary(summary, fileout_stats);
 //        System.out.println(getSummary(spawner.getSpawnedAgents(), nbIterations));
     }
 
+    private static void runCCGEngine(CCGCSREngine engine, long seed, double damping, int convergenceCycles,
+                                     double convergenceDelta, int nbIterations, int nbThreads, String fileout) {
+        engine.setSeed(seed);
+        engine.setDamping(damping);
+        engine.setConvergence(convergenceCycles, convergenceDelta);
+        printStatsSummary(engine.run(nbIterations, nbThreads), fileout);
+    }
+
     public static String getUsage() {
         return "dcop_jtool FILE.xml [options]\n" +
+                "dcop_jtool --batch (-b) MANIFEST.json. Runs the experiments described in the manifest (see BatchRunner).\n" +
                 "  where options is one of the following:\n" +
-                "  --alg (-a) [MINSUM|CCG]. The Agent type\n" +
+                "  --alg (-a) [MINSUM|MINSUM-CSR|BMS|CCG|CCG-CSR]. The Agent type. MINSUM-CSR runs MaxSum on a centralized\n" +
+                "                 engine (with --threads threads), which computes the same solutions and message counts. BMS\n" +
+                "                 (Bounded MaxSum, minimization only) runs MaxSum on an acyclic relaxation, and reports quality\n" +
+                "                 bounds. CCG-CSR runs CCG on a centralized engine (with --threads threads), which reads\n" +
+                "                 .ccg files without building the DCOP instance.\n" +
                 "  --repair (-r) [GDBR, TDBR(default)]. The DLNS repair phase.\n" +
                 "  --destroy (-d) [RAND(default), MEETINGS]. The DLNS destroy phase.\n" +
                 "  --iterations (-i) (default=500). The number of iterations of DLNS.\n" +
-                "  --timeout (-t) (default=no timeout (0)). The simulated time maximal execution time.\n";
+                "  --timeout (-t) (default=no timeout (0)). The simulated time maximal execution time.\n" +
+                "  --executor (-e) [SEQ(default)|PAR|READY|ACTOR|DES]. Runs all agents sequentially, all agents on a\n" +
+                "                 fork-join pool, only the agents with pending mail, each agent as an actor on its own virtual\n" +
+                "                 thread (on a pool of carrier threads if virtual threads are not supported), or a\n" +
+                "                 discrete-event simulation with logical (reproducible) simulated time.\n" +
+                "  --threads (-j) (default=nb. of cores). The number of threads used by the PAR, READY and ACTOR executors.\n" +
+                "  --mailbox (-m) [MPSC(default)|LINKED]. The agents mailbox: lock-free array chunks or linked queue.\n" +
+                "  --cost-model (-c) [CELLS[:nsPerMsg[:nsPerCell]](default)|COMPUTED_CELLS[:nsPerMsg[:nsPerCell]]|\n" +
+                "                 MSGS[:nsPerMsg]]. The computation time charged by the DES executor: per message and per\n" +
+                "                 cost table cell, as CELLS but charging the sender the cells read to compute each message\n" +
+                "                 (e.g., a whole MaxSum factor table), or per message only.\n" +
+                "  --network (-n) [NONE(default)|CONST:lat[:bw]|UNIFORM:minLat:maxLat[:bw]|MATRIX:file[:bw]].\n" +
+                "                 The delay added to each message: link latency (us) plus transmission time at the\n" +
+                "                 link bandwidth (Mbit/s, 0 = unlimited).\n" +
+                "  --batching (-B) [OFF(default)|ON]. Coalesces the messages an agent sends to the same recipient, in a\n" +
+                "                 cycle, into a single envelope.\n" +
+                "  --damping (-D) (default=0). The weight of the previous message in each MaxSum/CCG message.\n" +
+                "  --selective (-S) (default=0, i.e., disabled). MaxSum does not send the messages whose values changed by\n" +
+                "                 less than the threshold since the last message sent on the same edge.\n" +
+                "  --convergence (-C) k[:delta] (default=0, i.e., disabled). Stops the run once the largest change of\n" +
+                "                 a message has been smaller than delta (default=0.001) for k consecutive cycles.\n" +
+                "  --factor-allocation (-F) [MIN_ID(default)|LEAST_LOADED|DEGREE|MIN_COMM]. The agent owning each MaxSum\n" +
+                "                 function node, among those of its scope: the one with smallest ID, the least loaded\n" +
+                "                 (greedily, in table cells sent per cycle), the one of smallest degree, or the one owning\n" +
+                "                 most variables of the scope (then the least loaded). Only the COMPUTED_CELLS cost model\n" +
+                "                 charges the owner of a factor for reading its table; under CELLS, the allocation only\n" +
+                "                 moves the messages of the factor, local ones included, between the agents.\n" +
+                "  --ccg-clustering (-G) [VERTEX(default)|VARIABLE|MINCUT[:k]]. The agents of a .ccg instance: one per\n" +
+                "                 vertex, one per problem variable with its closest auxiliary vertices, or k (default: the\n" +
+                "                 nb. of problem variables) balanced clusters with few edges between them.\n" +
+                "  --seed (-s) (default=0). The seed of the random choices of the agents (e.g., the CCG noise) and of the\n" +
+                "                 UNIFORM latencies: a run is reproducible, whatever the executor and the number of threads.\n" +
+                "                 Across hosts, see kernel.ArrayKernelsFactory on the kernels of -Ddcop.kernels.\n" +
+                "  --log (-L) [OFF|ERROR|WARN|INFO(default)|DEBUG|TRACE]. The level of the log: DEBUG traces the cycles\n" +
+                "                 of the agents, and TRACE every message received.\n";
     }
 
     public static void printSummary(Collection<DCOPagent> agents, String fileout) {
-        JSONObject jsonObject = new JSONObject();
-        JSONObject jsonVars = new JSONObject();
+        printStatsSummary(getStatistics(agents), fileout);
+    }
+
+    public static void printStatsSummary(Collection<AgentStatistics> stats, String fileout) {
+        printSummary(getStatsSummaryJSON(stats), fileout);
+    }
+
+    public static void printSummary(Map<String, Object> jsonObject, String fileout) {
+        // The summary is streamed: JSONValue.toJSONString() copies its whole buffer at each entry, which is
+        // quadratic in the number of variables
+        if (!fileout.isEmpty()) {
+            try (Writer file = new BufferedWriter(new FileWriter(fileout))) {
+                JSONValue.writeJSONString(jsonObject, file);
+                file.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else {
+            // The summary is printed after the pending log messages
+            Logger.flush();
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+                JSONValue.writeJSONString(jsonObject, out);
+                out.write(System.lineSeparator());
+                out.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+    }
+
+    public static Map<String, Object> getSummaryJSON(Collection<DCOPagent> agents) {
+        return getStatsSummaryJSON(getStatistics(agents));
+    }
+
+    /**
+     * @return The solution values, the simulated time and the network load of each cycle, as a JSON object (a map
+     * of JSON values, written by JSONValue).
+     */
+    public static Map<String, Object> getStatsSummaryJSON(Collection<AgentStatistics> stats) {
+        Map<String, Object> jsonObject = new HashMap<>();
+        Map<String, List<Integer>> jsonVars = new HashMap<>();
         int maxIter = 0;
 
-        for (DCOPagent agt : agents) {
-            HashMap<String, List<Integer>> agtValueList = agt.getAgentStatistics().getSolutionValue();
+        for (AgentStatistics agtStats : stats) {
+            HashMap<String, List<Integer>> agtValueList = agtStats.getSolutionValue();
             for (String vname : agtValueList.keySet()) {
                 jsonVars.put(vname, agtValueList.get(vname));
                 maxIter = Math.max(maxIter, agtValueList.get(vname).size());
@@ -108,18 +328,18 @@ public class dcop_jtools {
         jsonObject.put("values", jsonVars);
         jsonObject.put("iterations", maxIter);
 
-        JSONArray jsonNetLoad = new JSONArray();
-        JSONArray jsonSimTime = new JSONArray();
+        List<Integer> jsonNetLoad = new ArrayList<>();
+        List<Long> jsonSimTime = new ArrayList<>();
         long maxTime = 0;
         int netLoad = 0;
 
         for (int iter = 0; iter < maxIter; iter++) {
             int agtMsgs = 0;
-            for (DCOPagent agt : agents) {
-                //if (iter >= agt.getAgentStatistics().size()) continue;
-                maxTime = Math.max(maxTime, agt.getAgentStatistics().getMilliTime(iter));
-                int msgNow = agt.getAgentStatistics().getSentMessages(iter);
-                int msgPrev = iter == 0 ? 0 : agt.getAgentStatistics().getSentMessages(iter - 1);
+            for (AgentStatistics agtStats : stats) {
+                //if (iter >= agtStats.size()) continue;
+                maxTime = Math.max(maxTime, agtStats.getMilliTime(iter));
+                int msgNow = agtStats.getSentMessages(iter);
+                int msgPrev = iter == 0 ? 0 : agtStats.getSentMessages(iter - 1);
                 agtMsgs = Math.max(agtMsgs, (msgNow - msgPrev));
                 netLoad += (msgNow - msgPrev);
             }
@@ -128,24 +348,49 @@ public class dcop_jtools {
         }
         jsonObject.put("simTime", jsonSimTime);
         jsonObject.put("netLoad", jsonNetLoad);
+        return jsonObject;
+    }
 
-        if (!fileout.isEmpty()) {
-            try (FileWriter file = new FileWriter(fileout)) {
-                file.write(jsonObject.toJSONString());
-                file.flush();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        } else {
-            System.out.println(jsonObject);
+    /**
+     * @return The quality bounds of the last solution of the summary of a Bounded MaxSum run: the cost of the
+     * solution, the lower bound of the optimal cost, their gap, and the approximation ratio (null if the lower bound
+     * is not positive, as the ratio is then not a bound).
+     */
+    public static Map<String, Object> getBoundsJSON(BoundedMaxSum bms, Map<String, Object> summary) {
+        Map<String, Integer> values = new HashMap<>();
+        Map<?, ?> jsonVars = (Map<?, ?>) summary.get("values");
+        for (Map.Entry<?, ?> entry : jsonVars.entrySet()) {
+            List<?> vals = (List<?>) entry.getValue();
+            if (!vals.isEmpty())
+                values.put((String) entry.getKey(), (Integer) vals.get(vals.size() - 1));
         }
+        double cost = bms.getCost(values);
+        Map<String, Object> jsonBounds = new HashMap<>();
+        jsonBounds.put("cost", cost);
+        jsonBounds.put("lowerBound", bms.getLowerBound());
+        jsonBounds.put("gap", cost - bms.getLowerBound());
+        jsonBounds.put("approximationRatio", bms.getLowerBound() > 0 ? cost / bms.getLowerBound() : null);
+        jsonBounds.put("weightBound", bms.getWeightBound());
+        jsonBounds.put("removedDependencies", bms.getNbRemovedDependencies());
+        return jsonBounds;
+    }
 
+    private static List<AgentStatistics> getStatistics(Collection<DCOPagent> agents) {
+        List<AgentStatistics> stats = new ArrayList<>();
+        for (DCOPagent agt : agents) {
+            stats.add(agt.getAgentStatistics());
+        }
+        return stats;
     }
 
     public static String getSummary(Collection<DCOPagent> agents, int nbIterations) {
         String res = "time\tLB\tUB\tIterAgtMsgs\tnAgtMsgs\tNetLoad\n";
-        int maxIter = DCOPinfo.leaderAgent.getAgentStatistics().size();
-        int bestLB = DCOPinfo.leaderAgent.getAgentStatistics().getBounds(maxIter-1)[0];
+        DCOPagent leader = null;
+        for (DCOPagent agt : agents) {
+            if (agt.isLeader()) leader = agt;
+        }
+        int maxIter = leader.getAgentStatistics().size();
+        int bestLB = leader.getAgentStatistics().getBounds(maxIter-1)[0];
         long maxTime = 0; int nMsgs = 0; int netLoad = 0;
         int lb = 0; int ub = 0;
         int prevLB = Constants.NaN; int prevUB = Constants.NaN;
@@ -1,5 +1,7 @@
 package kernel;
 
+import java.util.SplittableRandom;
+
 /**
  * Created by ffiorett on 8/1/15.
  * Defines the actions of the agent.
@@ -20,12 +22,12 @@ public class AgentActions {
         agentState.getVariable(varIdx).setValue(value);
     }
 
-    public void setVariableVariableAtRandom() {
-        agentState.getVariable().setValueAtRandom();
+    public void setVariableVariableAtRandom(SplittableRandom random) {
+        agentState.getVariable().setValueAtRandom(random);
     }
 
-    public void setVariableVariableAtRandom(int varIdx) {
-        agentState.getVariable(varIdx).setValueAtRandom();
+    public void setVariableVariableAtRandom(int varIdx, SplittableRandom random) {
+        agentState.getVariable(varIdx).setValueAtRandom(random);
     }
 
 }
@@ -12,12 +12,13 @@ import java.util.List;
  */
 public class AgentFactory {
 
-    public static DCOPagent create(ComAgent statsCollector, AgentState agtState, List<Object> algParameters) {
+    public static DCOPagent create(ComAgent statsCollector, AgentState agtState, SimulationContext context,
+                                   List<Object> algParameters) {
         String agt = (String)algParameters.get(0);
         if (agt.toUpperCase().equals("CCG"))
-            return new BinaryCCGAgentMVA(statsCollector, agtState, algParameters.subList(1, algParameters.size()));
+            return new BinaryCCGAgentMVA(statsCollector, agtState, context, algParameters.subList(1, algParameters.size()));
         else if (agt.toUpperCase().equals("MINSUM"))
-            return new MaxSumAgent(statsCollector, agtState, algParameters.subList(1, algParameters.size()));
+            return new MaxSumAgent(statsCollector, agtState, context, algParameters.subList(1, algParameters.size()));
         else
             return null;
     }
@@ -0,0 +1,45 @@
+package kernel;
+
+/**
+ * The inner loops over the cost tables (see {@link Commons}), on the range [from, from + len) of the arrays.
+ * Implementations must not allocate, as they are called on every message.
+ */
+public interface ArrayKernels {
+
+    double sum(double[] a, int from, int len);
+
+    double min(double[] a, int from, int len);
+
+    /**
+     * @return The position of the first minimum value, relative to from.
+     */
+    int argMin(double[] a, int from, int len);
+
+    void addValue(double[] a, int from, int len, double value);
+
+    /**
+     * out[outFrom + i] += in[inFrom + i]
+     */
+    void addArray(double[] out, int outFrom, double[] in, int inFrom, int len);
+
+    /**
+     * @return The largest absolute difference between the values of the two ranges (L-infinity distance).
+     */
+    double maxDistance(double[] a, int aFrom, double[] b, int bFrom, int len);
+
+    /**
+     * @return min_i a[aFrom + i] + b[bFrom + i], i.e., the projection of a row of a cost matrix, to which the
+     * received table b is added.
+     */
+    double addMin(double[] a, int aFrom, double[] b, int bFrom, int len);
+
+    /**
+     * Subtracts the average of the range from its values.
+     */
+    void normalizeAverage(double[] a, int from, int len);
+
+    /**
+     * Subtracts the minimum of the range from its values.
+     */
+    void normalizeMin(double[] a, int from, int len);
+}
@@ -0,0 +1,44 @@
+package kernel;
+
+/**
+ * Creates the array kernels. The VECTOR kernels use the JDK Vector API: they are compiled only by the "vector"
+ * build profile (JDK 17+), and they are available only if the JVM is run with --add-modules jdk.incubator.vector.
+ * The default kernels are the VECTOR ones if available (unless -Ddcop.kernels=SCALAR is set), and the SCALAR ones
+ * otherwise. The VECTOR kernels sum the values lane-wise: their results may differ in the last bits from the SCALAR
+ * ones, and across hosts of different vector sizes. Runs are reproducible across hosts with the SCALAR kernels only.
+ */
+public class ArrayKernelsFactory {
+
+    private static final String VECTOR_KERNELS = "kernel.VectorKernels";
+
+    /**
+     * @return The kernels of the given type, or null if they are not available (VECTOR kernels only).
+     * @throws IllegalArgumentException If the type is unknown.
+     */
+    public static ArrayKernels create(String type) {
+        if (type.toUpperCase().equals("SCALAR"))
+            return new ScalarKernels();
+        else if (type.toUpperCase().equals("VECTOR"))
+            return createVectorKernels();
+        else
+            throw new IllegalArgumentException("Unknown array kernels: " + type);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the type given by -Ddcop.kernels is unknown.
+     */
+    public static ArrayKernels createDefault() {
+        ArrayKernels kernels = create(System.getProperty("dcop.kernels", "VECTOR"));
+        return kernels != null ? kernels : new ScalarKernels();
+    }
+
+    private static ArrayKernels createVectorKernels() {
+        try {
+            // Fails if the incubator module is not resolved, or if the kernels have not been compiled
+            Class.forName("jdk.incubator.vector.DoubleVector");
+            return (ArrayKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
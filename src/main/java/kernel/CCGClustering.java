@@ -0,0 +1,17 @@
+package kernel;
+
+/**
+ * Groups the vertices of a CCG instance (see DCOPInstanceFactory) into clusters, each of which is owned by a
+ * single agent: the messages between the variables of a cluster are delivered within their agent.
+ */
+public interface CCGClustering {
+
+    /**
+     * @param types The type of each vertex, in the order of the file: 0 for a problem variable, -1 and -2 for the
+     *              two kinds of auxiliary variables
+     * @param edges The edges of the CCG: the positions of the two vertices of edge i, at 2i and 2i + 1
+     * @return The cluster of each vertex. The clusters are identified by non-negative integers, which need not be
+     * consecutive.
+     */
+    int[] cluster(int[] types, int[] edges);
+}
@@ -0,0 +1,30 @@
+package kernel;
+
+/**
+ * Creates the clustering of the vertices of the CCG instances: VERTEX (default), VARIABLE or MINCUT[:k].
+ */
+public class CCGClusteringFactory {
+
+    /**
+     * @throws IllegalArgumentException If the specification is invalid.
+     */
+    public static CCGClustering create(String spec) {
+        String[] tokens = spec.split(":");
+        String type = tokens[0].toUpperCase();
+        if (type.equals("VERTEX"))
+            return new VertexCCGClustering();
+        else if (type.equals("VARIABLE"))
+            return new VariableCCGClustering();
+        else if (type.equals("MINCUT")) {
+            try {
+                return tokens.length > 1 ? new MinCutCCGClustering(Integer.parseInt(tokens[1]))
+                        : new MinCutCCGClustering();
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid CCG clustering: " + spec, e);
+            }
+        }
+        else
+            throw new IllegalArgumentException("Unknown CCG clustering: " + spec);
+    }
+
+}
@@ -0,0 +1,208 @@
+package kernel;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The weighted vertex cover graph of a CCG instance, as read from a .ccg file (see the format in
+ * DCOPInstanceFactory). The vertices are referred to by their position in the file, and the arrays hold a few
+ * bytes per vertex and per edge: the graph of an instance too large to be built as a DCOPInstance can be read.
+ */
+public class CCGGraph {
+
+    // The ID, weight (the cost of the value 1) and type of each vertex
+    private int[] ids;
+    private double[] weights;
+    private int[] types;
+    // The two vertices of each edge i, at 2i and 2i + 1
+    private int[] edges;
+
+    private CCGGraph(int[] ids, double[] weights, int[] types, int[] edges) {
+        this.ids = ids;
+        this.weights = weights;
+        this.types = types;
+        this.edges = edges;
+    }
+
+    public static CCGGraph read(String filename) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
+            // First line (problem preamble)
+            String[] tokens = br.readLine().split(" ");
+            assert (tokens.length == 4);
+            int n = Integer.parseInt(tokens[2]);
+            int e = Integer.parseInt(tokens[3]);
+
+            // Parse Variables
+            int[] ids = new int[n];
+            double[] weights = new double[n];
+            for (int i = 0; i < n; i++) {
+                tokens = br.readLine().split(" ");
+                assert (tokens[0].equalsIgnoreCase("v"));
+                ids[i] = Integer.parseInt(tokens[1]);
+                weights[i] = Double.parseDouble(tokens[2]);
+            }
+            PositionIndex positions = new PositionIndex(ids);
+
+            // Parse Edges
+            int[] edges = new int[2 * e];
+            for (int i = 0; i < e; i++) {
+                tokens = br.readLine().split(" ");
+                assert (tokens[0].equalsIgnoreCase("e"));
+                for (int k = 0; k < 2; k++) {
+                    int id = Integer.parseInt(tokens[k + 1]);
+                    edges[2 * i + k] = positions.get(id);
+                    if (edges[2 * i + k] < 0)
+                        throw new IOException("Edge on an unknown vertex: " + id);
+                }
+            }
+
+            // Process variable type
+            int[] types = new int[n];
+            String line = br.readLine();
+            assert (line.contains("vertex types begin"));
+            // The section may list vertices which are not in the graph (problem variables with no cost and no edge)
+            while ((line = br.readLine()) != null && !line.contains("vertex types end")) {
+                tokens = line.split(" ");
+                assert (tokens.length == 2);
+                int i = positions.get(Integer.parseInt(tokens[0]));
+                if (i >= 0)
+                    types[i] = Integer.parseInt(tokens[1]);
+            }
+            return new CCGGraph(ids, weights, types, edges);
+        }
+    }
+
+    public int getNbVertices() {
+        return ids.length;
+    }
+
+    public int getNbEdges() {
+        return edges.length / 2;
+    }
+
+    /**
+     * @return The ID of the vertex in the file.
+     */
+    public int getID(int i) {
+        return ids[i];
+    }
+
+    /**
+     * @return The name of the variable of the vertex (v<ID>).
+     */
+    public String getName(int i) {
+        return "v" + Integer.toString(ids[i]);
+    }
+
+    public double getWeight(int i) {
+        return weights[i];
+    }
+
+    public int getType(int i) {
+        return types[i];
+    }
+
+    public int[] getTypes() {
+        return types;
+    }
+
+    /**
+     * @return The two vertices of each edge i, at 2i and 2i + 1.
+     */
+    public int[] getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return The agent of each vertex: the clusters of the given clustering, numbered from 0 in the order of their
+     * first vertex.
+     */
+    public int[] getAgents(CCGClustering clustering) {
+        int[] clusters = clustering.cluster(types, edges);
+        // The first vertex of each cluster, in place of the cluster of each vertex
+        int[] owners = new int[clusters.length];
+        int[] order = sortByKey(clusters);
+        for (int k = 0; k < order.length; k++) {
+            boolean first = k == 0 || clusters[order[k]] != clusters[order[k - 1]];
+            owners[order[k]] = first ? order[k] : owners[order[k - 1]];
+        }
+        // The first vertices precede the others of their cluster: they are numbered before being read
+        int nbAgents = 0;
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = owners[i] == i ? nbAgents++ : owners[owners[i]];
+        }
+        return owners;
+    }
+
+    /**
+     * @return The positions of the keys, in increasing order of key (and of position, for equal keys).
+     */
+    private static int[] sortByKey(int[] keys) {
+        long[] packed = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            packed[i] = ((long) keys[i] << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            order[k] = (int) packed[k];
+        }
+        return order;
+    }
+
+    /**
+     * The positions of the vertices, from their IDs: a direct index from the smallest ID when the IDs are dense
+     * (as in the generated files), and otherwise a binary search in the sorted IDs.
+     */
+    private static class PositionIndex {
+        private final int[] ids;
+        private final int minId;
+        // The position of each ID from minId (-1 if none), or the positions in increasing order of ID
+        private final int[] positions;
+        private final boolean dense;
+
+        PositionIndex(int[] ids) {
+            this.ids = ids;
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for (int id : ids) {
+                min = Math.min(min, id);
+                max = Math.max(max, id);
+            }
+            minId = min;
+            dense = ids.length > 0 && (long) max - min < 2L * ids.length;
+            if (dense) {
+                positions = new int[max - min + 1];
+                Arrays.fill(positions, -1);
+                for (int i = 0; i < ids.length; i++) {
+                    positions[ids[i] - min] = i;
+                }
+            } else {
+                positions = sortByKey(ids);
+            }
+        }
+
+        /**
+         * @return The position of the vertex of the given ID, or -1 if there is none.
+         */
+        int get(int id) {
+            if (dense) {
+                long k = (long) id - minId;
+                return k >= 0 && k < positions.length ? positions[(int) k] : -1;
+            }
+            int lo = 0, hi = positions.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int midId = ids[positions[mid]];
+                if (midId < id)
+                    lo = mid + 1;
+                else if (midId > id)
+                    hi = mid - 1;
+                else
+                    return positions[mid];
+            }
+            return -1;
+        }
+    }
+}
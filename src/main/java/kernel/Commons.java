@@ -7,31 +7,30 @@ import java.util.List;
  */
 public class Commons {
 
+    // The inner loops over the cost tables (vectorized if the Vector API is available, see ArrayKernelsFactory)
+    private static final ArrayKernels kernels = ArrayKernelsFactory.createDefault();
+
+    public static ArrayKernels getKernels() {
+        return kernels;
+    }
+
     public static double getAverage(double[] array) {
-        double avg = 0;
-        for (double a : array) {
-            avg += a;
-        }
-        return (avg/(double)array.length);
+        return kernels.sum(array, 0, array.length) / (double) array.length;
     }
 
     public static double getMin(double[] array) {
-        double min = array[0];
-        for (int i = 1; i < array.length; i++)
-            if (array[i] < min)
-                min = array[i];
-        return min;
+        return kernels.min(array, 0, array.length);
     }
 
     public static int getArgMin(double[] array) {
-        double min = array[0];
-        int argmin = 0;
-        for (int i = 1; i < array.length; i++)
-            if (array[i] < min) {
-                min = array[i];
-                argmin = i;
-            }
-        return argmin;
+        return kernels.argMin(array, 0, array.length);
+    }
+
+    /**
+     * @return The position of the first minimum value in array[from, from + len), relative to from.
+     */
+    public static int getArgMin(double[] array, int from, int len) {
+        return kernels.argMin(array, from, len);
     }
 
     public static double getMax(double[] array) {
@@ -54,8 +53,7 @@ public class Commons {
     }
 
     public static void addValue(double[] array, double value) {
-        for (int i = 0; i < array.length; i++)
-            array[i] += value;
+        kernels.addValue(array, 0, array.length, value);
     }
 
     public static void mulValue(double[] array, double value) {
@@ -64,14 +62,55 @@ public class Commons {
     }
 
     public static void rmValue(double[] array, double value) {
-        for (int i = 0; i < array.length; i++)
-            array[i] -= value;
+        kernels.addValue(array, 0, array.length, -value);
     }
 
     public static void addArray(double[] out, double[] in) {
         assert (out.length == in.length);
-        for (int i = 0; i <out.length; i++)
-            out[i] += in[i];
+        kernels.addArray(out, 0, in, 0, out.length);
+    }
+
+    /**
+     * out[outFrom + i] += in[inFrom + i], for i < len.
+     */
+    public static void addArray(double[] out, int outFrom, double[] in, int inFrom, int len) {
+        kernels.addArray(out, outFrom, in, inFrom, len);
+    }
+
+    /**
+     * @return min_i a[aFrom + i] + b[bFrom + i], for i < len (in a single pass).
+     */
+    public static double addMin(double[] a, int aFrom, double[] b, int bFrom, int len) {
+        return kernels.addMin(a, aFrom, b, bFrom, len);
+    }
+
+    /**
+     * Subtracts the average of the array from its values (in place).
+     */
+    public static void normalizeAverage(double[] array) {
+        kernels.normalizeAverage(array, 0, array.length);
+    }
+
+    /**
+     * Subtracts the minimum of the array from its values (in place).
+     */
+    public static void normalizeMin(double[] array) {
+        kernels.normalizeMin(array, 0, array.length);
+    }
+
+    /**
+     * Subtracts the minimum of array[from, from + len) from its values (in place).
+     */
+    public static void normalizeMin(double[] array, int from, int len) {
+        kernels.normalizeMin(array, from, len);
+    }
+
+    /**
+     * @return The largest absolute difference between the values of the two arrays (L-infinity distance).
+     */
+    public static double getMaxDistance(double[] a, double[] b) {
+        assert (a.length == b.length);
+        return kernels.maxDistance(a, 0, b, 0, a.length);
     }
 
     public static <T> int getIdx(List<T> array, T target) {
@@ -22,6 +22,7 @@
 
 package kernel;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -51,6 +52,12 @@ public interface Constraint extends DCOPobject {
 
     int getArity();
 
+    /**
+     * Creates a copy of this constraint, with the same ID and values, defined over the given scope.
+     * @param scope The variables of the copy, in the same order as those of this constraint.
+     */
+    Constraint copy(ArrayList<Variable> scope);
+
     static boolean isUnsat(double value) {return (value >= Constants.infinity || value <= -Constants.infinity);}
 
     static boolean isSat(double value) {return !isUnsat(value);}
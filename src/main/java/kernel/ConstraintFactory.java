@@ -28,17 +28,16 @@ import java.util.ArrayList;
  * Created by ffiorett on 7/8/15.
  */
 public class ConstraintFactory {
-    private static long constraintIDcount = 0;
-
-    public static Constraint getConstraint(String name, ArrayList<Variable> scope, Integer defaultValue, String semantics) {
+    public static Constraint getConstraint(String name, long cId, ArrayList<Variable> scope, Integer defaultValue,
+                                           String semantics) {
         Constraint constraint = null;
         if (semantics.equalsIgnoreCase("soft")) {
             if (scope.size() == 1)
-                constraint = new TableUnaryConstraint(name, constraintIDcount++, scope.get(0), defaultValue);
+                constraint = new TableUnaryConstraint(name, cId, scope.get(0), defaultValue);
             else if (scope.size() == 2)
-                constraint = new TableBinaryConstraint(name, constraintIDcount++, scope, defaultValue);
+                constraint = new TableBinaryConstraint(name, cId, scope, defaultValue);
             else
-                constraint = new TableConstraint(name, constraintIDcount++, scope, defaultValue);
+                constraint = new TableConstraint(name, cId, scope, defaultValue);
         }
 
         // Register the constraint in each of the participating variables.
@@ -22,8 +22,12 @@
 
 package kernel;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.BiFunction;
 
 /**
  * Created by ffiorett on 7/7/15.
@@ -41,6 +45,10 @@ public class DCOPInstance {
     private HashMap<String, Long> variableIDHashMap;
     private HashMap<Long, Variable> variableHashMap;
 
+    // Counters used to assign IDs to the variables and constraints, when not given by the input format
+    private long variableIDcount = 0;
+    private long constraintIDcount = 0;
+
 
     public DCOPInstance() {
         agentIDHashMap = new HashMap<String, Long>();
@@ -84,6 +92,20 @@ public class DCOPInstance {
         return agentHashMap.values();
     }
 
+    /**
+     * @return A fresh variable ID for this instance.
+     */
+    public long nextVariableID() {
+        return variableIDcount++;
+    }
+
+    /**
+     * @return A fresh constraint ID for this instance.
+     */
+    public long nextConstraintID() {
+        return constraintIDcount++;
+    }
+
     public void addVariable(Variable variable) {
         variableIDHashMap.put(variable.getName(), variable.getID());
         variableHashMap.put(variable.getID(), variable);
@@ -125,4 +147,52 @@ public class DCOPInstance {
     public Collection<Constraint> getDCOPConstraints() {
         return constraintHashMap.values();
     }
+
+    /**
+     * Creates a deep copy of this instance. The copy shares no mutable state (e.g., the variable values or the
+     * agent references) with this instance, hence the two can be solved concurrently.
+     */
+    public DCOPInstance copy() {
+        return copy(Constraint::copy);
+    }
+
+    /**
+     * Creates a deep copy of this instance, whose constraints are created by the given function.
+     * @param copier Creates the copy of a constraint, given the variables of the copy which correspond to the
+     *               scope of the constraint (the scope of the copy may be a subset of them).
+     */
+    public DCOPInstance copy(BiFunction<Constraint, ArrayList<Variable>, Constraint> copier) {
+        DCOPInstance copy = new DCOPInstance();
+        copy.optimizationType = optimizationType;
+        copy.variableIDcount = variableIDcount;
+        copy.constraintIDcount = constraintIDcount;
+
+        for (AgentState agt : getDCOPAgents()) {
+            AgentState agtCopy = new AgentState(agt.getName(), agt.getID());
+            copy.addAgent(agtCopy);
+            for (Variable v : agt.getVariables()) {
+                Variable vCopy = VariableFactory.getVariable(v.getName(), v.getID(), v.getDomain().getMin(),
+                        v.getDomain().getMax(), "INT-BOUND", v.getType(), agtCopy);
+                vCopy.setValue(v.getValue());
+                copy.addVariable(vCopy);
+            }
+        }
+
+        // Constraints are created in order of ID, so that they are registered to their variables (and agents)
+        // in the same order as in this instance
+        List<Constraint> constraints = new ArrayList<>(getDCOPConstraints());
+        constraints.sort(Comparator.comparingLong(Constraint::getID));
+        for (Constraint c : constraints) {
+            ArrayList<Variable> scope = new ArrayList<>();
+            for (Variable v : c.getScope()) {
+                scope.add(copy.getVariable(v.getID()));
+            }
+            Constraint cCopy = copier.apply(c, scope);
+            for (Variable v : cCopy.getScope()) {
+                v.registerParticipatingConstraint(cCopy);
+            }
+            copy.addConstraint(cCopy);
+        }
+        return copy;
+    }
 }
@@ -60,6 +60,17 @@ public class DCOPInstanceFactory {
     }
 
     public static DCOPInstance importDCOPInstance(String filename, int type) {
+        return importDCOPInstance(filename, type, new VertexCCGClustering());
+    }
+
+    /**
+     * @param ccgClustering The grouping of the vertices of a CCG instance into agents (ignored by the other formats)
+     */
+    public static DCOPInstance importDCOPInstance(String filename, CCGClustering ccgClustering) {
+        return importDCOPInstance(filename, -1, ccgClustering);
+    }
+
+    public static DCOPInstance importDCOPInstance(String filename, int type, CCGClustering ccgClustering) {
         String ext = FilenameUtils.getExtension(filename);
         if (ext.equalsIgnoreCase("xcsp") || ext.equalsIgnoreCase("xml") || type == XCSP_TYPE) {
             return createXCSPInstance(filename);
@@ -71,7 +82,7 @@ public class DCOPInstanceFactory {
                 ext.equalsIgnoreCase("wcsp") || type == WCSP_TYPE) {
             return createWCSPInstance(filename);
         } else if (ext.equalsIgnoreCase("ccg") || type == CCG_TYPE) {
-            return createCCGInstance(filename);
+            return createCCGInstance(filename, ccgClustering);
         } else if (ext.equalsIgnoreCase("json") || type == JSON_TYPE) {
             return createJSONInstance(filename);
         }
@@ -123,7 +134,8 @@ public class DCOPInstanceFactory {
 
                 // Create and store Variable in DCOP instance
                 AgentState agtOwner = instance.getAgent(agentName);
-                Variable variable = VariableFactory.getVariable(name, min, max, "INT-BOUND", agtOwner);
+                Variable variable = VariableFactory.getVariable(name, instance.nextVariableID(),
+                                                                min, max, "INT-BOUND", agtOwner);
                 instance.addVariable(variable);
             }
 
@@ -155,13 +167,15 @@ public class DCOPInstanceFactory {
                 String semantics = relationNode.getAttributes().getNamedItem("semantics").getNodeValue();
 
                 // Create constraint
-                Constraint constraint = ConstraintFactory.getConstraint(name, scope, defaultValue, semantics);
+                Constraint constraint = ConstraintFactory.getConstraint(name, instance.nextConstraintID(),
+                                                                        scope, defaultValue, semantics);
 
                 // Add values
-                int values[] = new int[arity];
                 String[] valuesStr = relationNode.getTextContent().split(Pattern.quote("|"));
 
                 for (String s : valuesStr) {
+                    // n-ary constraints keep their tuples: each entry needs its own array
+                    int values[] = new int[arity];
                     String costValue[] = s.split(Pattern.quote(":"));
                     String utilStr = costValue[0];
                     int utility =
@@ -239,7 +253,8 @@ public class DCOPInstanceFactory {
                 // Create Variable and it in the DCOP instance
                 int min = 0;
                 int max = Integer.parseInt(tokens[i]) - 1;
-                Variable variable = VariableFactory.getVariable(varName, min, max, "INT-BOUND", agt);
+                Variable variable = VariableFactory.getVariable(varName, instance.nextVariableID(),
+                                                                min, max, "INT-BOUND", agt);
                 instance.addVariable(variable);
                 //System.out.println(variable.toString());
             }
@@ -260,11 +275,13 @@ public class DCOPInstanceFactory {
                 Integer defaultValue = Integer.parseInt(tokens[j++]);
                 long numEntries = Integer.parseInt(tokens[j]);
 
-                Constraint constraint = ConstraintFactory.getConstraint(name, scope, defaultValue, "soft");
+                Constraint constraint = ConstraintFactory.getConstraint(name, instance.nextConstraintID(),
+                                                                        scope, defaultValue, "soft");
                 // Fill in constraint
-                int values[] = new int[arity];
                 for (int eid = 0; eid < numEntries; eid++)
                 {
+                    // n-ary constraints keep their tuples: each entry needs its own array
+                    int values[] = new int[arity];
                     tokens = br.readLine().split(" ");
                     for (int i = 0; i < arity; i++)
                         values[i] = Integer.parseInt(tokens[i]);
@@ -331,70 +348,64 @@ public class DCOPInstanceFactory {
      *      <vid> is the variable ID
      *      <type> \in {0, -,1, -2} denoting, respectively, a problem variable, and two auxiliary variables.
      *  --- vertex types end ---
+     * The vertices are grouped into agents by the given clustering: agent a<i> owns the variables of the i-th
+     * cluster (in the order of their first vertex in the file).
      * @param filename
+     * @param clustering
      * @return
      */
-    private static DCOPInstance createCCGInstance(String filename) {
+    private static DCOPInstance createCCGInstance(String filename, CCGClustering clustering) {
         DCOPInstance instance = new DCOPInstance();
         int optType = Constants.OPT_MINIMIZE;
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-
+        try {
+            CCGGraph graph = CCGGraph.read(filename);
+            int n = graph.getNbVertices();
             int cIdx = 0; // number of constraints
 
-            // First line (problem preamble)
-            String[] tokens = br.readLine().split(" ");
-            assert (tokens.length == 4);
-            int n = Integer.parseInt(tokens[2]);
-            int e = Integer.parseInt(tokens[3]);
-            //System.out.println("read: " + n + " variables and " + e + " edges.");
-
-            // Parse Variables
+            // Create and store the Agents in the DCOP instance, one per cluster. An agent is named after the ID of
+            // its first vertex (a<ID>), hence each vertex has its own agent a<ID> with the VERTEX clustering.
+            int[] agentIdx = graph.getAgents(clustering);
+            ArrayList<AgentState> agents = new ArrayList<>();
             for (int i = 0; i < n; i++) {
-                tokens = br.readLine().split(" ");
-                assert (tokens[0].equalsIgnoreCase("v"));
-                int id = Integer.parseInt(tokens[1]);
-                double cost = Double.parseDouble(tokens[2]);
-
-                String varName = "v" + Integer.toString(id);
-                // todo: Associate mutliple (auxliary) variables to one agent.
-                String agtName = "a" + Integer.toString(id);
-
-                // Create and store Agent in DCOP instance
-                AgentState agt = new AgentState(agtName, id);
-                instance.addAgent(agt);
-
+                if (agentIdx[i] == agents.size()) {
+                    AgentState agt = new AgentState("a" + Integer.toString(graph.getID(i)), graph.getID(i));
+                    agents.add(agt);
+                    instance.addAgent(agt);
+                }
+            }
 
-                // Create Variable and it in the DCOP instance
-                Variable variable = VariableFactory.getVariable(varName, 0, 1, "INT-BOUND", agt);
-                instance.addVariable(variable);
+            // Create the Variables and their unary Constraints
+            Variable[] variables = new Variable[n];
+            for (int i = 0; i < n; i++) {
+                // The variable IDs of the instance are consecutive: the vertices are referred to by position
+                variables[i] = VariableFactory.getVariable(graph.getName(i), instance.nextVariableID(),
+                                                           0, 1, "INT-BOUND", graph.getType(i),
+                                                           agents.get(agentIdx[i]));
+                instance.addVariable(variables[i]);
                 //System.out.println(variable.toString());
 
                 // Create Constraint
                 ArrayList<Variable> scope = new ArrayList<Variable>();
-                scope.add(variable);
+                scope.add(variables[i]);
                 String cname = "c" + cIdx++;
-                Constraint constraint = ConstraintFactory.getConstraint(cname, scope, 0, "soft");
+                Constraint constraint = ConstraintFactory.getConstraint(cname, instance.nextConstraintID(),
+                                                                        scope, 0, "soft");
                 constraint.addValue(new Tuple(new int[]{0}), 0, optType);
-                constraint.addValue(new Tuple(new int[]{1}), cost, optType);
+                constraint.addValue(new Tuple(new int[]{1}), graph.getWeight(i), optType);
                 instance.addConstraint(constraint);
                 //System.out.println(constraint);
             }
 
-
             // Create Constraints
-            for (int i = 0; i < e; i++) {
-                tokens = br.readLine().split(" ");
-                assert (tokens[0].equalsIgnoreCase("e"));
-                int id1 = Integer.parseInt(tokens[1]);
-                int id2 = Integer.parseInt(tokens[2]);
-                Variable v1 = instance.getVariable(id1);
-                Variable v2 = instance.getVariable(id2);
+            int[] edges = graph.getEdges();
+            for (int i = 0; i < edges.length; i += 2) {
                 ArrayList<Variable> scope = new ArrayList<Variable>();
-                scope.add(v1);
-                scope.add(v2);
+                scope.add(variables[edges[i]]);
+                scope.add(variables[edges[i + 1]]);
                 String cname = "c" + cIdx++;
-                Constraint constraint = ConstraintFactory.getConstraint(cname, scope, 0, "soft");
+                Constraint constraint = ConstraintFactory.getConstraint(cname, instance.nextConstraintID(),
+                                                                        scope, 0, "soft");
                 constraint.addValue(new Tuple(new int[]{0,0}), Constants.infinity, optType);
                 constraint.addValue(new Tuple(new int[]{0,1}), 0, optType);
                 constraint.addValue(new Tuple(new int[]{1,0}), 0, optType);
@@ -402,17 +413,6 @@ public class DCOPInstanceFactory {
                 instance.addConstraint(constraint);
                 //System.out.println(constraint);
             }
-
-            // Process variable type
-            String line = br.readLine();
-            assert (line.contains("vertex types begin"));
-            for (int i = 0; i < n; i++) {
-                tokens = br.readLine().split(" ");
-                assert (tokens.length == 2);
-                int id   = Integer.parseInt(tokens[0]);
-                int type = Integer.parseInt(tokens[1]);
-                instance.getVariable(id).setType(type);
-            }
             return instance;
 
         } catch (Exception e) {
@@ -439,8 +439,12 @@ public class DCOPInstanceFactory {
             // Parse Agents
             for(Iterator it = agents.keySet().iterator(); it.hasNext();) {
                 String name = (String) it.next();
+                // Some generated files contain a spurious "id" entry among the agents
+                if (!(agents.get(name) instanceof JSONObject))
+                    continue;
                 JSONObject agt = (JSONObject) agents.get(name);
-                long id = (Long) agt.get("id");
+                // Agents with no explicit ID are numbered in order of appearance
+                long id = agt.containsKey("id") ? (Long) agt.get("id") : instance.getDCOPAgents().size();
 
                 // Create and store Agent in DCOP instance
                 AgentState agent = new AgentState(name, id);
@@ -453,13 +457,13 @@ public class DCOPInstanceFactory {
                 String name = (String) it.next();
                 JSONObject var = (JSONObject) variables.get(name);
                 long id = (Long) var.get("id");
-                long type = (Long) var.get("type");
+                // The JSON format marks decision variables with type 1
+                long type = (Long) var.get("type") == 1 ? Variable.DECISION_VAR : (Long) var.get("type");
                 String agt_name = (String) var.get("agent");
 
                 JSONArray domain = (JSONArray) var.get("domain");
                 long min = (Long)domain.get(0);
                 long max = (Long)domain.get(domain.size()-1);
-                assert (domain.size() == 2);
 
                 // Create Variable and it in the DCOP instance
                 Variable variable = VariableFactory.getVariable(name, id, (int)min, (int)max, "INT-BOUND", (int)type,
@@ -480,26 +484,22 @@ public class DCOPInstanceFactory {
                     scope.add(instance.getVariable(iterator.next()));
                 }
 
-                Constraint constraint = ConstraintFactory.getConstraint(name, scope, 0, "soft");
+                Constraint constraint = ConstraintFactory.getConstraint(name, instance.nextConstraintID(),
+                                                                        scope, 0, "soft");
 
+                // The costs of all the tuples of the scope, in lexicographic order (the last variable varies fastest)
                 JSONArray jvals = (JSONArray) con.get("vals");
-                assert (scope.size() < 2);
-
-                if (scope.size() == 1) {
-                    Double val1 = ((Double) jvals.get(0)) <= -999.0 ? Constants.infinity : (Double) jvals.get(0);
-                    constraint.addValue(new Tuple(new int[]{0}), val1, optType);
-                    Double val2 = ((Double) jvals.get(1)) < -999.0 ? Constants.infinity : (Double) jvals.get(1);
-                    constraint.addValue(new Tuple(new int[]{1}), val2, optType);
-                }
-                else if (scope.size() == 2) {
-                    Double val1 = ((Double) jvals.get(0)) < -999.0 ? Constants.infinity : (Double) jvals.get(0);
-                    constraint.addValue(new Tuple(new int[]{0, 0}), val1, optType);
-                    Double val2 = ((Double) jvals.get(1)) < -999.0 ? Constants.infinity : (Double) jvals.get(1);
-                    constraint.addValue(new Tuple(new int[]{0, 1}), val2, optType);
-                    Double val3 = ((Double) jvals.get(2)) < -999.0 ? Constants.infinity : (Double) jvals.get(2);
-                    constraint.addValue(new Tuple(new int[]{1, 0}), val3, optType);
-                    Double val4 = ((Double) jvals.get(3)) < -999.0 ? Constants.infinity : (Double) jvals.get(3);
-                    constraint.addValue(new Tuple(new int[]{1, 1}), val4, optType);
+                for (int k = 0; k < jvals.size(); k++) {
+                    int[] values = new int[scope.size()];
+                    int rem = k;
+                    for (int i = scope.size() - 1; i >= 0; i--) {
+                        Domain dom = scope.get(i).getDomain();
+                        values[i] = dom.getElement(rem % dom.size());
+                        rem /= dom.size();
+                    }
+                    // The first cost of a unary constraint is also infinite when it is exactly -999
+                    boolean inclusive = scope.size() == 1 && k == 0;
+                    constraint.addValue(new Tuple(values), getJSONCost(jvals, k, inclusive), optType);
                 }
 
                 instance.addConstraint(constraint);
@@ -515,6 +515,15 @@ public class DCOPInstanceFactory {
 
 
 
+    /**
+     * Reads the i-th cost of a JSON constraint. Costs can be integer or real numbers, and those smaller than -999
+     * (or equal to it, if inclusive) denote infinite costs.
+     */
+    private static double getJSONCost(JSONArray jvals, int i, boolean inclusive) {
+        double val = ((Number) jvals.get(i)).doubleValue();
+        return val < -999.0 || (inclusive && val == -999.0) ? Constants.infinity : val;
+    }
+
     private static DCOPInstance createUSCInstance(String filename) {
         return null;
     }
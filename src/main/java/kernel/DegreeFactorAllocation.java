@@ -0,0 +1,36 @@
+package kernel;
+
+import java.util.HashMap;
+
+/**
+ * Gives each factor to the agent of its scope whose variables have the smallest degree (i.e., the number of
+ * constraints they participate in), ties broken by smallest ID: the hubs of the constraint graph, which already
+ * own the variable nodes with most neighbors, own no factor they share with a lower-degree agent.
+ */
+public class DegreeFactorAllocation implements FactorAllocation {
+
+    @Override
+    public long[] allocate(DCOPInstance instance) {
+        HashMap<Long, Integer> degree = new HashMap<>();
+        for (AgentState agent : instance.getDCOPAgents()) {
+            int d = 0;
+            for (Variable v : agent.getVariables())
+                d += v.getParticipatingConstraints().size();
+            degree.put(agent.getID(), d);
+        }
+
+        long[] owners = new long[instance.getDCOPConstraints().size()];
+        int f = 0;
+        for (Constraint c : instance.getDCOPConstraints()) {
+            long owner = -1;
+            for (Variable v : c.getScope()) {
+                long id = v.getOwnerAgent().getID();
+                if (owner == -1 || degree.get(id) < degree.get(owner)
+                        || (degree.get(id).equals(degree.get(owner)) && id < owner))
+                    owner = id;
+            }
+            owners[f++] = owner;
+        }
+        return owners;
+    }
+}
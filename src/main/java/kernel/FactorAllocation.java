@@ -0,0 +1,13 @@
+package kernel;
+
+/**
+ * Allocates the factor (function) nodes of the factor graph of an instance to the agents. A factor is always
+ * owned by an agent owning a variable of its scope.
+ */
+public interface FactorAllocation {
+
+    /**
+     * @return The ID of the agent owning the factor of each constraint, in the order of getDCOPConstraints().
+     */
+    long[] allocate(DCOPInstance instance);
+}
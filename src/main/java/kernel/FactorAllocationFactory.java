@@ -0,0 +1,24 @@
+package kernel;
+
+/**
+ * Creates the allocation of the factor nodes to the agents: MIN_ID (default), LEAST_LOADED, DEGREE or MIN_COMM.
+ */
+public class FactorAllocationFactory {
+
+    /**
+     * @throws IllegalArgumentException If the type is unknown.
+     */
+    public static FactorAllocation create(String type) {
+        if (type.toUpperCase().equals("MIN_ID"))
+            return new MinIdFactorAllocation();
+        else if (type.toUpperCase().equals("LEAST_LOADED"))
+            return new LeastLoadedFactorAllocation();
+        else if (type.toUpperCase().equals("DEGREE"))
+            return new DegreeFactorAllocation();
+        else if (type.toUpperCase().equals("MIN_COMM"))
+            return new MinCommFactorAllocation();
+        else
+            throw new IllegalArgumentException("Unknown factor allocation: " + type);
+    }
+
+}
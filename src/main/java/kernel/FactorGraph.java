@@ -23,8 +23,16 @@ public class FactorGraph {
     /**
      * We assumem that the agents calling this function are of class FactorGraphAgent
      * @param DCOP
+     * @param context The simulation context in which the agents have been spawned
      */
-    public FactorGraph(DCOPInstance DCOP) {
+    public FactorGraph(DCOPInstance DCOP, SimulationContext context) {
+        this(DCOP, context, new MinIdFactorAllocation());
+    }
+
+    /**
+     * @param allocation The allocation of the function nodes to the agents
+     */
+    public FactorGraph(DCOPInstance DCOP, SimulationContext context, FactorAllocation allocation) {
         varToVariableNodeMap = new HashMap<>();
         conToFunctionNodeMap = new HashMap<>();
 
@@ -34,38 +42,36 @@ public class FactorGraph {
         // Create variable nodes
         for (Variable v : DCOP.getDCOPVariables()) {
             long aId = v.getOwnerAgent().getID();
-            FactorGraphAgent agent = (FactorGraphAgent)DCOPinfo.agentsRef.get(aId);
+            FactorGraphAgent agent = (FactorGraphAgent)context.getAgent(aId);
             VariableNode vnode = new VariableNode(agent, v);
             variableNodes.add(vnode);
             varToVariableNodeMap.put(v, vnode);
         }
 
         // Create function nodes
+        long[] owners = allocation.allocate(DCOP);
+        int f = 0;
         for (Constraint c : DCOP.getDCOPConstraints()) {
-            long aId = getOnwerId(c);
-            FactorGraphAgent agent = (FactorGraphAgent)DCOPinfo.agentsRef.get(aId);
+            long aId = owners[f++];
+            FactorGraphAgent agent = (FactorGraphAgent)context.getAgent(aId);
             FactorNode fnode = new FactorNode(agent, c);
             factorNodes.add(fnode);
             conToFunctionNodeMap.put(c, fnode);
 
             // Add function nodes neighbors (i.e., all variable nodes connected to it)
-            // and add variable nodes neighbors (i.e., all function nodes whose scope contains this variable)
+            // and add variable nodes neighbors (i.e., all function nodes whose scope contains this variable).
+            // The function node is new, hence it is a new neighbor of the variable nodes, and each node records its
+            // position in the neighbors of the other.
             for (Variable v : c.getScope()) {
                 VariableNode vnode = varToVariableNodeMap.get(v);
-                fnode.addNeighbor(vnode);
-                vnode.addNeighbor(fnode);
+                if (fnode.getNeighbors().contains(vnode))
+                    continue;
+                fnode.addNeighbor(vnode, vnode.getNeighbors().size());
+                vnode.addNeighbor(fnode, fnode.getNeighbors().size() - 1);
             }
         }
     }
 
-    public long getOnwerId(Constraint c) {
-        long id = Integer.MAX_VALUE;
-        for (Variable v : c.getScope())
-            if (v.getOwnerAgent().getID() < id)
-                id = v.getOwnerAgent().getID();
-        return id;
-    }
-
     @Override
     public String toString() {
         String s = "FactorGraph:\n\t";
@@ -23,7 +23,7 @@
 package kernel;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by ffiorett on 7/7/15.
@@ -37,14 +37,12 @@ public class IntVariable implements Variable {
 
     AgentState ownerAgentState;
     ArrayList<Constraint> participatingConstraints;
-    Random rand;
 
     public IntVariable(String name, long ID, int min, int max) {
         this.name = name;
         this.ID = ID;
         this.domain = new BoundDomain(min, max);
         this.value = domain.getMin();
-        this.rand = new Random();
         this.type = Variable.DECISION_VAR;
 
         participatingConstraints = new ArrayList<Constraint>();
@@ -55,7 +53,6 @@ public class IntVariable implements Variable {
         this.ID = ID;
         this.domain = new BoundDomain(min, max);
         this.value = domain.getMin();
-        this.rand = new Random();
         setType(type);
         participatingConstraints = new ArrayList<Constraint>();
     }
@@ -102,8 +99,8 @@ public class IntVariable implements Variable {
     }
 
     @Override
-    public void setValueAtRandom() {
-        this.value = rand.nextInt(domain.getMax() - domain.getMin() + 1) + domain.getMin();
+    public void setValueAtRandom(SplittableRandom random) {
+        this.value = random.nextInt(domain.getMax() - domain.getMin() + 1) + domain.getMin();
     }
 
     @Override
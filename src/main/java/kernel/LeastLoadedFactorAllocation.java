@@ -0,0 +1,65 @@
+package kernel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Greedily gives each factor to the least loaded agent of its scope, ties broken by smallest ID. The load of an
+ * agent is the number of table cells it sends per cycle: initially those of its variable nodes (the domain size of
+ * a variable times its number of constraints), plus those of the factors given to it (the sum of the domain sizes
+ * of their scope). The factors are allocated in decreasing order of load (longest processing time first).
+ */
+public class LeastLoadedFactorAllocation implements FactorAllocation {
+
+    @Override
+    public long[] allocate(DCOPInstance instance) {
+        HashMap<Long, Long> load = new HashMap<>();
+        for (AgentState agent : instance.getDCOPAgents()) {
+            long l = 0;
+            for (Variable v : agent.getVariables())
+                l += (long) v.getDomain().size() * v.getParticipatingConstraints().size();
+            load.put(agent.getID(), l);
+        }
+
+        List<Constraint> constraints = new ArrayList<>(instance.getDCOPConstraints());
+        long[] factorLoad = new long[constraints.size()];
+        List<Integer> order = new ArrayList<>();
+        for (int f = 0; f < constraints.size(); f++) {
+            for (Variable v : getDistinctScope(constraints.get(f)))
+                factorLoad[f] += v.getDomain().size();
+            order.add(f);
+        }
+        order.sort((f1, f2) -> Long.compare(factorLoad[f2], factorLoad[f1]));
+
+        long[] owners = new long[constraints.size()];
+        for (int f : order) {
+            long owner = selectOwner(constraints.get(f), load);
+            owners[f] = owner;
+            load.put(owner, load.get(owner) + factorLoad[f]);
+        }
+        return owners;
+    }
+
+    /**
+     * @return The ID of the agent of the scope of the constraint to which it is given, according to the current
+     * load of the agents.
+     */
+    protected long selectOwner(Constraint c, HashMap<Long, Long> load) {
+        long owner = -1;
+        for (Variable v : c.getScope()) {
+            long id = v.getOwnerAgent().getID();
+            if (owner == -1 || load.get(id) < load.get(owner) || (load.get(id).equals(load.get(owner)) && id < owner))
+                owner = id;
+        }
+        return owner;
+    }
+
+    protected static List<Variable> getDistinctScope(Constraint c) {
+        List<Variable> scope = new ArrayList<>();
+        for (Variable v : c.getScope())
+            if (!scope.contains(v))
+                scope.add(v);
+        return scope;
+    }
+}
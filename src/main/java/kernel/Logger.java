@@ -0,0 +1,132 @@
+package kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A leveled logger for the simulation. A message is formatted (i.e., its supplier is called) only if its level is
+ * enabled, on the calling thread, and it is then appended to a bounded ring buffer which a background thread
+ * writes to the standard output: the agents never wait for the I/O, unless the buffer is full.
+ *
+ * Appending a message briefly takes a global lock, shared by all the logging threads, to count it (see flush), and
+ * then puts it in the buffer, of BUFFER_SIZE messages, outside the lock. When the writer falls behind and the buffer
+ * is full, the logging threads block in put until the writer drains it: messages are never dropped, hence a run
+ * which logs faster than the standard output is written (e.g., at the TRACE level) is slowed down to its speed.
+ *
+ * The default level is INFO: the per-cycle (DEBUG) and per-message (TRACE) output is disabled.
+ */
+public class Logger {
+
+    public enum Level { OFF, ERROR, WARN, INFO, DEBUG, TRACE }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static volatile Level level = Level.INFO;
+
+    private static final BlockingQueue<String> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+    private static final Object lock = new Object();
+    // The number of messages appended to the buffer, and written by the writer thread (guarded by lock)
+    private static long nbAppended = 0;
+    private static long nbWritten = 0;
+    private static Thread writer;
+
+    private Logger() {
+    }
+
+    public static void setLevel(Level level) {
+        Logger.level = level;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static boolean isEnabled(Level msgLevel) {
+        return msgLevel.compareTo(level) <= 0 && msgLevel != Level.OFF;
+    }
+
+    public static void error(Supplier<String> msg) {
+        log(Level.ERROR, msg);
+    }
+
+    public static void warn(Supplier<String> msg) {
+        log(Level.WARN, msg);
+    }
+
+    public static void info(Supplier<String> msg) {
+        log(Level.INFO, msg);
+    }
+
+    public static void debug(Supplier<String> msg) {
+        log(Level.DEBUG, msg);
+    }
+
+    public static void trace(Supplier<String> msg) {
+        log(Level.TRACE, msg);
+    }
+
+    public static void log(Level msgLevel, Supplier<String> msg) {
+        if (!isEnabled(msgLevel))
+            return;
+        String s = msg.get();
+        synchronized (lock) {
+            if (writer == null)
+                startWriter();
+            nbAppended++;
+        }
+        try {
+            buffer.put(s);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            synchronized (lock) {
+                nbAppended--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until all the messages logged so far have been written.
+     */
+    public static void flush() {
+        synchronized (lock) {
+            while (nbWritten < nbAppended) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Must be called holding the lock
+    private static void startWriter() {
+        writer = new Thread(() -> {
+            List<String> batch = new ArrayList<>();
+            while (true) {
+                try {
+                    batch.add(buffer.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                buffer.drainTo(batch);
+                for (String s : batch)
+                    System.out.println(s);
+                System.out.flush();
+                synchronized (lock) {
+                    nbWritten += batch.size();
+                    lock.notifyAll();
+                }
+                batch.clear();
+            }
+        }, "logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::flush));
+    }
+}
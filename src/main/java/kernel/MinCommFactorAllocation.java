@@ -0,0 +1,27 @@
+package kernel;
+
+import java.util.HashMap;
+
+/**
+ * Gives each factor to the agent owning most variables of its scope, as the messages between a factor and the
+ * variables of its owner are local; ties (e.g., any binary factor between two agents) are broken as in
+ * {@link LeastLoadedFactorAllocation}.
+ */
+public class MinCommFactorAllocation extends LeastLoadedFactorAllocation {
+
+    @Override
+    protected long selectOwner(Constraint c, HashMap<Long, Long> load) {
+        HashMap<Long, Integer> nbVars = new HashMap<>();
+        for (Variable v : getDistinctScope(c))
+            nbVars.merge(v.getOwnerAgent().getID(), 1, Integer::sum);
+
+        long owner = -1;
+        for (long id : nbVars.keySet()) {
+            if (owner == -1 || nbVars.get(id) > nbVars.get(owner)
+                    || (nbVars.get(id).equals(nbVars.get(owner))
+                        && (load.get(id) < load.get(owner) || (load.get(id).equals(load.get(owner)) && id < owner))))
+                owner = id;
+        }
+        return owner;
+    }
+}
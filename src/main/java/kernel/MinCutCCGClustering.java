@@ -0,0 +1,187 @@
+package kernel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Partitions the vertices of the CCG into k clusters of balanced size, with few edges between clusters (by default,
+ * k is the number of problem variables).
+ *
+ * The clusters are first grown breadth-first, in round-robin, from k seeds: the problem variables of largest degree,
+ * then the auxiliary vertices of largest degree. The partition is then refined greedily (in the manner of
+ * Fiduccia-Mattheyses, without the moves which increase the cut): a vertex is moved to a neighboring cluster if this
+ * removes edges from the cut without making the cluster larger than MAX_IMBALANCE times the average size, or if
+ * this leaves the cut unchanged and makes the two clusters more balanced.
+ */
+public class MinCutCCGClustering extends VariableCCGClustering {
+
+    private static final double MAX_IMBALANCE = 1.5;
+    private static final int MAX_PASSES = 100;
+
+    // The number of clusters (0 = the number of problem variables)
+    private int nbClusters;
+
+    public MinCutCCGClustering() {
+        this(0);
+    }
+
+    public MinCutCCGClustering(int nbClusters) {
+        this.nbClusters = nbClusters;
+    }
+
+    @Override
+    public int[] cluster(int[] types, int[] edges) {
+        int n = types.length;
+        if (n == 0)
+            return new int[0];
+        int[][] adj = getAdjacency(n, edges);
+
+        int k = nbClusters;
+        if (k <= 0) {
+            for (int type : types) {
+                if (type == Variable.DECISION_VAR)
+                    k++;
+            }
+        }
+        k = Math.max(1, Math.min(k, n));
+
+        int[] clusters = growClusters(types, adj, k);
+        int[] sizes = new int[k];
+        for (int c : clusters) {
+            sizes[c]++;
+        }
+        refine(adj, clusters, sizes, (int) Math.ceil(MAX_IMBALANCE * n / k));
+        return clusters;
+    }
+
+    /**
+     * @return A partition of the vertices into k clusters, grown breadth-first in round-robin from k seeds. The
+     * vertices which cannot be reached from any seed are added to the smallest cluster.
+     */
+    private static int[] growClusters(int[] types, int[][] adj, int k) {
+        int n = types.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        // Problem variables first, then by decreasing degree, then in the order of the file
+        Arrays.sort(order, (u, v) -> {
+            boolean pu = types[u] == Variable.DECISION_VAR, pv = types[v] == Variable.DECISION_VAR;
+            if (pu != pv)
+                return pu ? -1 : 1;
+            if (adj[u].length != adj[v].length)
+                return adj[v].length - adj[u].length;
+            return u - v;
+        });
+
+        int[] clusters = new int[n];
+        Arrays.fill(clusters, -1);
+        int[] sizes = new int[k];
+        List<Queue<Integer>> frontiers = new ArrayList<>();
+        for (int c = 0; c < k; c++) {
+            clusters[order[c]] = c;
+            sizes[c] = 1;
+            Queue<Integer> frontier = new ArrayDeque<>();
+            frontier.add(order[c]);
+            frontiers.add(frontier);
+        }
+
+        // Each cluster claims one unassigned neighbor of its (oldest) vertices in turn
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (int c = 0; c < k; c++) {
+                Queue<Integer> frontier = frontiers.get(c);
+                while (!frontier.isEmpty()) {
+                    int claimed = -1;
+                    for (int w : adj[frontier.peek()]) {
+                        if (clusters[w] == -1) {
+                            claimed = w;
+                            break;
+                        }
+                    }
+                    if (claimed == -1) {
+                        frontier.poll();
+                        continue;
+                    }
+                    clusters[claimed] = c;
+                    sizes[c]++;
+                    frontier.add(claimed);
+                    grown = true;
+                    break;
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (clusters[i] == -1) {
+                int smallest = 0;
+                for (int c = 1; c < k; c++) {
+                    if (sizes[c] < sizes[smallest])
+                        smallest = c;
+                }
+                clusters[i] = smallest;
+                sizes[smallest]++;
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Moves single vertices between neighboring clusters, until no move reduces the cut (or balances the clusters
+     * at equal cut). A cluster is never emptied.
+     */
+    private static void refine(int[][] adj, int[] clusters, int[] sizes, int maxSize) {
+        int n = clusters.length;
+        // The number of edges from the current vertex to each cluster, and the clusters it is adjacent to
+        int[] nbEdges = new int[sizes.length];
+        int[] adjClusters = new int[sizes.length];
+
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean moved = false;
+            for (int u = 0; u < n; u++) {
+                int from = clusters[u];
+                if (sizes[from] == 1)
+                    continue;
+
+                int nbAdjClusters = 0;
+                for (int w : adj[u]) {
+                    int c = clusters[w];
+                    if (nbEdges[c]++ == 0)
+                        adjClusters[nbAdjClusters++] = c;
+                }
+
+                int best = from;
+                int bestGain = 0;
+                for (int i = 0; i < nbAdjClusters; i++) {
+                    int to = adjClusters[i];
+                    if (to == from)
+                        continue;
+                    int gain = nbEdges[to] - nbEdges[from];
+                    boolean improves = (gain > 0 && sizes[to] < maxSize)
+                            || (gain == 0 && sizes[to] + 1 < sizes[from]);
+                    if (improves && (best == from || gain > bestGain
+                            || (gain == bestGain && sizes[to] < sizes[best]))) {
+                        best = to;
+                        bestGain = gain;
+                    }
+                }
+                for (int i = 0; i < nbAdjClusters; i++) {
+                    nbEdges[adjClusters[i]] = 0;
+                }
+
+                if (best != from) {
+                    clusters[u] = best;
+                    sizes[from]--;
+                    sizes[best]++;
+                    moved = true;
+                }
+            }
+            if (!moved)
+                break;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package kernel;
+
+/**
+ * Gives each factor to the agent with the smallest ID in its scope (the default allocation). On graphs with hubs,
+ * the low-ID hubs own most factors.
+ */
+public class MinIdFactorAllocation implements FactorAllocation {
+
+    @Override
+    public long[] allocate(DCOPInstance instance) {
+        long[] owners = new long[instance.getDCOPConstraints().size()];
+        int f = 0;
+        for (Constraint c : instance.getDCOPConstraints()) {
+            long id = Integer.MAX_VALUE;
+            for (Variable v : c.getScope())
+                if (v.getOwnerAgent().getID() < id)
+                    id = v.getOwnerAgent().getID();
+            owners[f++] = id;
+        }
+        return owners;
+    }
+}
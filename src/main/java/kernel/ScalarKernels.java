@@ -0,0 +1,77 @@
+package kernel;
+
+/**
+ * The array kernels, as plain loops (which the JIT compiler may auto-vectorize).
+ */
+public class ScalarKernels implements ArrayKernels {
+
+    @Override
+    public double sum(double[] a, int from, int len) {
+        double sum = 0;
+        for (int i = from; i < from + len; i++)
+            sum += a[i];
+        return sum;
+    }
+
+    @Override
+    public double min(double[] a, int from, int len) {
+        double min = a[from];
+        for (int i = from + 1; i < from + len; i++)
+            if (a[i] < min)
+                min = a[i];
+        return min;
+    }
+
+    @Override
+    public int argMin(double[] a, int from, int len) {
+        double min = a[from];
+        int argmin = 0;
+        for (int i = 1; i < len; i++)
+            if (a[from + i] < min) {
+                min = a[from + i];
+                argmin = i;
+            }
+        return argmin;
+    }
+
+    @Override
+    public void addValue(double[] a, int from, int len, double value) {
+        for (int i = from; i < from + len; i++)
+            a[i] += value;
+    }
+
+    @Override
+    public void addArray(double[] out, int outFrom, double[] in, int inFrom, int len) {
+        for (int i = 0; i < len; i++)
+            out[outFrom + i] += in[inFrom + i];
+    }
+
+    @Override
+    public double maxDistance(double[] a, int aFrom, double[] b, int bFrom, int len) {
+        double dist = 0;
+        for (int i = 0; i < len; i++)
+            dist = Math.max(dist, Math.abs(a[aFrom + i] - b[bFrom + i]));
+        return dist;
+    }
+
+    @Override
+    public double addMin(double[] a, int aFrom, double[] b, int bFrom, int len) {
+        double min = a[aFrom] + b[bFrom];
+        for (int i = 1; i < len; i++) {
+            double value = a[aFrom + i] + b[bFrom + i];
+            if (value < min)
+                min = value;
+        }
+        return min;
+    }
+
+    @Override
+    public void normalizeAverage(double[] a, int from, int len) {
+        addValue(a, from, len, -(sum(a, from, len) / (double) len));
+    }
+
+    @Override
+    public void normalizeMin(double[] a, int from, int len) {
+        addValue(a, from, len, -min(a, from, len));
+    }
+}
@@ -0,0 +1,90 @@
+package kernel;
+
+import communication.CycleTickerDeamon;
+import communication.DCOPagent;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+
+/**
+ * The state shared by the agents of a single simulation (i.e., of one spawned DCOP instance).
+ * Each simulation owns its context, hence several simulations can be executed concurrently in the same JVM.
+ */
+public class SimulationContext {
+    private int nbAgents;
+    private int nbConstraints;
+
+    private DCOPagent leaderAgent;
+    private HashMap<Long, DCOPagent> agentsRef = new HashMap<>();
+    private CycleTickerDeamon cycleTickerDeamon;
+
+    private boolean isSAT;
+
+    // The source of the random generators of the agents
+    private SplittableRandom random = new SplittableRandom(0);
+
+    public int getNbAgents() {
+        return nbAgents;
+    }
+
+    public void setNbAgents(int nbAgents) {
+        this.nbAgents = nbAgents;
+    }
+
+    public int getNbConstraints() {
+        return nbConstraints;
+    }
+
+    public void setNbConstraints(int nbConstraints) {
+        this.nbConstraints = nbConstraints;
+    }
+
+    public DCOPagent getLeaderAgent() {
+        return leaderAgent;
+    }
+
+    public void setLeaderAgent(DCOPagent leaderAgent) {
+        this.leaderAgent = leaderAgent;
+    }
+
+    /**
+     * @return The spawned agents, indexed by their ID.
+     */
+    public HashMap<Long, DCOPagent> getAgentsRef() {
+        return agentsRef;
+    }
+
+    public DCOPagent getAgent(long agentID) {
+        return agentsRef.get(agentID);
+    }
+
+    public CycleTickerDeamon getCycleTickerDeamon() {
+        return cycleTickerDeamon;
+    }
+
+    public void setCycleTickerDeamon(CycleTickerDeamon cycleTickerDeamon) {
+        this.cycleTickerDeamon = cycleTickerDeamon;
+    }
+
+    /**
+     * Sets the seed of the simulation (default: 0), from which the random generators of the agents are derived.
+     */
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * @return A new random generator, independent of the others. The generators depend only on the seed and on the
+     * order of the calls, i.e., on the order in which the agents are created.
+     */
+    public synchronized SplittableRandom splitRandom() {
+        return random.split();
+    }
+
+    public boolean isSAT() {
+        return isSAT;
+    }
+
+    public void setSAT(boolean SAT) {
+        isSAT = SAT;
+    }
+}
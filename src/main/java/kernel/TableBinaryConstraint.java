@@ -62,7 +62,7 @@ public class TableBinaryConstraint implements Constraint {
 
     public void addValue(Tuple key, double value, int optType) {
         // assert (key.size() == 2);
-        relation[ ((key.get(0) - dom1Min) * dom1Size) + (key.get(1) - dom2Min) ] = value;
+        relation[ ((key.get(0) - dom1Min) * dom2Size) + (key.get(1) - dom2Min) ] = value;
         if (Constraint.isSat(value)) {
             if (optType == Constants.OPT_MAXIMIZE) {
                 if (bestValue < value || bestValue == Constants.NaN) bestValue = value;
@@ -74,6 +74,15 @@ public class TableBinaryConstraint implements Constraint {
         }
     }
 
+    @Override
+    public Constraint copy(ArrayList<Variable> scope) {
+        TableBinaryConstraint copy = new TableBinaryConstraint(name, ID, scope, defaultValue);
+        System.arraycopy(relation, 0, copy.relation, 0, relation.length);
+        copy.bestValue = bestValue;
+        copy.worstValue = worstValue;
+        return copy;
+    }
+
     @Override
     public boolean isBinary() {
         return true;
@@ -167,7 +176,7 @@ public class TableBinaryConstraint implements Constraint {
         for (int x = dom1Min; x < dom1Min+dom1Size; x++) {
             for (int y = dom2Min; y < dom2Min+dom2Size; y++) {
                 ret +=  x + " " + y + " : ";
-                double val = relation[ ((x - dom1Min) * dom1Size) + (y - dom2Min) ];
+                double val = relation[ ((x - dom1Min) * dom2Size) + (y - dom2Min) ];
                 ret += val == Constants.infinity ? "inf\n" : val == -Constants.infinity ? "-inf\n" : val + "\n";
             }
         }
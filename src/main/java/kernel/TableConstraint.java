@@ -64,6 +64,15 @@ public class TableConstraint implements Constraint {
         }
     }
 
+    @Override
+    public Constraint copy(ArrayList<Variable> scope) {
+        TableConstraint copy = new TableConstraint(name, ID, scope, defaultValue);
+        copy.relation.putAll(relation);
+        copy.bestValue = bestValue;
+        copy.worstValue = worstValue;
+        return copy;
+    }
+
     @Override
     public boolean isBinary() {
         return scope.size() == 2;
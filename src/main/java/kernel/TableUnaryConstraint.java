@@ -32,6 +32,15 @@ public class TableUnaryConstraint implements Constraint {
         this.worstValue = Constants.NaN;
     }
 
+    @Override
+    public Constraint copy(ArrayList<Variable> scope) {
+        TableUnaryConstraint copy = new TableUnaryConstraint(name, ID, scope.get(0), defaultValue);
+        System.arraycopy(relation, 0, copy.relation, 0, relation.length);
+        copy.bestValue = bestValue;
+        copy.worstValue = worstValue;
+        return copy;
+    }
+
     @Override
     public boolean isBinary() {
         return false;
@@ -78,7 +87,7 @@ public class TableUnaryConstraint implements Constraint {
 
     @Override
     public double getValue(Tuple values) {
-        return relation[values.get(0)];
+        return relation[values.get(0) - domMin];
     }
 
     @Override
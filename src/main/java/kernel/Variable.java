@@ -23,6 +23,7 @@
 package kernel;
 
 import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 /**
  * Created by ffiorett on 7/7/15.
@@ -36,7 +37,7 @@ public interface Variable extends DCOPobject {
 
     public void setValue(int value);
 
-    public void setValueAtRandom();
+    public void setValueAtRandom(SplittableRandom random);
 
     public Domain getDomain();
 
@@ -0,0 +1,77 @@
+package kernel;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * One cluster per problem variable, with the auxiliary vertices of the reduction closest to it (in number of edges;
+ * ties go to the problem variable listed first). The vertices of a component of the CCG with no problem variable
+ * form a cluster on their own.
+ */
+public class VariableCCGClustering implements CCGClustering {
+
+    @Override
+    public int[] cluster(int[] types, int[] edges) {
+        int n = types.length;
+        int[][] adj = getAdjacency(n, edges);
+        int[] clusters = new int[n];
+        Arrays.fill(clusters, -1);
+
+        // Breadth-first search from all the problem variables at once
+        Queue<Integer> queue = new ArrayDeque<>();
+        int nbClusters = 0;
+        for (int i = 0; i < n; i++) {
+            if (types[i] == Variable.DECISION_VAR) {
+                clusters[i] = nbClusters++;
+                queue.add(i);
+            }
+        }
+        grow(adj, clusters, queue);
+
+        for (int i = 0; i < n; i++) {
+            if (clusters[i] == -1) {
+                clusters[i] = nbClusters++;
+                queue.add(i);
+                grow(adj, clusters, queue);
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Assigns the unassigned neighbors of the vertices in the queue to the cluster of the vertex that reaches them
+     * first, in breadth-first order.
+     */
+    private static void grow(int[][] adj, int[] clusters, Queue<Integer> queue) {
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int w : adj[u]) {
+                if (clusters[w] == -1) {
+                    clusters[w] = clusters[u];
+                    queue.add(w);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The neighbors of each vertex, in the order of the edges.
+     */
+    protected static int[][] getAdjacency(int n, int[] edges) {
+        int[] degrees = new int[n];
+        for (int v : edges) {
+            degrees[v]++;
+        }
+        int[][] adj = new int[n][];
+        for (int i = 0; i < n; i++) {
+            adj[i] = new int[degrees[i]];
+        }
+        Arrays.fill(degrees, 0);
+        for (int i = 0; i < edges.length; i += 2) {
+            adj[edges[i]][degrees[edges[i]]++] = edges[i + 1];
+            adj[edges[i + 1]][degrees[edges[i + 1]]++] = edges[i];
+        }
+        return adj;
+    }
+}
@@ -26,8 +26,6 @@ package kernel;
  * Created by ffiorett on 7/7/15.
  */
 public class VariableFactory {
-    private static long variableIDcount = 0;
-
     public static Variable getVariable(String varName, long vId, int min, int max, String varType, int vtype, AgentState agtOwner) {
         Variable variable = null;
         if (varType.equalsIgnoreCase("INT-BOUND")) {
@@ -43,8 +41,9 @@ public class VariableFactory {
     }
 
     // TODO: Change this creation min/max here.
-    public static Variable getVariable(String varName, int min, int max, String varType, AgentState agtOwner) {
-        return getVariable(varName, variableIDcount++, min, max, varType, Variable.DECISION_VAR, agtOwner);
+    public static Variable getVariable(String varName, long vId, int min, int max, String varType,
+                                       AgentState agtOwner) {
+        return getVariable(varName, vId, min, max, varType, Variable.DECISION_VAR, agtOwner);
     }
 
 }
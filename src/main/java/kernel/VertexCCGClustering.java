@@ -0,0 +1,16 @@
+package kernel;
+
+/**
+ * One cluster (i.e., one agent) per vertex.
+ */
+public class VertexCCGClustering implements CCGClustering {
+
+    @Override
+    public int[] cluster(int[] types, int[] edges) {
+        int[] clusters = new int[types.length];
+        for (int i = 0; i < types.length; i++) {
+            clusters[i] = i;
+        }
+        return clusters;
+    }
+}
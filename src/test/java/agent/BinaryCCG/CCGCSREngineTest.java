@@ -0,0 +1,64 @@
+package agent.BinaryCCG;
+
+import communication.AgentStatistics;
+import communication.SimulationRuns;
+import communication.Spawner;
+import kernel.CCGClusteringFactory;
+import kernel.CCGGraph;
+import kernel.DCOPInstanceFactory;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the centralized CCG engine against the CCG agents. The engine draws the noise and the random choices
+ * independently of the order of its sweep, hence not as the agents do: the values are compared between runs of the
+ * engine, and the messages sent at each cycle with those of the agents.
+ */
+public class CCGCSREngineTest {
+
+    private static final String INSTANCE = "data/sf.ccg";
+    private static final int NB_ITERATIONS = 30;
+    private static final long SEED = 42;
+
+    @Test
+    public void testSameMessagesAsAgents() throws IOException {
+        for (String clustering : Arrays.asList("VERTEX", "VARIABLE", "MINCUT")) {
+            Spawner spawner = new Spawner(DCOPInstanceFactory.importDCOPInstance(INSTANCE,
+                    CCGClusteringFactory.create(clustering)));
+            spawner.setSeed(SEED);
+            List<AgentStatistics> agentStats = SimulationRuns.run(spawner,
+                    SimulationRuns.getParameters("CCG", NB_ITERATIONS));
+
+            CCGCSREngine engine = new CCGCSREngine(CCGGraph.read(INSTANCE), CCGClusteringFactory.create(clustering));
+            engine.setSeed(SEED);
+            List<AgentStatistics> engineStats = engine.run(NB_ITERATIONS, 1);
+
+            assertEquals(clustering, SimulationRuns.getValues(agentStats).keySet(),
+                    SimulationRuns.getValues(engineStats).keySet());
+            assertEquals(clustering, SimulationRuns.getNetLoads(agentStats, NB_ITERATIONS),
+                    SimulationRuns.getNetLoads(engineStats, NB_ITERATIONS));
+        }
+    }
+
+    @Test
+    public void testSameValuesOnAllThreads() throws IOException {
+        CCGCSREngine engine = new CCGCSREngine(CCGGraph.read(INSTANCE), CCGClusteringFactory.create("VERTEX"));
+        engine.setSeed(SEED);
+        // Splits the sweeps of this small instance among the threads
+        engine.setGrainSize(8);
+        Map<String, List<Integer>> values = SimulationRuns.getValues(engine.run(NB_ITERATIONS, 1));
+        assertEquals(values, SimulationRuns.getValues(engine.run(NB_ITERATIONS, 1)));
+        assertEquals(values, SimulationRuns.getValues(engine.run(NB_ITERATIONS, 4)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonCCGInstanceIsRejected() {
+        new CCGCSREngine(DCOPInstanceFactory.importDCOPInstance("data/rand4_50_1.json"));
+    }
+}
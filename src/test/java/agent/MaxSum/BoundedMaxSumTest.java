@@ -0,0 +1,81 @@
+package agent.MaxSum;
+
+import communication.SimulationRuns;
+import communication.Spawner;
+import kernel.Constants;
+import kernel.Constraint;
+import kernel.DCOPInstance;
+import kernel.DCOPInstanceFactory;
+import kernel.Tuple;
+import kernel.Variable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the bounds of Bounded MaxSum against the optimum of a small instance, found by enumeration.
+ */
+public class BoundedMaxSumTest {
+
+    private static final String INSTANCE = "data/sf.json";
+
+    @Test
+    public void testLowerBoundIsBelowOptimumAndSolutionCost() {
+        DCOPInstance instance = DCOPInstanceFactory.importDCOPInstance(INSTANCE);
+        BoundedMaxSum bms = new BoundedMaxSum(instance);
+        double optimum = getOptimalCost(instance);
+
+        Spawner spawner = new Spawner(bms.getRelaxedInstance());
+        spawner.setConvergence(2, 0.001);
+        double cost = bms.getCost(SimulationRuns.getLastValues(
+                SimulationRuns.run(spawner, SimulationRuns.getParameters("MINSUM", 50))));
+
+        assertTrue("lowerBound " + bms.getLowerBound() + " > optimum " + optimum,
+                bms.getLowerBound() <= optimum + 1e-9);
+        assertTrue("optimum " + optimum + " > cost " + cost, optimum <= cost + 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaximizationIsRejected() {
+        DCOPInstance instance = DCOPInstanceFactory.importDCOPInstance(INSTANCE);
+        instance.setOptimization(true);
+        new BoundedMaxSum(instance);
+    }
+
+    /**
+     * @return The optimal cost of the instance, whose domains are binary, by enumerating its solutions.
+     */
+    private static double getOptimalCost(DCOPInstance instance) {
+        List<Variable> variables = new ArrayList<>(instance.getDCOPVariables());
+        Map<Variable, Integer> varIdx = new HashMap<>();
+        for (int v = 0; v < variables.size(); v++)
+            varIdx.put(variables.get(v), v);
+        List<Constraint> constraints = new ArrayList<>(instance.getDCOPConstraints());
+        int[][] scopes = new int[constraints.size()][];
+        for (int c = 0; c < scopes.length; c++) {
+            scopes[c] = new int[constraints.get(c).getArity()];
+            for (int p = 0; p < scopes[c].length; p++)
+                scopes[c][p] = varIdx.get(constraints.get(c).getScope(p));
+        }
+
+        double optimum = Constants.infinity;
+        Tuple[] tuples = new Tuple[scopes.length];
+        for (int c = 0; c < scopes.length; c++)
+            tuples[c] = new Tuple(scopes[c].length);
+        for (long s = 0; s < (1L << variables.size()); s++) {
+            double cost = 0;
+            for (int c = 0; c < scopes.length && cost < optimum; c++) {
+                for (int p = 0; p < scopes[c].length; p++)
+                    tuples[c].set(p, (int) (s >> scopes[c][p]) & 1);
+                cost += constraints.get(c).getValue(tuples[c]);
+            }
+            optimum = Math.min(optimum, cost);
+        }
+        return optimum;
+    }
+}
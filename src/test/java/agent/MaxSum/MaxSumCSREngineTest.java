@@ -0,0 +1,59 @@
+package agent.MaxSum;
+
+import communication.AgentStatistics;
+import communication.SimulationRuns;
+import communication.Spawner;
+import kernel.DCOPInstanceFactory;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the centralized engine computes the same cycles as the MaxSum agents: the same values, and the same
+ * messages sent at each cycle.
+ */
+public class MaxSumCSREngineTest {
+
+    private static final String INSTANCE = "data/rand4_50_1.json";
+    private static final int NB_ITERATIONS = 50;
+
+    @Test
+    public void testSameAsAgents() {
+        checkSameAsAgents(0.0, 0.0, 1);
+    }
+
+    @Test
+    public void testSameAsAgentsWithDamping() {
+        checkSameAsAgents(0.5, 0.0, 1);
+    }
+
+    @Test
+    public void testSameAsAgentsWithSelectiveSending() {
+        checkSameAsAgents(0.3, 2.0, 1);
+    }
+
+    @Test
+    public void testSameAsAgentsOnManyThreads() {
+        checkSameAsAgents(0.0, 0.0, 4);
+        checkSameAsAgents(0.3, 2.0, 4);
+    }
+
+    private static void checkSameAsAgents(double damping, double threshold, int nbThreads) {
+        List<AgentStatistics> agentStats = SimulationRuns.run(
+                new Spawner(DCOPInstanceFactory.importDCOPInstance(INSTANCE)),
+                SimulationRuns.getParameters("MINSUM", NB_ITERATIONS, damping, threshold));
+
+        MaxSumCSREngine engine = new MaxSumCSREngine(DCOPInstanceFactory.importDCOPInstance(INSTANCE));
+        engine.setDamping(damping);
+        engine.setThreshold(threshold);
+        // Splits the sweeps of this small instance among the threads
+        engine.setGrainSize(8);
+        List<AgentStatistics> engineStats = engine.run(NB_ITERATIONS, nbThreads);
+
+        assertEquals(SimulationRuns.getValues(agentStats), SimulationRuns.getValues(engineStats));
+        assertEquals(SimulationRuns.getNetLoads(agentStats, NB_ITERATIONS),
+                SimulationRuns.getNetLoads(engineStats, NB_ITERATIONS));
+    }
+}
@@ -0,0 +1,65 @@
+package agent.MaxSum;
+
+import communication.AgentStatistics;
+import communication.ExecutorFactory;
+import communication.SimulationRuns;
+import communication.Spawner;
+import kernel.DCOPInstanceFactory;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the selective sending of MaxSum: the messages which did not change are not sent, which does not change the
+ * values, and the cycles still complete.
+ */
+public class SelectiveSendingTest {
+
+    private static final String INSTANCE = "data/rand4_50_1.json";
+    private static final int NB_ITERATIONS = 50;
+
+    @Test
+    public void testUnchangedMessagesAreNotSent() {
+        List<AgentStatistics> all = runMaxSum("SEQ", 0.0);
+        List<AgentStatistics> selective = runMaxSum("SEQ", 1e-9);
+        assertEquals(SimulationRuns.getValues(all), SimulationRuns.getValues(selective));
+        assertTrue(getNetLoad(selective) < getNetLoad(all));
+    }
+
+    @Test
+    public void testAllCyclesCompleteWhenAllMessagesAreSkipped() {
+        int netLoad = getNetLoad(runMaxSum("SEQ", 0.0));
+        for (String executorType : new String[]{"SEQ", "PAR", "READY", "DES"}) {
+            List<AgentStatistics> stats = runMaxSum(executorType, 1e9);
+            for (List<Integer> values : SimulationRuns.getValues(stats).values())
+                assertEquals(executorType, NB_ITERATIONS, values.size());
+            // The agents only send the heartbeats of the skipped messages, one per remote agent
+            assertTrue(executorType, getNetLoad(stats) < netLoad);
+        }
+    }
+
+    @Test
+    public void testSameValuesOnAllExecutors() {
+        List<AgentStatistics> stats = runMaxSum("SEQ", 2.0);
+        for (String executorType : new String[]{"PAR", "READY", "DES"}) {
+            assertEquals(executorType, SimulationRuns.getValues(stats),
+                    SimulationRuns.getValues(runMaxSum(executorType, 2.0)));
+        }
+    }
+
+    private static List<AgentStatistics> runMaxSum(String executorType, double threshold) {
+        Spawner spawner = new Spawner(DCOPInstanceFactory.importDCOPInstance(INSTANCE));
+        spawner.setExecutor(ExecutorFactory.create(executorType, 2));
+        return SimulationRuns.run(spawner, SimulationRuns.getParameters("MINSUM", NB_ITERATIONS, 0.0, threshold));
+    }
+
+    private static int getNetLoad(List<AgentStatistics> stats) {
+        int netLoad = 0;
+        for (int n : SimulationRuns.getNetLoads(stats, NB_ITERATIONS))
+            netLoad += n;
+        return netLoad;
+    }
+}
@@ -0,0 +1,94 @@
+package benchmark;
+
+import kernel.ArrayKernels;
+import kernel.ArrayKernelsFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and the vectorized array kernels on the tables of a domain of the given size. The VECTOR
+ * kernels must be compiled (mvn -Pvector) and enabled in the forked JVM. Run it with:
+ *   mvn -Pvector test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main ArrayKernelsBenchmark \
+ *        -jvmArgsAppend "--add-modules jdk.incubator.vector"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArrayKernelsBenchmark {
+
+    @Param({"SCALAR", "VECTOR"})
+    public String kernelsType;
+
+    @Param({"2", "8", "32", "128", "1024"})
+    public int domSize;
+
+    private ArrayKernels kernels;
+    private double[] table;
+    private double[] recvTable;
+    private double[] matrixRow;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        kernels = ArrayKernelsFactory.create(kernelsType);
+        if (kernels == null)
+            throw new IllegalStateException(kernelsType + " kernels are not available");
+        Random random = new Random(0);
+        table = new double[domSize];
+        recvTable = new double[domSize];
+        matrixRow = new double[domSize];
+        for (int i = 0; i < domSize; i++) {
+            table[i] = random.nextInt(100);
+            recvTable[i] = random.nextInt(100);
+            matrixRow[i] = random.nextInt(100);
+        }
+    }
+
+    /**
+     * The projection of a row of a binary factor (MaxSum function to variable message).
+     */
+    @Benchmark
+    public double addMin() {
+        return kernels.addMin(matrixRow, 0, recvTable, 0, domSize);
+    }
+
+    /**
+     * The sum of the tables received by a variable node.
+     */
+    @Benchmark
+    public double[] addArray() {
+        kernels.addArray(table, 0, recvTable, 0, domSize);
+        return table;
+    }
+
+    /**
+     * The normalization of a MaxSum variable to function message.
+     */
+    @Benchmark
+    public double[] normalizeAverage() {
+        kernels.normalizeAverage(table, 0, domSize);
+        return table;
+    }
+
+    /**
+     * The normalization of a CCG message.
+     */
+    @Benchmark
+    public double[] normalizeMin() {
+        kernels.normalizeMin(table, 0, domSize);
+        return table;
+    }
+
+    /**
+     * The selection of the value of a variable.
+     */
+    @Benchmark
+    public int argMin() {
+        return kernels.argMin(recvTable, 0, domSize);
+    }
+}
@@ -0,0 +1,52 @@
+package benchmark;
+
+import communication.Spawner;
+import kernel.Constants;
+import kernel.DCOPInstance;
+import kernel.DCOPInstanceFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs CCG on the reductions of the DCOPs in data/, whose agents own many auxiliary variables (hence many of the
+ * edges between the variables are local to an agent), on the sequential executor. Run it with:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main CCGBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CCGBenchmark {
+
+    @Param({"data/sf_ccg_dcop.json", "data/rand4_50_1_ccg_dcop.json"})
+    public String instanceFile;
+
+    @Param({"100"})
+    public int nbCycles;
+
+    private DCOPInstance instance;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        instance = DCOPInstanceFactory.importDCOPInstance(instanceFile);
+        if (instance == null || instance.getDCOPAgents().isEmpty())
+            throw new IllegalStateException(instanceFile + " is not a DCOP instance");
+    }
+
+    @Benchmark
+    public Spawner run() {
+        List<Object> algParams = new ArrayList<>();
+        algParams.add("CCG");
+        algParams.add(nbCycles);
+        algParams.add((long) Constants.infinity);
+        Spawner spawner = new Spawner(instance.copy());
+        spawner.spawn(algParams);
+        return spawner;
+    }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import communication.ComAgent;
+import communication.Mailbox;
+import communication.MailboxFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the agent mailboxes when P producers send messages to one consumer, which drains them concurrently.
+ * Run it with:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main MailboxBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MailboxBenchmark {
+
+    private static final int MESSAGES = 1 << 16;
+
+    @Param({"LINKED", "MPSC"})
+    public String mailboxType;
+
+    @Param({"1", "4", "16"})
+    public int nbProducers;
+
+    private ExecutorService producers;
+    private Mailbox mailbox;
+    private CountDownLatch start;
+    private final Object message = new Object();
+    private int received;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        producers = Executors.newFixedThreadPool(nbProducers);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        mailbox = MailboxFactory.create(mailboxType);
+        start = new CountDownLatch(1);
+        received = 0;
+        final int perProducer = MESSAGES / nbProducers;
+        for (int p = 0; p < nbProducers; p++) {
+            producers.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++)
+                    mailbox.add(message, ComAgent.noSender());
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        producers.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int sendAndDrain() {
+        start.countDown();
+        while (received < MESSAGES) {
+            received += mailbox.drain((msg, sender) -> { });
+        }
+        return received;
+    }
+}
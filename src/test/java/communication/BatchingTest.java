@@ -0,0 +1,119 @@
+package communication;
+
+import kernel.DCOPInstanceFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that batching coalesces the messages of a cycle to the same recipient into one envelope, which is delivered
+ * as the original messages, at the time of the envelope.
+ */
+public class BatchingTest {
+
+    private static final String INSTANCE = "data/rand4_50_1.json";
+    private static final int NB_ITERATIONS = 50;
+    private static final long LATENCY = 1000000;
+
+    @Test
+    public void testEnvelopeDeliversTheOriginalMessages() {
+        RecordingAgent sender = new RecordingAgent(0);
+        RecordingAgent recipient = new RecordingAgent(1);
+        recipient.setNetworkModel(new ConstantNetworkModel(LATENCY, 0));
+        sender.setBatching(true);
+        BasicMessage m1 = new BasicMessage();
+        BasicMessage m2 = new BasicMessage();
+        // The time of a message sent in a batch is not that of its delivery
+        m1.setSimulatedNanoTime(1000 * LATENCY);
+
+        sender.startBatch();
+        recipient.tell(m1, sender);
+        recipient.tell(m2, sender);
+        assertEquals(0, sender.getAgentStatistics().getSentMessages());
+        sender.flushBatch();
+        assertEquals(1, sender.getAgentStatistics().getSentMessages());
+
+        recipient.processMail();
+        assertEquals(2, recipient.received.size());
+        assertSame(m1, recipient.received.get(0));
+        assertSame(m2, recipient.received.get(1));
+        long time = recipient.getAgentStatistics().getStopWatch().getNanoTime();
+        assertTrue(time >= LATENCY && time < 1000 * LATENCY);
+    }
+
+    @Test
+    public void testSingleMessageIsSentAlone() {
+        RecordingAgent sender = new RecordingAgent(0);
+        RecordingAgent recipient = new RecordingAgent(1);
+        sender.setBatching(true);
+        BasicMessage m = new BasicMessage();
+
+        sender.startBatch();
+        recipient.tell(m, sender);
+        sender.flushBatch();
+        recipient.processMail();
+        assertEquals(1, recipient.received.size());
+        assertSame(m, recipient.received.get(0));
+    }
+
+    @Test
+    public void testBatchesAreTheCycles() {
+        List<AgentStatistics> unbatched = runMaxSum("SEQ", false);
+        List<Integer> netLoads = SimulationRuns.getNetLoads(runMaxSum("SEQ", true), NB_ITERATIONS);
+        assertTrue(sum(netLoads) < sum(SimulationRuns.getNetLoads(unbatched, NB_ITERATIONS)));
+        for (String executorType : new String[]{"PAR", "READY", "DES"}) {
+            List<AgentStatistics> batched = runMaxSum(executorType, true);
+            assertEquals(executorType, SimulationRuns.getValues(unbatched), SimulationRuns.getValues(batched));
+            assertEquals(executorType, netLoads, SimulationRuns.getNetLoads(batched, NB_ITERATIONS));
+        }
+    }
+
+    private static List<AgentStatistics> runMaxSum(String executorType, boolean batching) {
+        Spawner spawner = new Spawner(DCOPInstanceFactory.importDCOPInstance(INSTANCE));
+        spawner.setExecutor(ExecutorFactory.create(executorType, 2));
+        spawner.setBatching(batching);
+        return SimulationRuns.run(spawner, SimulationRuns.getParameters("MINSUM", NB_ITERATIONS));
+    }
+
+    private static int sum(List<Integer> values) {
+        int sum = 0;
+        for (int v : values)
+            sum += v;
+        return sum;
+    }
+
+    /**
+     * Records the messages it receives.
+     */
+    private static class RecordingAgent extends ComAgent {
+        private final List<Object> received = new ArrayList<>();
+
+        RecordingAgent(long id) {
+            super("a" + id, id);
+        }
+
+        @Override
+        protected void onReceive(Object message, ComAgent sender) {
+            super.onReceive(message, sender);
+            received.add(message);
+        }
+
+        @Override
+        protected boolean terminationCondition() {
+            return false;
+        }
+
+        @Override
+        protected void preStart() {
+        }
+
+        @Override
+        protected void preStop() {
+        }
+    }
+}
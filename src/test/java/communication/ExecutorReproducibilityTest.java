@@ -0,0 +1,46 @@
+package communication;
+
+import kernel.DCOPInstanceFactory;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that the random choices of the agents depend only on the seed of the run, and not on the executor.
+ */
+public class ExecutorReproducibilityTest {
+
+    private static final String INSTANCE = "data/sf_ccg_dcop.json";
+    private static final int NB_ITERATIONS = 30;
+    private static final long SEED = 42;
+
+    @Test
+    public void testSameValuesOnAllExecutors() {
+        Map<String, List<Integer>> values = runCCG("SEQ", SEED);
+        assertEquals(values, runCCG("SEQ", SEED));
+        assertEquals(values, runCCG("PAR", SEED));
+        assertEquals(values, runCCG("READY", SEED));
+        assertEquals(values, runCCG("ACTOR", SEED));
+        assertEquals(values, runCCG("DES", SEED));
+    }
+
+    @Test
+    public void testOtherSeedChangesValues() {
+        assertFalse(runCCG("SEQ", SEED).equals(runCCG("SEQ", SEED + 1)));
+    }
+
+    /**
+     * @return The values of the decision variables at each cycle of CCG, run by the given executor.
+     */
+    private static Map<String, List<Integer>> runCCG(String executorType, long seed) {
+        Spawner spawner = new Spawner(DCOPInstanceFactory.importDCOPInstance(INSTANCE));
+        spawner.setExecutor(ExecutorFactory.create(executorType, 2));
+        spawner.setSeed(seed);
+        return SimulationRuns.getValues(SimulationRuns.run(spawner,
+                SimulationRuns.getParameters("CCG", NB_ITERATIONS)));
+    }
+}
@@ -0,0 +1,94 @@
+package communication;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the mailboxes deliver every message once, in order of arrival, including across the chunks of the
+ * MPSC mailbox and with concurrent senders.
+ */
+public class MailboxTest {
+
+    private static final int NB_SENDERS = 4;
+    private static final int NB_MESSAGES = 20000;
+
+    @Test
+    public void testMessagesAreDrainedInOrder() {
+        for (Mailbox mailbox : getMailboxes()) {
+            assertTrue(mailbox.isEmpty());
+            for (int i = 0; i < 10; i++)
+                mailbox.add(i, null);
+            assertFalse(mailbox.isEmpty());
+
+            List<Object> received = new ArrayList<>();
+            assertEquals(10, mailbox.drain((message, sender) -> received.add(message)));
+            assertTrue(mailbox.isEmpty());
+            for (int i = 0; i < 10; i++)
+                assertEquals(i, received.get(i));
+            assertEquals(0, mailbox.drain((message, sender) -> received.add(message)));
+        }
+    }
+
+    @Test
+    public void testMessagesAddedWhileDrainingAreDrained() {
+        for (Mailbox mailbox : getMailboxes()) {
+            mailbox.add(0, null);
+            List<Object> received = new ArrayList<>();
+            mailbox.drain((message, sender) -> {
+                received.add(message);
+                if ((Integer) message < 9)
+                    mailbox.add((Integer) message + 1, null);
+            });
+            assertEquals(10, received.size());
+            assertTrue(mailbox.isEmpty());
+        }
+    }
+
+    @Test
+    public void testConcurrentSendersDeliverEveryMessageOnce() throws InterruptedException {
+        for (Mailbox mailbox : getMailboxes()) {
+            Thread[] senders = new Thread[NB_SENDERS];
+            for (int s = 0; s < NB_SENDERS; s++) {
+                final int senderIdx = s;
+                senders[s] = new Thread(() -> {
+                    for (int i = 0; i < NB_MESSAGES; i++)
+                        mailbox.add(new int[]{senderIdx, i}, null);
+                });
+                senders[s].start();
+            }
+
+            // The messages of each sender arrive in the order it sent them
+            int[] next = new int[NB_SENDERS];
+            int nbReceived = 0;
+            while (nbReceived < NB_SENDERS * NB_MESSAGES) {
+                nbReceived += mailbox.drain((message, sender) -> {
+                    int[] m = (int[]) message;
+                    assertEquals(next[m[0]]++, m[1]);
+                });
+            }
+            for (Thread sender : senders)
+                sender.join();
+            assertTrue(mailbox.isEmpty());
+            for (int s = 0; s < NB_SENDERS; s++)
+                assertEquals(NB_MESSAGES, next[s]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMailboxIsRejected() {
+        MailboxFactory.create("RING");
+    }
+
+    /**
+     * @return The mailboxes of the factory, and an MPSC mailbox with small chunks, which are often full.
+     */
+    private static Mailbox[] getMailboxes() {
+        return new Mailbox[]{MailboxFactory.create("MPSC"), MailboxFactory.create("LINKED"), new MpscArrayMailbox(4)};
+    }
+}
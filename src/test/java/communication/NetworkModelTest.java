@@ -0,0 +1,116 @@
+package communication;
+
+import kernel.DCOPInstanceFactory;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the latencies and bandwidths of the network models, and the delays they add to a discrete-event run.
+ */
+public class NetworkModelTest {
+
+    @Test
+    public void testInvalidSpecificationsAreRejected() {
+        for (String spec : new String[]{"CONST:-100000", "CONST:1:-5", "CONST:1:NaN", "UNIFORM:5:1",
+                "UNIFORM:-1:3", "UNIFORM:1:3:-1", "CONST", "CONST:x", "RING:1"}) {
+            try {
+                NetworkModelFactory.create(spec);
+                fail(spec);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testNegativeMatrixLatencyIsRejected() throws IOException {
+        try {
+            NetworkModelFactory.create("MATRIX:" + writeMatrix("0 1", "-1 0"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testLatenciesAndBandwidths() throws IOException {
+        assertNull(NetworkModelFactory.create("NONE"));
+
+        NetworkModel constant = NetworkModelFactory.create("CONST:2.5:100");
+        assertEquals(2500, constant.getLatency(0, 1));
+        assertEquals(100, constant.getBandwidth(0, 1), 0);
+
+        NetworkModel matrix = NetworkModelFactory.create("MATRIX:" + writeMatrix("0 1/10", "2 0") + ":50");
+        assertEquals(1000, matrix.getLatency(0, 1));
+        assertEquals(10, matrix.getBandwidth(0, 1), 0);
+        assertEquals(2000, matrix.getLatency(1, 0));
+        assertEquals(50, matrix.getBandwidth(1, 0), 0);
+        // The links which are not in the matrix have no latency
+        assertEquals(0, matrix.getLatency(2, 0));
+
+        // 1000 bytes at 8 Mbit/s take 1 ms
+        assertEquals(1000000, NetworkModel.getTransmissionTime(1000, 8));
+        assertEquals(0, NetworkModel.getTransmissionTime(1000, 0));
+    }
+
+    @Test
+    public void testUniformLatenciesAreInRangeAndReproducible() {
+        long[] latencies = new long[100];
+        for (int run = 0; run < 2; run++) {
+            NetworkModel uniform = NetworkModelFactory.create("UNIFORM:1:3");
+            uniform.setRandom(0, new SplittableRandom(42));
+            for (int i = 0; i < latencies.length; i++) {
+                long latency = uniform.getLatency(0, 1);
+                assertTrue(latency >= 1000 && latency <= 3000);
+                if (run == 0)
+                    latencies[i] = latency;
+                else
+                    assertEquals(latencies[i], latency);
+            }
+        }
+    }
+
+    @Test
+    public void testLatencyDelaysTheCycles() {
+        int nbIterations = 20;
+        long time = getSimulatedTime("NONE", nbIterations);
+        // The cycles wait for messages which take 1 ms more
+        assertTrue(getSimulatedTime("CONST:1000", nbIterations) >= time + nbIterations / 2);
+    }
+
+    /**
+     * @return The simulated time of the last cycle of MaxSum on sf.json, under the DES executor, in ms.
+     */
+    private static long getSimulatedTime(String networkModel, int nbIterations) {
+        Spawner spawner = new Spawner(DCOPInstanceFactory.importDCOPInstance("data/sf.json"));
+        spawner.setExecutor(ExecutorFactory.create("DES", 1));
+        spawner.setNetworkModel(NetworkModelFactory.create(networkModel));
+        List<AgentStatistics> stats = SimulationRuns.run(spawner,
+                SimulationRuns.getParameters("MINSUM", nbIterations));
+        long time = 0;
+        for (AgentStatistics s : stats)
+            time = Math.max(time, s.getMilliTime(nbIterations - 1));
+        return time;
+    }
+
+    private static String writeMatrix(String... rows) throws IOException {
+        File file = File.createTempFile("latencies", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("# Latencies of the links, in us");
+            for (String row : rows)
+                out.println(row);
+        }
+        return file.getPath();
+    }
+}
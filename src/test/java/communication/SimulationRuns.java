@@ -0,0 +1,82 @@
+package communication;
+
+import kernel.Constants;
+import kernel.DCOPInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the agents of a test instance, and reads the values and messages of their statistics (or of those of a
+ * centralized engine).
+ */
+public class SimulationRuns {
+
+    /**
+     * @return The parameters of the given algorithm, with no timeout, no damping and no selective sending.
+     */
+    public static List<Object> getParameters(String agentType, int nbIterations) {
+        return getParameters(agentType, nbIterations, 0.0, 0.0);
+    }
+
+    public static List<Object> getParameters(String agentType, int nbIterations, double damping, double threshold) {
+        return new ArrayList<>(Arrays.asList(agentType, nbIterations, (long) Constants.infinity, damping, threshold));
+    }
+
+    /**
+     * Spawns and runs the agents of the spawner.
+     * @return The statistics of all the agents.
+     */
+    public static List<AgentStatistics> run(Spawner spawner, List<Object> algParameters) {
+        spawner.spawn(algParameters);
+        List<AgentStatistics> stats = new ArrayList<>();
+        for (DCOPagent agt : spawner.getSpawnedAgents())
+            stats.add(agt.getAgentStatistics());
+        return stats;
+    }
+
+    /**
+     * Runs the given algorithm on the instance, with the default executor.
+     */
+    public static List<AgentStatistics> run(DCOPInstance instance, String agentType, int nbIterations) {
+        return run(new Spawner(instance), getParameters(agentType, nbIterations));
+    }
+
+    /**
+     * @return The values of the decision variables at each cycle.
+     */
+    public static Map<String, List<Integer>> getValues(Collection<AgentStatistics> stats) {
+        Map<String, List<Integer>> values = new HashMap<>();
+        for (AgentStatistics s : stats)
+            values.putAll(s.getSolutionValue());
+        return values;
+    }
+
+    /**
+     * @return The values of the decision variables at the last cycle.
+     */
+    public static Map<String, Integer> getLastValues(Collection<AgentStatistics> stats) {
+        Map<String, Integer> values = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> e : getValues(stats).entrySet())
+            values.put(e.getKey(), e.getValue().get(e.getValue().size() - 1));
+        return values;
+    }
+
+    /**
+     * @return The number of messages sent by all the agents at each of the first cycles.
+     */
+    public static List<Integer> getNetLoads(Collection<AgentStatistics> stats, int nbIterations) {
+        List<Integer> netLoads = new ArrayList<>();
+        for (int iter = 0; iter < nbIterations; iter++) {
+            int netLoad = 0;
+            for (AgentStatistics s : stats)
+                netLoad += s.getSentMessages(iter) - (iter == 0 ? 0 : s.getSentMessages(iter - 1));
+            netLoads.add(netLoad);
+        }
+        return netLoads;
+    }
+}
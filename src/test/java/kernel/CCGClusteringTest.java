@@ -0,0 +1,74 @@
+package kernel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the clusterings partition the vertices of a CCG instance among the expected number of agents.
+ */
+public class CCGClusteringTest {
+
+    private static final String INSTANCE = "data/sf.ccg";
+
+    @Test
+    public void testVertexClustering() throws IOException {
+        CCGGraph graph = CCGGraph.read(INSTANCE);
+        assertEquals(graph.getNbVertices(), checkPartition(graph, "VERTEX"));
+    }
+
+    @Test
+    public void testVariableClustering() throws IOException {
+        CCGGraph graph = CCGGraph.read(INSTANCE);
+        int nbAgents = checkPartition(graph, "VARIABLE");
+        assertTrue(nbAgents >= getNbProblemVariables(graph));
+        // Each problem variable is in a cluster of its own
+        int[] agents = graph.getAgents(CCGClusteringFactory.create("VARIABLE"));
+        boolean[] owned = new boolean[nbAgents];
+        for (int i = 0; i < graph.getNbVertices(); i++) {
+            if (graph.getType(i) == Variable.DECISION_VAR) {
+                assertTrue(!owned[agents[i]]);
+                owned[agents[i]] = true;
+            }
+        }
+    }
+
+    @Test
+    public void testMinCutClustering() throws IOException {
+        CCGGraph graph = CCGGraph.read(INSTANCE);
+        assertEquals(getNbProblemVariables(graph), checkPartition(graph, "MINCUT"));
+        assertEquals(4, checkPartition(graph, "MINCUT:4"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownClusteringIsRejected() {
+        CCGClusteringFactory.create("EDGE");
+    }
+
+    /**
+     * Checks that each vertex is owned by exactly one agent, and that the agents are numbered from 0 with none empty.
+     * @return The number of agents.
+     */
+    private static int checkPartition(CCGGraph graph, String spec) {
+        int[] agents = graph.getAgents(CCGClusteringFactory.create(spec));
+        assertEquals(spec, graph.getNbVertices(), agents.length);
+        int nbAgents = 0;
+        for (int agt : agents) {
+            assertTrue(spec, agt >= 0 && agt <= nbAgents);
+            nbAgents = Math.max(nbAgents, agt + 1);
+        }
+        return nbAgents;
+    }
+
+    private static int getNbProblemVariables(CCGGraph graph) {
+        int nbVars = 0;
+        for (int i = 0; i < graph.getNbVertices(); i++) {
+            if (graph.getType(i) == Variable.DECISION_VAR)
+                nbVars++;
+        }
+        return nbVars;
+    }
+}
@@ -0,0 +1,74 @@
+package kernel;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the vertices of a .ccg file are referred to by their position, whether their IDs are dense or not.
+ */
+public class CCGGraphTest {
+
+    @Test
+    public void testDenseIds() throws IOException {
+        checkGraph(new int[]{2, 0, 1, 3});
+    }
+
+    @Test
+    public void testSparseIds() throws IOException {
+        checkGraph(new int[]{1000000, -7, 42, 5});
+    }
+
+    @Test(expected = IOException.class)
+    public void testEdgeOnUnknownVertexIsRejected() throws IOException {
+        read(new int[]{0, 1, 2, 3}, new int[]{0, 4});
+    }
+
+    @Test
+    public void testAgentsAreNumberedByFirstVertex() throws IOException {
+        CCGGraph graph = read(new int[]{0, 1, 2, 3}, new int[]{0, 1});
+        CCGClustering clustering = (types, edges) -> new int[]{70, 5, 70, 1 << 30};
+        assertArrayEquals(new int[]{0, 1, 0, 2}, graph.getAgents(clustering));
+    }
+
+    /**
+     * Reads a path over the vertices of the given IDs, the third of which is an auxiliary variable.
+     */
+    private static void checkGraph(int[] ids) throws IOException {
+        CCGGraph graph = read(ids, new int[]{ids[0], ids[1], ids[1], ids[2], ids[2], ids[3]});
+        assertEquals(4, graph.getNbVertices());
+        assertEquals(3, graph.getNbEdges());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(ids[i], graph.getID(i));
+            assertEquals(10 * i, graph.getWeight(i), 0);
+            assertEquals(i == 2 ? -1 : Variable.DECISION_VAR, graph.getType(i));
+        }
+        assertArrayEquals(new int[]{0, 1, 1, 2, 2, 3}, graph.getEdges());
+    }
+
+    /**
+     * Writes and reads a graph, whose third vertex is an auxiliary variable; the types section also lists a vertex
+     * which is not in the graph.
+     */
+    private static CCGGraph read(int[] ids, int[] edges) throws IOException {
+        File file = File.createTempFile("graph", ".ccg");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("p edges " + ids.length + " " + edges.length / 2);
+            for (int i = 0; i < ids.length; i++)
+                out.println("v " + ids[i] + " " + 10 * i);
+            for (int i = 0; i < edges.length; i += 2)
+                out.println("e " + edges[i] + " " + edges[i + 1]);
+            out.println("--- vertex types begin ---");
+            out.println(ids[2] + " -1");
+            out.println("999 -1");
+            out.println("--- vertex types end ---");
+        }
+        return CCGGraph.read(file.getPath());
+    }
+}
@@ -0,0 +1,106 @@
+package kernel;
+
+import communication.AgentStatistics;
+import communication.CostModelFactory;
+import communication.ExecutorFactory;
+import communication.SimulationRuns;
+import communication.Spawner;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the allocations give each factor to an agent of its scope, and that the COMPUTED_CELLS cost model
+ * charges the owners of the factors for reading their tables in a discrete-event run.
+ */
+public class FactorAllocationTest {
+
+    private static final String INSTANCE = "data/rand4_50_1.json";
+    private static final String[] ALLOCATIONS = {"MIN_ID", "LEAST_LOADED", "DEGREE", "MIN_COMM"};
+    // Costs high enough for the simulated times to differ by many ms
+    private static final String CELLS = "CELLS:1000000:100000";
+    private static final String COMPUTED_CELLS = "COMPUTED_CELLS:1000000:100000";
+
+    @Test
+    public void testFactorsAreOwnedByAnAgentOfTheirScope() {
+        DCOPInstance instance = DCOPInstanceFactory.importDCOPInstance(INSTANCE);
+        for (String type : ALLOCATIONS) {
+            long[] owners = FactorAllocationFactory.create(type).allocate(instance);
+            assertEquals(type, instance.getDCOPConstraints().size(), owners.length);
+            int f = 0;
+            for (Constraint c : instance.getDCOPConstraints()) {
+                boolean inScope = false;
+                for (Variable v : c.getScope())
+                    inScope |= v.getOwnerAgent().getID() == owners[f];
+                assertTrue(type + " " + c, inScope);
+                f++;
+            }
+        }
+    }
+
+    @Test
+    public void testMinIdGivesTheSmallestId() {
+        DCOPInstance instance = DCOPInstanceFactory.importDCOPInstance(INSTANCE);
+        long[] owners = FactorAllocationFactory.create("min_id").allocate(instance);
+        int f = 0;
+        for (Constraint c : instance.getDCOPConstraints()) {
+            for (Variable v : c.getScope())
+                assertTrue(owners[f] <= v.getOwnerAgent().getID());
+            f++;
+        }
+    }
+
+    @Test
+    public void testLeastLoadedSpreadsTheFactors() {
+        DCOPInstance instance = DCOPInstanceFactory.importDCOPInstance(INSTANCE);
+        assertTrue(getMaxNbFactors(FactorAllocationFactory.create("LEAST_LOADED").allocate(instance))
+                <= getMaxNbFactors(FactorAllocationFactory.create("MIN_ID").allocate(instance)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAllocationIsRejected() {
+        FactorAllocationFactory.create("RANDOM");
+    }
+
+    @Test
+    public void testComputedCellsChargeTheFactorTables() {
+        int nbIterations = 10;
+        for (String type : ALLOCATIONS)
+            assertTrue(type, getSimulatedTime(COMPUTED_CELLS, type, nbIterations)
+                    >= getSimulatedTime(CELLS, type, nbIterations));
+
+        // The hubs own fewer factors, hence read fewer tables at each cycle
+        assertTrue(getSimulatedTime(COMPUTED_CELLS, "LEAST_LOADED", nbIterations)
+                < getSimulatedTime(COMPUTED_CELLS, "MIN_ID", nbIterations));
+    }
+
+    /**
+     * @return The largest number of factors owned by an agent.
+     */
+    private static int getMaxNbFactors(long[] owners) {
+        HashMap<Long, Integer> nbFactors = new HashMap<>();
+        int max = 0;
+        for (long owner : owners)
+            max = Math.max(max, nbFactors.merge(owner, 1, Integer::sum));
+        return max;
+    }
+
+    /**
+     * @return The simulated time of the last cycle of MaxSum under the DES executor, in ms.
+     */
+    private static long getSimulatedTime(String costModel, String allocation, int nbIterations) {
+        Spawner spawner = new Spawner(DCOPInstanceFactory.importDCOPInstance(INSTANCE));
+        spawner.setExecutor(ExecutorFactory.create("DES", 1, CostModelFactory.create(costModel)));
+        spawner.setFactorAllocation(FactorAllocationFactory.create(allocation));
+        List<AgentStatistics> stats = SimulationRuns.run(spawner,
+                SimulationRuns.getParameters("MINSUM", nbIterations));
+        long time = 0;
+        for (AgentStatistics s : stats)
+            time = Math.max(time, s.getMilliTime(nbIterations - 1));
+        return time;
+    }
+}